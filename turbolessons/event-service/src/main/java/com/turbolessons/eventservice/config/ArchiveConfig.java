@@ -0,0 +1,39 @@
+package com.turbolessons.eventservice.config;
+
+import com.turbolessons.eventservice.service.LessonArchiveService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Runs the archive mover every lessons.archive.interval-minutes; lessons.archive.enabled=false turns it off
+@Configuration
+@ConditionalOnProperty(name = "lessons.archive.enabled", havingValue = "true", matchIfMissing = true)
+public class ArchiveConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveConfig.class);
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService lessonArchiver(LessonArchiveService archiveService, LessonThreads lessonThreads,
+                                                   @Value("${lessons.archive.interval-minutes:60}") long intervalMinutes) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(lessonThreads.factory("lesson-archiver-"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                int moved = archiveService.archiveOldLessons();
+                if (moved > 0) {
+                    log.info("Archived {} lessons", moved);
+                }
+            } catch (RuntimeException e) {
+                // Keep the schedule alive; the next run picks up where this one stopped
+                log.warn("Archiving lessons failed", e);
+            }
+        }, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+        return scheduler;
+    }
+}
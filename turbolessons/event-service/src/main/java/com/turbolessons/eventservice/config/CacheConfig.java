@@ -1,15 +1,31 @@
 package com.turbolessons.eventservice.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.turbolessons.eventservice.service.LessonEventCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Configuration
+@EnableCaching
 public class CacheConfig {
 
+    // The TTL is a backstop for writes this instance never sees (other replicas, direct SQL); local writes evict precisely
     @Bean
-    public CacheManager cacheManager() {
-        return new CaffeineCacheManager();
+    public CacheManager cacheManager(@Value("${lessons.cache.maximum-size:10000}") long maximumSize,
+                                     @Value("${lessons.cache.ttl-seconds:600}") long ttlSeconds) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                                         .maximumSize(maximumSize)
+                                         .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                                         .recordStats());
+        cacheManager.setCacheNames(LessonEventCache.NAMES);
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
     }
 }
@@ -0,0 +1,28 @@
+package com.turbolessons.eventservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+@Configuration
+public class ChangeFeedConfig {
+
+    // Polls the outbox on behalf of every open SSE subscriber; each tick is a short indexed read. A couple of
+    // long-lived scheduler threads, so platform threads whatever lessons.threads.virtual says
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService lessonChangePoller(@Value("${lessons.changes.poller-threads:2}") int threads) {
+        return Executors.newScheduledThreadPool(threads, new CustomizableThreadFactory("lesson-change-poller-"));
+    }
+
+    // Writes queued changes to SSE subscribers; a client that stops reading blocks one of these, not the poller
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService lessonChangeSender(@Value("${lessons.changes.sender-threads:16}") int threads,
+                                              LessonThreads lessonThreads) {
+        return Executors.newFixedThreadPool(threads, lessonThreads.factory("lesson-change-sender-"));
+    }
+}
@@ -0,0 +1,70 @@
+package com.turbolessons.eventservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * With {@code lessons.datasource.replica.url} set, JPA, Flyway and the JDBC repositories get a routing DataSource over
+ * two Hikari pools: spring.datasource for the primary and lessons.datasource.replica for a read replica.
+ * {@code @Transactional(readOnly = true)} work reads from the replica, except for a client that committed a write in
+ * the last {@code lessons.datasource.read-your-writes-millis}, which covers the replica's usual lag, and echoes the
+ * {@value ReadYourWrites#HEADER} token the write returned. Without the property Boot's single pool is used as before.
+ */
+@Configuration
+@ConditionalOnProperty(name = "lessons.datasource.replica.url")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    // Same driver and credentials as the primary unless lessons.datasource.replica sets its own
+    @Bean
+    @ConfigurationProperties("lessons.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${lessons.datasource.replica.url}") String url,
+                                              @Value("${lessons.datasource.replica.username:}") String username,
+                                              @Value("${lessons.datasource.replica.password:}") String password) {
+        return DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url)
+                .username(username.isEmpty() ? properties.determineUsername() : username)
+                .password(password.isEmpty() ? properties.determinePassword() : password)
+                .build();
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${lessons.datasource.read-your-writes-millis:2000}") long windowMillis) {
+        return new ReadYourWrites(Duration.ofMillis(windowMillis), System::currentTimeMillis);
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public ReadYourWritesFilter readYourWritesFilter(ReadYourWrites readYourWrites) {
+        return new ReadYourWritesFilter(readYourWrites);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReadYourWrites readYourWrites) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, readYourWrites));
+    }
+}
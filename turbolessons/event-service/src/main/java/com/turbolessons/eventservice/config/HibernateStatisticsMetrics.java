@@ -0,0 +1,67 @@
+package com.turbolessons.eventservice.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.stat.Statistics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Hibernate's session factory statistics as meters, named after the hibernate-micrometer binder so dashboards carry
+ * over if that module is ever added. Binding switches statistics collection on, which costs a few atomic increments
+ * per session, statement and entity.
+ */
+public class HibernateStatisticsMetrics implements MeterBinder {
+
+    private final Statistics statistics;
+
+    public HibernateStatisticsMetrics(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        statistics.setStatisticsEnabled(true);
+
+        counter(registry, "hibernate.sessions.open", "Sessions opened", Statistics::getSessionOpenCount);
+        counter(registry, "hibernate.sessions.closed", "Sessions closed", Statistics::getSessionCloseCount);
+        counter(registry, "hibernate.transactions", "Transactions that committed", Statistics::getSuccessfulTransactionCount, "result", "success");
+        counter(registry, "hibernate.transactions", "Transactions that rolled back",
+                stats -> stats.getTransactionCount() - stats.getSuccessfulTransactionCount(), "result", "failure");
+        counter(registry, "hibernate.optimistic.failures", "Stale version failures", Statistics::getOptimisticFailureCount);
+        counter(registry, "hibernate.flushes", "Session flushes", Statistics::getFlushCount);
+        counter(registry, "hibernate.connections.obtained", "JDBC connections obtained", Statistics::getConnectCount);
+
+        counter(registry, "hibernate.statements", "JDBC statements prepared", Statistics::getPrepareStatementCount, "status", "prepared");
+        counter(registry, "hibernate.statements", "JDBC statements closed", Statistics::getCloseStatementCount, "status", "closed");
+        counter(registry, "hibernate.query.executions", "HQL, criteria and native queries executed", Statistics::getQueryExecutionCount);
+        TimeGauge.builder("hibernate.query.executions.max", statistics, TimeUnit.MILLISECONDS, Statistics::getQueryExecutionMaxTime)
+                .description("Slowest HQL or criteria query so far")
+                .register(registry);
+
+        counter(registry, "hibernate.entities.loads", "Entities loaded", Statistics::getEntityLoadCount);
+        counter(registry, "hibernate.entities.fetches", "Entities fetched lazily", Statistics::getEntityFetchCount);
+        counter(registry, "hibernate.entities.inserts", "Entities inserted", Statistics::getEntityInsertCount);
+        counter(registry, "hibernate.entities.updates", "Entities updated", Statistics::getEntityUpdateCount);
+        counter(registry, "hibernate.entities.deletes", "Entities deleted", Statistics::getEntityDeleteCount);
+        counter(registry, "hibernate.collections.loads", "Collections loaded", Statistics::getCollectionLoadCount);
+        counter(registry, "hibernate.collections.fetches", "Collections fetched lazily", Statistics::getCollectionFetchCount);
+
+        counter(registry, "hibernate.second.level.cache.requests", "Second-level cache hits", Statistics::getSecondLevelCacheHitCount, "result", "hit");
+        counter(registry, "hibernate.second.level.cache.requests", "Second-level cache misses", Statistics::getSecondLevelCacheMissCount, "result", "miss");
+        counter(registry, "hibernate.second.level.cache.puts", "Second-level cache puts", Statistics::getSecondLevelCachePutCount);
+        counter(registry, "hibernate.cache.query.requests", "Query cache hits", Statistics::getQueryCacheHitCount, "result", "hit");
+        counter(registry, "hibernate.cache.query.requests", "Query cache misses", Statistics::getQueryCacheMissCount, "result", "miss");
+        counter(registry, "hibernate.cache.query.puts", "Query cache puts", Statistics::getQueryCachePutCount);
+    }
+
+    private void counter(MeterRegistry registry, String name, String description, ToDoubleFunction<Statistics> count, String... tags) {
+        FunctionCounter.builder(name, statistics, count)
+                .description(description)
+                .tags(tags)
+                .register(registry);
+    }
+}
@@ -0,0 +1,40 @@
+package com.turbolessons.eventservice.config;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// GET /actuator/lessoncache: hit/miss/eviction counters and current size of each lesson cache
+@Component
+@Endpoint(id = "lessoncache")
+public class LessonCacheEndpoint {
+
+    private final CacheManager cacheManager;
+
+    public LessonCacheEndpoint(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @ReadOperation
+    public Map<String, CacheSummary> caches() {
+        Map<String, CacheSummary> summaries = new TreeMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            if (cacheManager.getCache(name) instanceof CaffeineCache caffeineCache) {
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
+                CacheStats stats = nativeCache.stats();
+                summaries.put(name, new CacheSummary(nativeCache.estimatedSize(), stats.hitCount(), stats.missCount(),
+                                                     stats.hitRate(), stats.evictionCount()));
+            }
+        }
+        return summaries;
+    }
+
+    public record CacheSummary(long size, long hits, long misses, double hitRate, long evictions) {
+    }
+}
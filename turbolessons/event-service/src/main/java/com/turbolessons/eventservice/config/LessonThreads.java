@@ -0,0 +1,52 @@
+package com.turbolessons.eventservice.config;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Hands out thread factories for the thread mode selected by {@code lessons.threads.virtual}. The build targets
+ * Java 17, so virtual threads are looked up reflectively and only exist when the service runs on Java 21 or later.
+ */
+public class LessonThreads {
+
+    private final boolean virtual;
+
+    public LessonThreads(boolean virtual) {
+        if (virtual && !virtualThreadsSupported()) {
+            throw new IllegalStateException("lessons.threads.virtual=true needs Java 21 or later, running on " + Runtime.version());
+        }
+        this.virtual = virtual;
+    }
+
+    public static boolean virtualThreadsSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public ThreadFactory factory(String prefix) {
+        return virtual ? virtualFactory(prefix) : new CustomizableThreadFactory(prefix);
+    }
+
+    // A new thread per task; only sensible for virtual threads, which are cheap enough not to pool
+    public AsyncTaskExecutor perTaskExecutor(String prefix) {
+        return new SimpleAsyncTaskExecutor(factory(prefix));
+    }
+
+    // Thread.ofVirtual().name(prefix, 0).factory()
+    private static ThreadFactory virtualFactory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads are not available on " + Runtime.version(), e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.turbolessons.eventservice.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+
+/**
+ * Persistence instrumentation of the "metrics" profile. Hikari pool meters and the per-repository-method
+ * spring.data.repository.invocations timers come from Spring Boot; this adds Hibernate's statistics and a warning
+ * for slow repository calls. See application-metrics.yml for what is exposed and the thresholds.
+ */
+@Configuration
+@ConditionalOnProperty(name = "lessons.metrics.enabled", havingValue = "true")
+public class PersistenceMetricsConfig {
+
+    @Bean
+    public MeterBinder hibernateStatisticsMetrics(EntityManagerFactory entityManagerFactory) {
+        return new HibernateStatisticsMetrics(entityManagerFactory.unwrap(SessionFactory.class).getStatistics());
+    }
+
+    // Static so it is registered before the repository factory beans it customizes; that is too early for @Value
+    // placeholders, so the threshold is read from the Environment
+    @Bean
+    public static BeanPostProcessor slowRepositoryCallLogging(Environment environment) {
+        long thresholdMillis = environment.getProperty("lessons.metrics.slow-repository-millis", Long.class, 250L);
+        SlowRepositoryCallLogger logger = new SlowRepositoryCallLogger(Duration.ofMillis(thresholdMillis));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addInvocationListener(logger));
+                }
+                return bean;
+            }
+        };
+    }
+}
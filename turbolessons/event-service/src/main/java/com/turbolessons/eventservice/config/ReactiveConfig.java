@@ -0,0 +1,82 @@
+package com.turbolessons.eventservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.util.StringUtils;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The "reactive" profile (spring.main.web-application-type=reactive) serves the lesson endpoints from WebFlux, reading
+ * through R2DBC. Boot's R2DBC auto-configuration is excluded on EventServiceApplication because its
+ * ReactiveTransactionManager would clash with the JPA one, so the pool is built here from the usual spring.r2dbc.*
+ * properties and only in reactive mode. JPA stays up for writes, which run on {@link #lessonJdbcScheduler()}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableConfigurationProperties({R2dbcProperties.class, DataSourceProperties.class})
+public class ReactiveConfig {
+
+    // Tomcat is on the classpath for servlet mode and would otherwise be picked to run WebFlux too
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    // DataSourceAutoConfiguration backs off as soon as an R2DBC ConnectionFactory exists, but JPA still needs its
+    // pool here; this is the Hikari pool Boot would have built from the same spring.datasource.* properties
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (StringUtils.hasText(properties.getName())) {
+            dataSource.setPoolName(properties.getName());
+        }
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool lessonConnectionFactory(R2dbcProperties properties) {
+        ConnectionFactoryBuilder builder = ConnectionFactoryBuilder.withUrl(properties.getUrl());
+        if (properties.getUsername() != null) {
+            builder.username(properties.getUsername());
+        }
+        if (properties.getPassword() != null) {
+            builder.password(properties.getPassword());
+        }
+        ConnectionFactory connectionFactory = builder.build();
+        R2dbcProperties.Pool pool = properties.getPool();
+        ConnectionPoolConfiguration.Builder configuration = ConnectionPoolConfiguration.builder(connectionFactory)
+                .initialSize(pool.getInitialSize())
+                .maxSize(pool.getMaxSize())
+                .maxIdleTime(pool.getMaxIdleTime());
+        if (pool.getMaxAcquireTime() != null) {
+            configuration.maxAcquireTime(pool.getMaxAcquireTime());
+        }
+        return new ConnectionPool(configuration.build());
+    }
+
+    @Bean
+    public DatabaseClient lessonDatabaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    // Blocking JPA calls made from the WebFlux controller are shifted here, never onto the Netty event loop
+    @Bean(destroyMethod = "dispose")
+    public Scheduler lessonJdbcScheduler() {
+        return Schedulers.newBoundedElastic(Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                                            Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "lesson-jdbc");
+    }
+}
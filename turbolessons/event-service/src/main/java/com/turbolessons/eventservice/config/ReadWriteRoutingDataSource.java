@@ -0,0 +1,39 @@
+package com.turbolessons.eventservice.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the replica and everything else to the primary. The route is decided when a
+ * connection is taken, so this has to sit behind a LazyConnectionDataSourceProxy: transaction managers take the
+ * connection before the transaction is marked read-only, and the proxy holds off until the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {PRIMARY, REPLICA}
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(Route.PRIMARY, primary, Route.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // No transaction (Flyway, the archive's own TransactionTemplate before it begins) means the primary
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Route.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readYourWrites.writing();
+            return Route.PRIMARY;
+        }
+        return readYourWrites.recentlyWrote() ? Route.PRIMARY : Route.REPLICA;
+    }
+}
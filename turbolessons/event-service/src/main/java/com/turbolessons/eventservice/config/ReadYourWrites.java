@@ -0,0 +1,99 @@
+package com.turbolessons.eventservice.config;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps a client's reads on the primary for {@code window} after it commits a write, until the replica has caught up.
+ * Each commit issues a token, the commit time in epoch milliseconds, which {@link ReadYourWritesFilter} returns in the
+ * {@value #HEADER} header; a client that echoes it on its next requests is pinned to the primary until the token is
+ * older than the window. Nothing is kept per caller, so this works for anonymous callers and across instances alike,
+ * as far as their clocks agree. Later reads in the request that wrote are pinned as well. Work outside a request
+ * (the reactive scheduler threads, background jobs) is never pinned; its reads that must see the latest commit run in
+ * read-write transactions instead, as the cached finders and the change feed do.
+ */
+public class ReadYourWrites {
+
+    public static final String HEADER = "X-Read-After";
+
+    private final long windowMillis;
+    private final LongSupplier currentTimeMillis;
+    private final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    public ReadYourWrites(Duration window, LongSupplier currentTimeMillis) {
+        this.windowMillis = window.toMillis();
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    /**
+     * Binds a request to the calling thread until the returned scope is closed. {@code token} is what the client
+     * echoed, or null; {@code issue} is handed a new token after each write the request commits.
+     */
+    public Scope open(String token, Consumer<String> issue) {
+        Scope scope = new Scope(parse(token), issue);
+        current.set(scope);
+        return scope;
+    }
+
+    // Called for every connection a read-write transaction takes; the request is recorded once, when it commits
+    public void writing() {
+        Scope scope = current.get();
+        if (scope == null || !TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, scope);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                long now = currentTimeMillis.getAsLong();
+                scope.wroteAt = now;
+                scope.issue.accept(String.valueOf(now));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ReadYourWrites.this);
+            }
+        });
+    }
+
+    // A token from the future is only trusted as far ahead as the window, so a client cannot pin itself for good
+    public boolean recentlyWrote() {
+        Scope scope = current.get();
+        return scope != null && scope.wroteAt != Long.MIN_VALUE
+                && Math.abs(currentTimeMillis.getAsLong() - scope.wroteAt) < windowMillis;
+    }
+
+    private static long parse(String token) {
+        if (token == null || token.isBlank()) {
+            return Long.MIN_VALUE;
+        }
+        try {
+            long millis = Long.parseLong(token.trim());
+            return millis > 0 ? millis : Long.MIN_VALUE;
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    public final class Scope implements AutoCloseable {
+
+        private final Consumer<String> issue;
+        private volatile long wroteAt;
+
+        private Scope(long wroteAt, Consumer<String> issue) {
+            this.wroteAt = wroteAt;
+            this.issue = issue;
+        }
+
+        @Override
+        public void close() {
+            current.remove();
+        }
+    }
+}
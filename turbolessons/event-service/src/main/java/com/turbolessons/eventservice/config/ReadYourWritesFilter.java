@@ -0,0 +1,32 @@
+package com.turbolessons.eventservice.config;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Binds each request to {@link ReadYourWrites}: the {@value ReadYourWrites#HEADER} token the client echoed pins its
+ * reads, and a write the request commits sets a fresh one on the response. Writes commit in the service, before the
+ * controller starts the body, so the header still goes out.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final ReadYourWrites readYourWrites;
+
+    public ReadYourWritesFilter(ReadYourWrites readYourWrites) {
+        this.readYourWrites = readYourWrites;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try (ReadYourWrites.Scope ignored = readYourWrites.open(request.getHeader(ReadYourWrites.HEADER),
+                                                                token -> response.setHeader(ReadYourWrites.HEADER, token))) {
+            chain.doFilter(request, response);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.turbolessons.eventservice.config;
+
+import com.turbolessons.eventservice.dao.MatchAgainstFunction;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SearchConfig {
+
+    // Registers the full-text scoring function used by LessonEventRepoImpl.searchLessonEvents
+    @Bean
+    public HibernatePropertiesCustomizer matchAgainstFunction() {
+        MetadataBuilderContributor contributor = builder -> builder.applySqlFunction(MatchAgainstFunction.NAME, new MatchAgainstFunction());
+        return properties -> properties.put(EntityManagerFactoryBuilderImpl.METADATA_BUILDER_CONTRIBUTOR, contributor);
+    }
+}
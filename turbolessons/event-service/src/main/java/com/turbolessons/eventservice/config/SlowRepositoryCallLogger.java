@@ -0,0 +1,33 @@
+package com.turbolessons.eventservice.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.repository.core.support.RepositoryMethodInvocationListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs repository calls that take longer than the threshold, with the repository, method and outcome. Complements
+ * Hibernate's per-statement slow query log: a call can be slow over several fast statements, or in mapping rather
+ * than in the database.
+ */
+public class SlowRepositoryCallLogger implements RepositoryMethodInvocationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowRepositoryCallLogger.class);
+
+    private final long thresholdNanos;
+
+    public SlowRepositoryCallLogger(Duration threshold) {
+        this.thresholdNanos = threshold.toNanos();
+    }
+
+    @Override
+    public void afterInvocation(RepositoryMethodInvocation invocation) {
+        long nanos = invocation.getDuration(TimeUnit.NANOSECONDS);
+        if (nanos >= thresholdNanos) {
+            log.warn("Slow repository call {}.{} took {} ms ({})", invocation.getRepositoryInterface().getSimpleName(),
+                     invocation.getMethod().getName(), TimeUnit.NANOSECONDS.toMillis(nanos), invocation.getResult().getState());
+        }
+    }
+}
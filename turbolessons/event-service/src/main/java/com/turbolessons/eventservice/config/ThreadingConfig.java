@@ -0,0 +1,41 @@
+package com.turbolessons.eventservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+/**
+ * With {@code lessons.threads.virtual=true} Tomcat requests, MVC async work (the NDJSON streams) and the change-feed
+ * poller each run on their own virtual thread. A request blocked on JDBC then parks instead of holding one of a fixed
+ * number of workers, and the Hikari pool becomes the only limit on concurrent database work, so size it for that
+ * (see application-virtual-threads.yml). The default platform mode keeps Boot's pooled executors.
+ */
+@Configuration
+public class ThreadingConfig {
+
+    static final String VIRTUAL_PROPERTY = "lessons.threads.virtual";
+
+    @Bean
+    public LessonThreads lessonThreads(@Value("${" + VIRTUAL_PROPERTY + ":false}") boolean virtual) {
+        return new LessonThreads(virtual);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = VIRTUAL_PROPERTY, havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadRequestExecutor(LessonThreads threads) {
+        return protocolHandler -> protocolHandler.setExecutor(threads.perTaskExecutor("http-virtual-"));
+    }
+
+    // Replaces Boot's applicationTaskExecutor, which also backs @Async and StreamingResponseBody/SseEmitter handling
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+                  AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    @ConditionalOnProperty(name = VIRTUAL_PROPERTY, havingValue = "true")
+    public AsyncTaskExecutor virtualThreadTaskExecutor(LessonThreads threads) {
+        return threads.perTaskExecutor("task-virtual-");
+    }
+}
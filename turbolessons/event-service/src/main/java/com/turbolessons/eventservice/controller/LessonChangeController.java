@@ -0,0 +1,126 @@
+package com.turbolessons.eventservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.turbolessons.eventservice.dto.LessonChange;
+import com.turbolessons.eventservice.service.LessonChangeService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class LessonChangeController {
+    static final String EVENT_NAME = "lesson-change";
+
+    private final LessonChangeService changes;
+    private final ScheduledExecutorService poller;
+    private final ExecutorService sender;
+    private final ObjectMapper objectMapper;
+    private final long pollMillis;
+    private final long sseTimeoutMillis;
+    private final int sseQueueSize;
+
+    public LessonChangeController(LessonChangeService changes,
+                                  @Qualifier("lessonChangePoller") ScheduledExecutorService poller,
+                                  @Qualifier("lessonChangeSender") ExecutorService sender,
+                                  ObjectMapper objectMapper,
+                                  @Value("${lessons.changes.poll-millis:1000}") long pollMillis,
+                                  @Value("${lessons.changes.sse-timeout-millis:1800000}") long sseTimeoutMillis,
+                                  @Value("${lessons.changes.sse-queue-size:1000}") int sseQueueSize) {
+        this.changes = changes;
+        this.poller = poller;
+        this.sender = sender;
+        this.objectMapper = objectMapper;
+        this.pollMillis = pollMillis;
+        this.sseTimeoutMillis = sseTimeoutMillis;
+        this.sseQueueSize = sseQueueSize;
+    }
+
+    //Catch Up On Lesson Changes after a sequence number, as NDJSON; the response ends once the feed is drained
+    @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/changes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getChanges(@RequestParam(defaultValue = "0") long since) {
+        StreamingResponseBody body = out -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                long position = since;
+                List<LessonChange> batch;
+                do {
+                    batch = changes.findChangesSince(position, LessonChangeService.MAX_BATCH_SIZE);
+                    for (LessonChange change : batch) {
+                        writer.write(change);
+                        position = change.getSeq();
+                    }
+                    writer.flush();
+                } while (batch.size() == LessonChangeService.MAX_BATCH_SIZE);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    //Follow Lesson Changes as Server-Sent Events; reconnecting clients resume from Last-Event-ID
+    //A subscriber whose queue is still full when the poller comes round has taken nothing for a whole poll and is dropped
+    @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/changes/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter followChanges(@RequestParam(required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMillis);
+        SseChangeSubscriber subscriber = new SseChangeSubscriber(emitter, sender, sseQueueSize);
+        AtomicLong position = new AtomicLong(lastEventId != null ? lastEventId : since != null ? since : 0L);
+        ScheduledFuture<?> task = poller.scheduleWithFixedDelay(() -> {
+            try {
+                if (subscriber.room() == 0) {
+                    throw new IllegalStateException("SSE subscriber fell " + sseQueueSize + " changes behind");
+                }
+                int requested;
+                List<LessonChange> batch;
+                do {
+                    requested = Math.min(subscriber.room(), LessonChangeService.MAX_BATCH_SIZE);
+                    if (requested == 0) {
+                        return;
+                    }
+                    batch = changes.findChangesSince(position.get(), requested);
+                    if (!batch.isEmpty()) {
+                        subscriber.enqueue(batch);
+                        position.set(batch.get(batch.size() - 1).getSeq());
+                    }
+                } while (batch.size() == requested);
+            } catch (RuntimeException e) {
+                // Throwing stops this subscriber's polling
+                subscriber.fail(e);
+                throw e;
+            }
+        }, 0, pollMillis, TimeUnit.MILLISECONDS);
+        emitter.onCompletion(() -> {
+            task.cancel(false);
+            subscriber.close();
+        });
+        emitter.onTimeout(() -> {
+            task.cancel(false);
+            subscriber.close();
+        });
+        emitter.onError(e -> {
+            task.cancel(false);
+            subscriber.close();
+        });
+        return emitter;
+    }
+
+}
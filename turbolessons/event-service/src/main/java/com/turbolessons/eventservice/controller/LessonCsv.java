@@ -0,0 +1,44 @@
+package com.turbolessons.eventservice.controller;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+
+import java.util.Objects;
+
+// RFC 4180 rows for the billing export, one lesson per CRLF-terminated line
+final class LessonCsv {
+
+    static final String HEADER = "id,date,start_time,end_time,teacher,teacher_email,student,student_email,title,billing_status,comments,version\r\n";
+
+    private LessonCsv() {
+    }
+
+    static String line(LessonEvent lesson) {
+        StringBuilder line = new StringBuilder(160);
+        line.append(Objects.toString(lesson.getId(), "")).append(',')
+            .append(Objects.toString(lesson.getDate(), "")).append(',')
+            .append(Objects.toString(lesson.getStartTime(), "")).append(',')
+            .append(Objects.toString(lesson.getEndTime(), "")).append(',');
+        text(line, lesson.getTeacher()).append(',');
+        text(line, lesson.getTeacherEmail()).append(',');
+        text(line, lesson.getStudent()).append(',');
+        text(line, lesson.getStudentEmail()).append(',');
+        text(line, lesson.getTitle()).append(',');
+        line.append(lesson.getBillingStatus()).append(',');
+        text(line, lesson.getComments()).append(',');
+        return line.append(Objects.toString(lesson.getVersion(), "")).append("\r\n").toString();
+    }
+
+    // Quoted when it holds a separator, quote or line break. Free text starting with = + - @ gets a leading
+    // apostrophe so a spreadsheet shows it instead of evaluating it as a formula.
+    private static StringBuilder text(StringBuilder line, String value) {
+        if (value == null || value.isEmpty()) {
+            return line;
+        }
+        char first = value.charAt(0);
+        String cell = first == '=' || first == '+' || first == '-' || first == '@' ? "'" + value : value;
+        if (cell.indexOf(',') < 0 && cell.indexOf('"') < 0 && cell.indexOf('\n') < 0 && cell.indexOf('\r') < 0) {
+            return line.append(cell);
+        }
+        return line.append('"').append(cell.replace("\"", "\"\"")).append('"');
+    }
+}
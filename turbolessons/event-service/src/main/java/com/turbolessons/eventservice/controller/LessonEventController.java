@@ -1,88 +1,321 @@
 package com.turbolessons.eventservice.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.BillingTransition;
+import com.turbolessons.eventservice.dto.Granularity;
+import com.turbolessons.eventservice.dto.LessonCalendarSummary;
+import com.turbolessons.eventservice.dto.LessonCursor;
 import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFields;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import com.turbolessons.eventservice.service.LessonArchiveService;
 import com.turbolessons.eventservice.service.LessonEventService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 //@RefreshScope
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class LessonEventController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+    static final String NEXT_PAGE_HEADER = "X-Next-Page";
+    static final int MAX_SEARCH_LENGTH = 200;
+    // Widest date range one calendar or free-slot request may cover
+    static final int MAX_CALENDAR_DAYS = 366;
+    static final MediaType EXPORT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+    // Response bytes buffered between socket writes by the export
+    static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     private final LessonEventService service;
+    private final LessonArchiveService archiveService;
+    private final ObjectMapper objectMapper;
 
-    public LessonEventController(LessonEventService service) {
+    public LessonEventController(LessonEventService service, LessonArchiveService archiveService, ObjectMapper objectMapper) {
         this.service = service;
+        this.archiveService = archiveService;
+        this.objectMapper = objectMapper;
     }
 
     //Get All Lesson Events
     @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
     @GetMapping("/api/lessons")
-    public List<LessonEvent> getAllLessons() {
+    public ResponseEntity<List<?>> getAllLessons(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+
+        return page(LessonFilter.all(), after, limit, fields, service::findAllLessonEvents);
+    }
 
-        return service.findAllLessonEvents();
+    //Stream Lesson Events as newline-delimited JSON
+    @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamLessons(
+            @RequestParam(required = false) String teacher,
+            @RequestParam(required = false) String student,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) BillingStatus status) {
+        LessonFilter filter = new LessonFilter(teacher, student, startDate, endDate, status);
+        StreamingResponseBody body = out -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                service.streamLessonEvents(filter, lesson -> {
+                    try {
+                        writer.write(lesson);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    //Search Lesson Events by title and comments, most relevant first, combinable with the list filters. The page number
+    //of the next page goes in X-Next-Page (absent on the last page); pages stop MAX_SEARCH_OFFSET matches in
+    @GetMapping("/api/lessons/search")
+    public ResponseEntity<List<LessonEvent>> searchLessons(
+            @RequestParam String q,
+            @RequestParam(required = false) String teacher,
+            @RequestParam(required = false) String student,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) BillingStatus status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = LessonEventService.pageSize(limit);
+        String text = searchText(q, page, pageSize);
+        List<LessonEvent> lessons = service.searchLessonEvents(text, new LessonFilter(teacher, student, startDate, endDate, status), page, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (hasNextSearchPage(page, pageSize, lessons.size())) {
+            response.header(NEXT_PAGE_HEADER, String.valueOf(page + 1));
+        }
+        return response.body(lessons);
     }
     //Get One Lesson Event
+    // Strong ETag from the row version; a matching If-None-Match gets a 304 without a body. No Last-Modified, since
+    // lastModified comes from whichever instance's clock wrote the row
     @GetMapping("/api/lessons/{id}")
-    public LessonEvent getLessonById(@PathVariable Integer id) {
-
-        return service.findLessonEvent(id);
+    public ResponseEntity<LessonEvent> getLessonById(@PathVariable Integer id) {
+        LessonEvent lesson = service.findLessonEvent(id);
+        if (lesson == null || lesson.getVersion() == null) {
+            return ResponseEntity.ok(lesson);
+        }
+        return ResponseEntity.ok()
+                .eTag(lessonETag(lesson.getId(), lesson.getVersion()))
+                .body(lesson);
     }
     //Get Lesson Events By Teacher
     @GetMapping("/api/lessons/teacher/{teacher}")
-    public List<LessonEvent> getLessonsByTeacher(@PathVariable String teacher) {
-
-        return service.findLessonEventsByTeacher(teacher);
+    public ResponseEntity<List<?>> getLessonsByTeacher(
+            @PathVariable String teacher,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            WebRequest request) {
+        // checkNotModified also sets the ETag on the response; on a match nothing else is queried or written
+        if (request.checkNotModified(service.findTeacherMarker(teacher).etag("teacher"))) {
+            return null;
+        }
+        return page(LessonFilter.byTeacher(teacher), after, limit, fields, () -> service.findLessonEventsByTeacher(teacher));
     }
-    //Get Lesson Events By Student
+    //Summarize Lesson Events By Teacher per day, week or month
+    @GetMapping("/api/lessons/teacher/{teacher}/summary")
+    public LessonCalendarSummary getLessonSummaryByTeacher(
+            @PathVariable String teacher,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "day") String granularity) {
+        if (endDate.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate");
+        }
+        return service.summarizeTeacherLessons(teacher, startDate, endDate, parseGranularity(granularity));
+    }
+    //Get Free Slots By Teacher of at least minutes between startDate and the end of endDate
+    @GetMapping("/api/lessons/teacher/{teacher}/free-slots")
+    public List<TimeSlot> getFreeSlotsByTeacher(
+            @PathVariable String teacher,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "30") int minutes) {
+        checkCalendarRange(startDate, endDate);
+        return service.findFreeSlots(teacher, startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay(), minLength(minutes));
+    }
+    //Get Lesson Events By Student; includeArchived=true adds the lessons moved to the archive
     @GetMapping("/api/lessons/student/{student}")
-    public List<LessonEvent> getLessonsByStudent(@PathVariable String student) {
-
-        return service.findLessonEventsByStudent(student);
+    public ResponseEntity<List<?>> getLessonsByStudent(
+            @PathVariable String student,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            WebRequest request) {
+        // Archived rows never change and moving one changes the student's count, so one marker covers both
+        if (request.checkNotModified(service.findStudentMarker(student).etag(includeArchived ? "student-history" : "student"))) {
+            return null;
+        }
+        if (includeArchived) {
+            return history(student, after, limit, fields);
+        }
+        return page(LessonFilter.byStudent(student), after, limit, fields, () -> service.findLessonEventsByStudent(student));
+    }
+    //Get a Student's Lesson Summary: lessons taken, upcoming, unbilled and the last lesson date
+    @GetMapping("/api/lessons/student/{student}/summary")
+    public StudentLessonSummary getStudentSummary(@PathVariable String student) {
+        return service.findStudentSummary(student);
     }
+
     //Get Lesson Events By Date
     @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
     @GetMapping("/api/lessons/date/{date}")
-    public List<LessonEvent> getLessonsByDate(@PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        return service.findLessonEventsByDate(date);
+    public ResponseEntity<List<?>> getLessonsByDate(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byDate(date), after, limit, fields, () -> service.findLessonEventsByDate(date));
     }
 
     //Get Lesson Events By Teacher and Date
     @GetMapping("/api/lessons/{teacher}/{date}")
-    public List<LessonEvent> getLessonsByTeacherAndDate(@PathVariable String teacher, @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        return service.findLessonEventsByTeacherAndDate(teacher, date);
+    public ResponseEntity<List<?>> getLessonsByTeacherAndDate(
+            @PathVariable String teacher,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byTeacherAndDate(teacher, date), after, limit, fields, () -> service.findLessonEventsByTeacherAndDate(teacher, date));
     }
     
     //Get Lesson Events By Billing Status
     @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
     @GetMapping("/api/lessons/billing/{status}")
-    public List<LessonEvent> getLessonsByBillingStatus(@PathVariable BillingStatus status) {
-        return service.findLessonEventsByBillingStatus(status);
+    public ResponseEntity<List<?>> getLessonsByBillingStatus(
+            @PathVariable BillingStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byBillingStatus(status), after, limit, fields, () -> service.findLessonEventsByBillingStatus(status));
     }
     
     //Get Lesson Events By Teacher and Billing Status
     @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
     @GetMapping("/api/lessons/teacher/{teacher}/billing/{status}")
-    public List<LessonEvent> getLessonsByTeacherAndBillingStatus(
+    public ResponseEntity<List<?>> getLessonsByTeacherAndBillingStatus(
             @PathVariable String teacher, 
-            @PathVariable BillingStatus status) {
-        return service.findLessonEventsByTeacherAndBillingStatus(teacher, status);
+            @PathVariable BillingStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byTeacherAndBillingStatus(teacher, status), after, limit, fields,
+                    () -> service.findLessonEventsByTeacherAndBillingStatus(teacher, status));
     }
     
     //Get Lesson Events By Date Range and Billing Status
     @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
     @GetMapping("/api/lessons/billing/{status}/daterange")
-    public List<LessonEvent> getLessonsByDateRangeAndBillingStatus(
+    public ResponseEntity<List<?>> getLessonsByDateRangeAndBillingStatus(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
-            @PathVariable BillingStatus status) {
-        return service.findLessonEventsByDateRangeAndBillingStatus(startDate, endDate, status);
+            @PathVariable BillingStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byDateRangeAndBillingStatus(startDate, endDate, status), after, limit, fields,
+                    () -> service.findLessonEventsByDateRangeAndBillingStatus(startDate, endDate, status));
     }
     
+    //Export Lesson Events By Date Range and Billing Status as CSV (default) or NDJSON for reconciliation. Rows are
+    //written as the server-side cursor hands them over, lessons.stream.fetch-size at a time, so memory doesn't grow
+    //with the range; server.compression gzips the download for clients that accept it
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @GetMapping("/api/lessons/billing/{status}/export")
+    public ResponseEntity<StreamingResponseBody> exportLessonsByDateRangeAndBillingStatus(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @PathVariable BillingStatus status,
+            @RequestParam(defaultValue = "csv") String format) {
+        boolean csv = exportFormat(format, startDate, endDate);
+        LessonFilter filter = LessonFilter.byDateRangeAndBillingStatus(startDate, endDate, status);
+        StreamingResponseBody body = csv
+                ? out -> {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+                    writer.write(LessonCsv.HEADER);
+                    service.streamLessonEvents(filter, lesson -> {
+                        try {
+                            writer.write(LessonCsv.line(lesson));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    writer.flush();
+                }
+                : out -> {
+                    try (NdjsonWriter writer = new NdjsonWriter(objectMapper, out)) {
+                        service.streamLessonEvents(filter, lesson -> {
+                            try {
+                                writer.write(lesson);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    }
+                };
+        return ResponseEntity.ok()
+                .contentType(csv ? EXPORT_CSV : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, exportDisposition(status, startDate, endDate, csv))
+                .body(body);
+    }
+
+    static boolean exportFormat(String format, LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate");
+        }
+        if (format.equalsIgnoreCase("csv")) {
+            return true;
+        }
+        if (format.equalsIgnoreCase("ndjson")) {
+            return false;
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+    }
+
+    static String exportDisposition(BillingStatus status, LocalDate startDate, LocalDate endDate, boolean csv) {
+        String filename = "lessons-" + status.name().toLowerCase(Locale.ROOT) + "-" + startDate + "-" + endDate + (csv ? ".csv" : ".ndjson");
+        return ContentDisposition.attachment().filename(filename).build().toString();
+    }
+
     //Update Lesson Event Billing Status
     @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
     @PatchMapping("/api/lessons/{id}/billing/{status}")
@@ -92,6 +325,16 @@ public class LessonEventController {
         service.updateLessonEventBillingStatus(id, status);
     }
     
+    //Bulk Update Lesson Event Billing Status
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @PatchMapping("/api/lessons/billing")
+    public List<Integer> transitionLessonBillingStatus(@RequestBody BillingTransition transition) {
+        if (transition.ids() == null || transition.expectedStatus() == null || transition.targetStatus() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids, expectedStatus and targetStatus are required");
+        }
+        return service.transitionBillingStatus(transition.ids(), transition.expectedStatus(), transition.targetStatus());
+    }
+    
     //Create Lesson Event
     @PostMapping("/api/lessons")
     public LessonEvent createLesson(@RequestBody LessonEvent lesson) {
@@ -99,21 +342,37 @@ public class LessonEventController {
         service.saveLessonEvent(lesson);
         return lesson;
     }
+    //Create Lesson Events in bulk
+    @PostMapping("/api/lessons/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<LessonEvent> createLessons(@RequestBody List<LessonEvent> lessons) {
+        checkBatch(lessons);
+        return service.saveLessonEvents(lessons);
+    }
+    //Patch Lesson Event with a JSON merge patch; the expected version comes from If-Match or a "version" member
+    @PatchMapping(value = "/api/lessons/{id}", consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Void> patchLesson(
+            @PathVariable Integer id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode body) {
+        LessonPatch patch = parsePatch(body, objectMapper);
+        long expectedVersion = expectedVersion(id, ifMatch, patch);
+        Long version;
+        try {
+            version = service.patchLessonEvent(id, expectedVersion, patch);
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Lesson " + id + " is no longer at version " + expectedVersion);
+        }
+        if (version == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No lesson " + id);
+        }
+        return ResponseEntity.noContent().eTag(lessonETag(id, version)).build();
+    }
     //Update Lesson Event
     @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
     @PutMapping("/api/lessons/{id}")
     public void updateLesson(@PathVariable Integer id, @RequestBody LessonEvent lesson) {
-        LessonEvent fromService = service.findLessonEvent(id);
-        fromService.setStartTime(lesson.getStartTime());
-        fromService.setEndTime(lesson.getEndTime());
-        fromService.setTitle(lesson.getTitle());
-        fromService.setStudent(lesson.getStudent());
-        fromService.setStudentEmail(lesson.getStudentEmail());
-        fromService.setTeacher(lesson.getTeacher());
-        fromService.setTeacherEmail(lesson.getTeacherEmail());
-        fromService.setComments(lesson.getComments());
-        fromService.setBillingStatus(lesson.getBillingStatus());
-        service.saveLessonEvent(fromService);
+        service.updateLessonEvent(id, lesson);
     }
     //Delete Lesson Event
 
@@ -121,4 +380,157 @@ public class LessonEventController {
     public void deleteLesson(@PathVariable Integer id) {
         service.deleteLessonEvent(id);
     }
+
+    // Callers that pass neither after nor limit keep getting the full list; everyone else gets a keyset page
+    // with the cursor for the next one in the X-Next-Cursor header (absent on the last page). fields=a,b,c swaps the
+    // full entities for just those attributes, read straight from the selected columns.
+    private ResponseEntity<List<?>> page(LessonFilter filter, String after, Integer limit, String fields, Supplier<List<LessonEvent>> unpaged) {
+        List<String> fieldNames = fields == null ? null : parseFields(fields);
+        if (after == null && limit == null) {
+            return ResponseEntity.ok(fieldNames == null ? unpaged.get() : service.findLessonEventFields(filter, fieldNames, null, null));
+        }
+        LessonCursor cursor = after == null ? null : parseCursor(after);
+        int pageSize = LessonEventService.pageSize(limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (fieldNames != null) {
+            List<LessonFields> rows = service.findLessonEventFields(filter, fieldNames, cursor, pageSize);
+            if (rows.size() == pageSize) {
+                response.header(NEXT_CURSOR_HEADER, rows.get(rows.size() - 1).position().encode());
+            }
+            return response.body(rows);
+        }
+        List<LessonEvent> lessons = service.findLessonEventPage(filter, cursor, pageSize);
+        if (lessons.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, LessonCursor.of(lessons.get(lessons.size() - 1)).encode());
+        }
+        return response.body(lessons);
+    }
+
+    // Same paging contract as page, over the student's live and archived lessons
+    private ResponseEntity<List<?>> history(String student, String after, Integer limit, String fields) {
+        List<String> fieldNames = fields == null ? null : parseFields(fields);
+        List<LessonEvent> lessons;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (after == null && limit == null) {
+            lessons = archiveService.findStudentHistory(student);
+        } else {
+            int pageSize = LessonEventService.pageSize(limit);
+            lessons = archiveService.findStudentHistoryPage(student, after == null ? null : parseCursor(after), pageSize);
+            if (lessons.size() == pageSize) {
+                response.header(NEXT_CURSOR_HEADER, LessonCursor.of(lessons.get(lessons.size() - 1)).encode());
+            }
+        }
+        return response.body(fieldNames == null ? lessons : lessons.stream().map(lesson -> LessonFields.of(lesson, fieldNames)).toList());
+    }
+
+    // Request checks shared with ReactiveLessonEventController
+    static void checkBatch(List<LessonEvent> lessons) {
+        if (lessons.isEmpty() || lessons.size() > LessonEventService.MAX_CREATE_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Expected between 1 and " + LessonEventService.MAX_CREATE_BATCH_SIZE + " lessons");
+        }
+        if (lessons.stream().anyMatch(lesson -> lesson.getId() != null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Lessons to create must not have an id");
+        }
+    }
+
+    static LessonPatch parsePatch(JsonNode body, ObjectMapper objectMapper) {
+        LessonPatch patch;
+        try {
+            patch = LessonPatch.parse(body, objectMapper);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        if (patch.changes().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The patch changes nothing");
+        }
+        return patch;
+    }
+
+    static long expectedVersion(Integer id, String ifMatch, LessonPatch patch) {
+        Long expectedVersion = ifMatch != null ? versionFromETag(id, ifMatch) : patch.version();
+        if (expectedVersion == null) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_REQUIRED, "Send If-Match or a version to patch a lesson");
+        }
+        return expectedVersion;
+    }
+
+    static LessonCursor parseCursor(String after) {
+        try {
+            return LessonCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    static String lessonETag(Integer id, Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    // Accepts the ETag handed out by GET /api/lessons/{id}, weak or strong
+    static Long versionFromETag(Integer id, String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        String prefix = "\"" + id + "-";
+        if (!value.startsWith(prefix) || !value.endsWith("\"")) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not name a version of lesson " + id);
+        }
+        try {
+            return Long.valueOf(value.substring(prefix.length(), value.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not name a version of lesson " + id);
+        }
+    }
+
+    static List<String> parseFields(String fields) {
+        try {
+            return LessonFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    static void checkCalendarRange(LocalDate startDate, LocalDate endDate) {
+        if (endDate.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_CALENDAR_DAYS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A calendar covers at most " + MAX_CALENDAR_DAYS + " days");
+        }
+    }
+
+    static String searchText(String q, int page, int pageSize) {
+        String text = q.trim();
+        if (text.isEmpty() || text.length() > MAX_SEARCH_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must be 1 to " + MAX_SEARCH_LENGTH + " characters");
+        }
+        if (page < 0 || (long) page * pageSize > LessonEventService.MAX_SEARCH_OFFSET) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                              "page must be 0 to " + LessonEventService.MAX_SEARCH_OFFSET / pageSize + " for limit " + pageSize);
+        }
+        return text;
+    }
+
+    // A full page has a next one, unless it would start past MAX_SEARCH_OFFSET
+    static boolean hasNextSearchPage(int page, int pageSize, int found) {
+        return found == pageSize && (long) (page + 1) * pageSize <= LessonEventService.MAX_SEARCH_OFFSET;
+    }
+
+    static Duration minLength(int minutes) {
+        if (minutes < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "minutes must be at least 1");
+        }
+        return Duration.ofMinutes(minutes);
+    }
+
+    // Case-insensitive, so ?granularity=week and ?granularity=WEEK both work
+    static Granularity parseGranularity(String granularity) {
+        try {
+            return Granularity.valueOf(granularity.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "granularity must be one of day, week, month");
+        }
+    }
 }
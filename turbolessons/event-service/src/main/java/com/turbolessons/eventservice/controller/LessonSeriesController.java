@@ -0,0 +1,100 @@
+package com.turbolessons.eventservice.controller;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonSeries;
+import com.turbolessons.eventservice.service.LessonSeriesService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class LessonSeriesController {
+    private final LessonSeriesService service;
+
+    public LessonSeriesController(LessonSeriesService service) {
+        this.service = service;
+    }
+
+    //Create Lesson Series
+    @PostMapping("/api/lessons/series")
+    @ResponseStatus(HttpStatus.CREATED)
+    public LessonSeries createSeries(@RequestBody LessonSeries series) {
+        checkSeries(series);
+        return service.saveSeries(series);
+    }
+    //Get Lesson Series By Id
+    @GetMapping("/api/lessons/series/{id}")
+    public LessonSeries getSeries(@PathVariable Integer id) {
+        LessonSeries series = service.findSeries(id);
+        if (series == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Lesson series not found");
+        }
+        return series;
+    }
+    //Delete Lesson Series
+    @DeleteMapping("/api/lessons/series/{id}")
+    public void deleteSeries(@PathVariable Integer id) {
+        service.deleteSeries(id);
+    }
+    //Materialise Series Occurrence, optionally with edits, so it can be updated or billed by id like any lesson.
+    //Idempotent: a row that is already there comes back as it is; edit it through PUT/PATCH /api/lessons/{id}
+    @PostMapping("/api/lessons/series/{id}/occurrences/{date}")
+    public LessonEvent materialiseOccurrence(
+            @PathVariable Integer id,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestBody(required = false) LessonEvent edits) {
+        LessonEvent lesson = service.materialiseOccurrence(id, date, edits);
+        if (lesson == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No occurrence of this series on " + date);
+        }
+        return lesson;
+    }
+    //Cancel Series Occurrence
+    @DeleteMapping("/api/lessons/series/{id}/occurrences/{date}")
+    public void cancelOccurrence(
+            @PathVariable Integer id,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        if (!service.cancelOccurrence(id, date)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No occurrence of this series on " + date);
+        }
+    }
+    //Get Lesson Calendar By Teacher: stored lessons and expanded series occurrences, by start time
+    @GetMapping("/api/lessons/teacher/{teacher}/calendar")
+    public List<LessonEvent> getCalendarByTeacher(
+            @PathVariable String teacher,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        LessonEventController.checkCalendarRange(startDate, endDate);
+        return service.findTeacherCalendar(teacher, startDate, endDate);
+    }
+    //Get Lesson Calendar By Student
+    @GetMapping("/api/lessons/student/{student}/calendar")
+    public List<LessonEvent> getCalendarByStudent(
+            @PathVariable String student,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        LessonEventController.checkCalendarRange(startDate, endDate);
+        return service.findStudentCalendar(student, startDate, endDate);
+    }
+
+    static void checkSeries(LessonSeries series) {
+        if (series.getStartTime() == null || series.getEndTime() == null || !series.getEndTime().isAfter(series.getStartTime())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "startTime and a later endTime are required");
+        }
+        if (series.getIntervalWeeks() < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "intervalWeeks must be at least 1");
+        }
+        if (series.getUntilDate() != null && series.getOccurrenceCount() != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "untilDate and occurrenceCount are mutually exclusive");
+        }
+        if (series.getOccurrenceCount() != null && series.getOccurrenceCount() < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "occurrenceCount must be at least 1");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.turbolessons.eventservice.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Writes one JSON document per line onto a response stream without flushing after every value
+final class NdjsonWriter implements Closeable {
+
+    private final ObjectWriter writer;
+    private final JsonGenerator generator;
+
+    NdjsonWriter(ObjectMapper objectMapper, OutputStream out) throws IOException {
+        this.writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.generator = writer.getFactory().createGenerator(out);
+        this.generator.setRootValueSeparator(null);
+    }
+
+    void write(Object value) throws IOException {
+        writer.writeValue(generator, value);
+        generator.writeRaw('\n');
+    }
+
+    void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -0,0 +1,397 @@
+package com.turbolessons.eventservice.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.turbolessons.eventservice.dao.LessonEventReactiveRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.BillingTransition;
+import com.turbolessons.eventservice.dto.LessonCalendarSummary;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFields;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import com.turbolessons.eventservice.service.LessonArchiveService;
+import com.turbolessons.eventservice.service.LessonEventService;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static com.turbolessons.eventservice.controller.LessonEventController.NEXT_CURSOR_HEADER;
+
+/**
+ * WebFlux variant of {@link LessonEventController} for the "reactive" profile: same paths, parameters and headers.
+ * Reads come from R2DBC; a list asked for as application/x-ndjson is written row by row as the rows arrive, with the
+ * client's demand pacing the read (plain JSON arrays are still assembled before they are written). Writes go through
+ * {@link LessonEventService} on the lesson-jdbc scheduler, so versions, the change outbox and cache eviction behave
+ * exactly as in servlet mode.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveLessonEventController {
+
+    private final LessonEventReactiveRepo repository;
+    private final LessonEventService service;
+    private final LessonArchiveService archiveService;
+    private final ObjectMapper objectMapper;
+    private final Scheduler jdbc;
+
+    public ReactiveLessonEventController(LessonEventReactiveRepo repository, LessonEventService service,
+                                         LessonArchiveService archiveService, ObjectMapper objectMapper,
+                                         @Qualifier("lessonJdbcScheduler") Scheduler jdbc) {
+        this.repository = repository;
+        this.service = service;
+        this.archiveService = archiveService;
+        this.objectMapper = objectMapper;
+        this.jdbc = jdbc;
+    }
+
+    //Get All Lesson Events
+    @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getAllLessons(
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.all(), after, limit, fields);
+    }
+
+    //Stream Lesson Events as newline-delimited JSON
+    @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<LessonEvent> streamLessons(
+            @RequestParam(required = false) String teacher,
+            @RequestParam(required = false) String student,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) BillingStatus status) {
+        return repository.findLessonEvents(new LessonFilter(teacher, student, startDate, endDate, status), null, null);
+    }
+
+    //Get One Lesson Event
+    // ResponseEntityResultHandler answers a matching If-None-Match with a 304; no Last-Modified, as in LessonEventController
+    @GetMapping("/api/lessons/{id}")
+    public Mono<ResponseEntity<LessonEvent>> getLessonById(@PathVariable Integer id) {
+        return repository.findById(id)
+                .map(lesson -> ResponseEntity.ok()
+                        .eTag(LessonEventController.lessonETag(lesson.getId(), lesson.getVersion()))
+                        .body(lesson))
+                .defaultIfEmpty(ResponseEntity.ok().build());
+    }
+
+    //Get Lesson Events By Teacher
+    @GetMapping(value = "/api/lessons/teacher/{teacher}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getLessonsByTeacher(
+            @PathVariable String teacher,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            ServerWebExchange exchange) {
+        return unlessNotModified(repository.findTeacherMarker(teacher), "teacher", exchange)
+                .flatMap(marker -> page(LessonFilter.byTeacher(teacher), after, limit, fields));
+    }
+
+    //Summarize Lesson Events By Teacher per day, week or month
+    @GetMapping("/api/lessons/teacher/{teacher}/summary")
+    public Mono<LessonCalendarSummary> getLessonSummaryByTeacher(
+            @PathVariable String teacher,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "day") String granularity) {
+        if (endDate.isBefore(startDate)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "endDate must not be before startDate");
+        }
+        return blocking(() -> service.summarizeTeacherLessons(teacher, startDate, endDate,
+                                                              LessonEventController.parseGranularity(granularity)));
+    }
+
+    //Search Lesson Events by title and comments, most relevant first, combinable with the list filters
+    @GetMapping("/api/lessons/search")
+    public Mono<ResponseEntity<List<LessonEvent>>> searchLessons(
+            @RequestParam String q,
+            @RequestParam(required = false) String teacher,
+            @RequestParam(required = false) String student,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) BillingStatus status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer limit) {
+        int pageSize = LessonEventService.pageSize(limit);
+        String text = LessonEventController.searchText(q, page, pageSize);
+        LessonFilter filter = new LessonFilter(teacher, student, startDate, endDate, status);
+        return blocking(() -> service.searchLessonEvents(text, filter, page, pageSize))
+                .map(lessons -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (LessonEventController.hasNextSearchPage(page, pageSize, lessons.size())) {
+                        response.header(LessonEventController.NEXT_PAGE_HEADER, String.valueOf(page + 1));
+                    }
+                    return response.body(lessons);
+                });
+    }
+
+    //Get Free Slots By Teacher of at least minutes between startDate and the end of endDate
+    @GetMapping("/api/lessons/teacher/{teacher}/free-slots")
+    public Mono<List<TimeSlot>> getFreeSlotsByTeacher(
+            @PathVariable String teacher,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "30") int minutes) {
+        LessonEventController.checkCalendarRange(startDate, endDate);
+        Duration minLength = LessonEventController.minLength(minutes);
+        // Only a first query for the teacher reads the database, to load the index
+        return blocking(() -> service.findFreeSlots(teacher, startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay(), minLength));
+    }
+
+    //Get Lesson Events By Student
+    @GetMapping(value = "/api/lessons/student/{student}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getLessonsByStudent(
+            @PathVariable String student,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "false") boolean includeArchived,
+            ServerWebExchange exchange) {
+        if (includeArchived) {
+            return unlessNotModified(repository.findStudentMarker(student), "student-history", exchange)
+                    .flatMap(marker -> history(student, after, limit, fields));
+        }
+        return unlessNotModified(repository.findStudentMarker(student), "student", exchange)
+                .flatMap(marker -> page(LessonFilter.byStudent(student), after, limit, fields));
+    }
+
+    //Get a Student's Lesson Summary: lessons taken, upcoming, unbilled and the last lesson date
+    @GetMapping("/api/lessons/student/{student}/summary")
+    public Mono<StudentLessonSummary> getStudentSummary(@PathVariable String student) {
+        return blocking(() -> service.findStudentSummary(student));
+    }
+
+    //Get Lesson Events By Date
+    @PreAuthorize("hasAnyAuthority('SCOPE_email_client', 'SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/date/{date}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getLessonsByDate(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byDate(date), after, limit, fields);
+    }
+
+    //Get Lesson Events By Teacher and Date
+    @GetMapping(value = "/api/lessons/{teacher}/{date}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getLessonsByTeacherAndDate(
+            @PathVariable String teacher,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byTeacherAndDate(teacher, date), after, limit, fields);
+    }
+
+    //Get Lesson Events By Billing Status
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/billing/{status}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getLessonsByBillingStatus(
+            @PathVariable BillingStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byBillingStatus(status), after, limit, fields);
+    }
+
+    //Get Lesson Events By Teacher and Billing Status
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/teacher/{teacher}/billing/{status}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getLessonsByTeacherAndBillingStatus(
+            @PathVariable String teacher,
+            @PathVariable BillingStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byTeacherAndBillingStatus(teacher, status), after, limit, fields);
+    }
+
+    //Get Lesson Events By Date Range and Billing Status
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @GetMapping(value = "/api/lessons/billing/{status}/daterange", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<?>>> getLessonsByDateRangeAndBillingStatus(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @PathVariable BillingStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String fields) {
+        return page(LessonFilter.byDateRangeAndBillingStatus(startDate, endDate, status), after, limit, fields);
+    }
+
+    //Export Lesson Events By Date Range and Billing Status as CSV (default) or NDJSON; rows are encoded here and go out
+    //as R2DBC reads them, at the pace the client takes them
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @GetMapping("/api/lessons/billing/{status}/export")
+    public ResponseEntity<Flux<DataBuffer>> exportLessonsByDateRangeAndBillingStatus(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @PathVariable BillingStatus status,
+            @RequestParam(defaultValue = "csv") String format) {
+        boolean csv = LessonEventController.exportFormat(format, startDate, endDate);
+        Flux<LessonEvent> lessons = repository.findLessonEvents(LessonFilter.byDateRangeAndBillingStatus(startDate, endDate, status), null, null);
+        return ResponseEntity.ok()
+                .contentType(csv ? LessonEventController.EXPORT_CSV : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, LessonEventController.exportDisposition(status, startDate, endDate, csv))
+                .body(csv
+                      ? Flux.concat(Flux.just(LessonCsv.HEADER), lessons.map(LessonCsv::line))
+                              .map(line -> DefaultDataBufferFactory.sharedInstance.wrap(line.getBytes(StandardCharsets.UTF_8)))
+                      : lessons.handle((lesson, sink) -> {
+                          try {
+                              byte[] json = objectMapper.writeValueAsBytes(lesson);
+                              sink.next(DefaultDataBufferFactory.sharedInstance.allocateBuffer(json.length + 1).write(json).write((byte) '\n'));
+                          } catch (JsonProcessingException e) {
+                              sink.error(e);
+                          }
+                      }));
+    }
+
+    //Update Lesson Event Billing Status
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @PatchMapping("/api/lessons/{id}/billing/{status}")
+    public Mono<Void> updateLessonBillingStatus(
+            @PathVariable Integer id,
+            @PathVariable BillingStatus status) {
+        return blocking(() -> service.updateLessonEventBillingStatus(id, status));
+    }
+
+    //Bulk Update Lesson Event Billing Status
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @PatchMapping("/api/lessons/billing")
+    public Mono<List<Integer>> transitionLessonBillingStatus(@RequestBody BillingTransition transition) {
+        if (transition.ids() == null || transition.expectedStatus() == null || transition.targetStatus() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ids, expectedStatus and targetStatus are required");
+        }
+        return blocking(() -> service.transitionBillingStatus(transition.ids(), transition.expectedStatus(), transition.targetStatus()));
+    }
+
+    //Create Lesson Event
+    @PostMapping("/api/lessons")
+    public Mono<LessonEvent> createLesson(@RequestBody LessonEvent lesson) {
+        return blocking(() -> {
+            service.saveLessonEvent(lesson);
+            return lesson;
+        });
+    }
+
+    //Create Lesson Events in bulk
+    @PostMapping("/api/lessons/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<List<LessonEvent>> createLessons(@RequestBody List<LessonEvent> lessons) {
+        LessonEventController.checkBatch(lessons);
+        return blocking(() -> service.saveLessonEvents(lessons));
+    }
+
+    //Patch Lesson Event with a JSON merge patch; the expected version comes from If-Match or a "version" member
+    @PatchMapping(value = "/api/lessons/{id}", consumes = {LessonEventController.MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Mono<ResponseEntity<Void>> patchLesson(
+            @PathVariable Integer id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode body) {
+        LessonPatch patch = LessonEventController.parsePatch(body, objectMapper);
+        long expectedVersion = LessonEventController.expectedVersion(id, ifMatch, patch);
+        return Mono.fromCallable(() -> service.patchLessonEvent(id, expectedVersion, patch))
+                .subscribeOn(jdbc)
+                .onErrorMap(OptimisticLockingFailureException.class,
+                            e -> new ResponseStatusException(HttpStatus.CONFLICT, "Lesson " + id + " is no longer at version " + expectedVersion))
+                .map(version -> ResponseEntity.noContent().eTag(LessonEventController.lessonETag(id, version)).<Void>build())
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No lesson " + id)));
+    }
+
+    //Update Lesson Event
+    @PreAuthorize("hasAuthority('SCOPE_stripe_client')")
+    @PutMapping("/api/lessons/{id}")
+    public Mono<Void> updateLesson(@PathVariable Integer id, @RequestBody LessonEvent lesson) {
+        return blocking(() -> service.updateLessonEvent(id, lesson));
+    }
+
+    //Delete Lesson Event
+    @DeleteMapping("/api/lessons/{id}")
+    public Mono<Void> deleteLesson(@PathVariable Integer id) {
+        return blocking(() -> service.deleteLessonEvent(id));
+    }
+
+    // Same contract as LessonEventController.page: no after/limit streams every match, otherwise one keyset page
+    // (at most MAX_PAGE_SIZE rows, collected so the next cursor can go in a header before the body)
+    private Mono<ResponseEntity<Flux<?>>> page(LessonFilter filter, String after, Integer limit, String fields) {
+        List<String> fieldNames = fields == null ? null : LessonEventController.parseFields(fields);
+        if (after == null && limit == null) {
+            return Mono.just(ResponseEntity.ok(project(repository.findLessonEvents(filter, null, null), fieldNames)));
+        }
+        LessonCursor cursor = after == null ? null : LessonEventController.parseCursor(after);
+        int pageSize = LessonEventService.pageSize(limit);
+        return repository.findLessonEvents(filter, cursor, pageSize)
+                .collectList()
+                .map(lessons -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (lessons.size() == pageSize) {
+                        response.header(NEXT_CURSOR_HEADER, LessonCursor.of(lessons.get(lessons.size() - 1)).encode());
+                    }
+                    return response.body(project(Flux.fromIterable(lessons), fieldNames));
+                });
+    }
+
+    // History merges two tables in the service, on the lesson-jdbc scheduler
+    private Mono<ResponseEntity<Flux<?>>> history(String student, String after, Integer limit, String fields) {
+        List<String> fieldNames = fields == null ? null : LessonEventController.parseFields(fields);
+        if (after == null && limit == null) {
+            return blocking(() -> archiveService.findStudentHistory(student))
+                    .map(lessons -> ResponseEntity.ok(project(Flux.fromIterable(lessons), fieldNames)));
+        }
+        LessonCursor cursor = after == null ? null : LessonEventController.parseCursor(after);
+        int pageSize = LessonEventService.pageSize(limit);
+        return blocking(() -> archiveService.findStudentHistoryPage(student, cursor, pageSize))
+                .map(lessons -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (lessons.size() == pageSize) {
+                        response.header(NEXT_CURSOR_HEADER, LessonCursor.of(lessons.get(lessons.size() - 1)).encode());
+                    }
+                    return response.body(project(Flux.fromIterable(lessons), fieldNames));
+                });
+    }
+
+    private static Flux<?> project(Flux<LessonEvent> lessons, List<String> fieldNames) {
+        return fieldNames == null ? lessons : lessons.map(lesson -> LessonFields.of(lesson, fieldNames));
+    }
+
+    // Completes empty once checkNotModified has turned the response into a 304
+    private static Mono<LessonMarker> unlessNotModified(Mono<LessonMarker> marker, String scope, ServerWebExchange exchange) {
+        return marker.filter(current -> !exchange.checkNotModified(current.etag(scope)));
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(jdbc);
+    }
+
+    private Mono<Void> blocking(Runnable call) {
+        return Mono.fromRunnable(call).subscribeOn(jdbc).then();
+    }
+}
@@ -0,0 +1,88 @@
+package com.turbolessons.eventservice.controller;
+
+import com.turbolessons.eventservice.dto.LessonChange;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One SSE subscriber's changes on their way out. The poller queues them and a sender thread writes them, so a client
+// that stops reading ties up at most one sender thread and never the shared poller. At most one sender works on a
+// subscriber at a time, which keeps the events in order.
+final class SseChangeSubscriber {
+
+    private final SseEmitter emitter;
+    private final Executor sender;
+    private final BlockingQueue<LessonChange> queue;
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile Throwable error;
+    private volatile boolean closed;
+
+    SseChangeSubscriber(SseEmitter emitter, Executor sender, int capacity) {
+        this.emitter = emitter;
+        this.sender = sender;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    // How many more changes fit; the poller never reads more than this
+    int room() {
+        return queue.remainingCapacity();
+    }
+
+    void enqueue(List<LessonChange> changes) {
+        if (closed || error != null) {
+            return;
+        }
+        queue.addAll(changes);
+        drain();
+    }
+
+    // Ends the stream with an error once the change being written, if any, has gone out
+    void fail(Throwable e) {
+        if (error == null) {
+            error = e;
+        }
+        queue.clear();
+        drain();
+    }
+
+    // The emitter completed, timed out or failed on its own; whatever is still queued is dropped
+    void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        sender.execute(() -> {
+            int missed = 1;
+            do {
+                try {
+                    LessonChange change;
+                    while (!closed && error == null && (change = queue.poll()) != null) {
+                        emitter.send(SseEmitter.event()
+                                             .id(String.valueOf(change.getSeq()))
+                                             .name(LessonChangeController.EVENT_NAME)
+                                             .data(change, MediaType.APPLICATION_JSON));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Client went away or the emitter already completed
+                    fail(e);
+                }
+                if (error != null && !closed) {
+                    closed = true;
+                    emitter.completeWithError(error);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        });
+    }
+}
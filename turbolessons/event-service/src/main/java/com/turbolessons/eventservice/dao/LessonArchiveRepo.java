@@ -0,0 +1,112 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@code lesson_event_archive}, which holds lessons {@link com.turbolessons.eventservice.service.LessonArchiveService}
+ * moved out of {@code lesson_event}. Archived lessons are never written again, so the table has no entity: rows are
+ * copied in with one INSERT ... SELECT and read back as detached {@link LessonEvent}s. Statements run on the JDBC
+ * connection of the surrounding JPA transaction.
+ */
+@Repository
+public class LessonArchiveRepo {
+
+    private static final String COLUMNS = "id, start_time, end_time, title, student, student_email, teacher, teacher_email, "
+                                          + "date, comments, billing_status, version, last_modified, series_id, occurrence_date";
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    public LessonArchiveRepo(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // Copies the given lessons; the caller deletes them from lesson_event in the same transaction
+    public int copyFromLessonEvents(Collection<Integer> ids, LocalDateTime archivedAt) {
+        return jdbc.update("INSERT INTO lesson_event_archive (" + COLUMNS + ", archived_at) SELECT " + COLUMNS
+                           + ", :archivedAt FROM lesson_event WHERE id IN (:ids)",
+                           new MapSqlParameterSource("ids", ids).addValue("archivedAt", archivedAt));
+    }
+
+    // Same (date, id) order and cursor as LessonEventRepo.findLessonEventPage, so the two can be merged page by page;
+    // a null limit reads every match
+    public List<LessonEvent> findStudentPage(String student, LessonCursor after, Integer limit) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM lesson_event_archive WHERE student = :student");
+        MapSqlParameterSource params = new MapSqlParameterSource("student", student);
+        if (after != null) {
+            sql.append(" AND (date > :afterDate OR (date = :afterDate AND id > :afterId))");
+            params.addValue("afterDate", after.date()).addValue("afterId", after.id());
+        }
+        sql.append(" ORDER BY date, id");
+        if (limit != null) {
+            sql.append(" LIMIT ").append((int) limit);
+        }
+        return jdbc.query(sql.toString(), params, (rs, row) -> lessonEvent(rs));
+    }
+
+    // untilDate is exclusive, as in LessonEventRepo
+    public List<LessonEvent> findTeacherLessonsInDateRange(String teacher, LocalDate fromDate, LocalDate untilDate) {
+        return findInDateRange("teacher", teacher, fromDate, untilDate);
+    }
+
+    public List<LessonEvent> findStudentLessonsInDateRange(String student, LocalDate fromDate, LocalDate untilDate) {
+        return findInDateRange("student", student, fromDate, untilDate);
+    }
+
+    public List<SeriesOccurrence> findSeriesOccurrences(Collection<Integer> seriesIds, LocalDate fromDate, LocalDate toDate) {
+        return jdbc.query("SELECT series_id, occurrence_date FROM lesson_event_archive WHERE series_id IN (:seriesIds) "
+                          + "AND occurrence_date >= :fromDate AND occurrence_date <= :toDate",
+                          new MapSqlParameterSource("seriesIds", seriesIds).addValue("fromDate", fromDate).addValue("toDate", toDate),
+                          (rs, row) -> new SeriesOccurrence(rs.getInt("series_id"), rs.getObject("occurrence_date", LocalDate.class)));
+    }
+
+    public Optional<LessonEvent> findBySeriesIdAndOccurrenceDate(Integer seriesId, LocalDate occurrenceDate) {
+        return jdbc.query("SELECT " + COLUMNS + " FROM lesson_event_archive WHERE series_id = :seriesId AND occurrence_date = :occurrenceDate",
+                          new MapSqlParameterSource("seriesId", seriesId).addValue("occurrenceDate", occurrenceDate),
+                          (rs, row) -> lessonEvent(rs))
+                .stream().findFirst();
+    }
+
+    private List<LessonEvent> findInDateRange(String column, String value, LocalDate fromDate, LocalDate untilDate) {
+        return jdbc.query("SELECT " + COLUMNS + " FROM lesson_event_archive WHERE " + column + " = :value "
+                          + "AND date >= :fromDate AND date < :untilDate",
+                          new MapSqlParameterSource("value", value).addValue("fromDate", fromDate).addValue("untilDate", untilDate),
+                          (rs, row) -> lessonEvent(rs));
+    }
+
+    private static LessonEvent lessonEvent(ResultSet rs) throws SQLException {
+        LessonEvent lesson = new LessonEvent();
+        lesson.setId(rs.getInt("id"));
+        LocalDateTime startTime = rs.getObject("start_time", LocalDateTime.class);
+        if (startTime != null) {
+            lesson.setStartTime(startTime);
+        }
+        lesson.setEndTime(rs.getObject("end_time", LocalDateTime.class));
+        lesson.setTitle(rs.getString("title"));
+        lesson.setStudent(rs.getString("student"));
+        lesson.setStudentEmail(rs.getString("student_email"));
+        lesson.setTeacher(rs.getString("teacher"));
+        lesson.setTeacherEmail(rs.getString("teacher_email"));
+        lesson.setDate(rs.getObject("date", LocalDate.class));
+        lesson.setComments(rs.getString("comments"));
+        lesson.setBillingStatus(BillingStatus.valueOf(rs.getString("billing_status")));
+        lesson.setVersion(rs.getLong("version"));
+        lesson.setLastModified(rs.getObject("last_modified", LocalDateTime.class));
+        lesson.setSeriesId(rs.getObject("series_id", Integer.class));
+        lesson.setOccurrenceDate(rs.getObject("occurrence_date", LocalDate.class));
+        return lesson;
+    }
+}
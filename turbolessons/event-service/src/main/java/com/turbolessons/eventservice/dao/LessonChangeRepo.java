@@ -0,0 +1,33 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LessonChangeRepo extends JpaRepository<LessonChange, Long>, LessonChangeRepoCustom {
+
+    // Changes after a feed position in sequence order, committed or not yet overtaken; LessonChangeService decides how
+    // far into them it is safe to read
+    @Query("SELECT c FROM LessonChange c WHERE c.seq > :since ORDER BY c.seq")
+    List<LessonChange> findChangesSince(@Param("since") long since, Pageable page);
+
+    // The clock recorded_at is set from
+    @Query(value = "SELECT LOCALTIMESTAMP(6)", nativeQuery = true)
+    LocalDateTime currentTime();
+
+    // One payload-less outbox row per lesson a bulk statement touched, written as a single INSERT ... SELECT so the
+    // lessons never have to be loaded
+    @Modifying
+    @Query(value = "INSERT INTO lesson_change (lesson_id, change_type, billing_status, changed_at) "
+                   + "SELECT id, :changeType, billing_status, :changedAt FROM lesson_event WHERE id IN (:ids)", nativeQuery = true)
+    int recordChanges(@Param("ids") Collection<Integer> ids, @Param("changeType") String changeType, @Param("changedAt") LocalDateTime changedAt);
+}
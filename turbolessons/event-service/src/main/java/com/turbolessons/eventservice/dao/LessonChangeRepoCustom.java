@@ -0,0 +1,11 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonChange;
+
+import java.util.List;
+
+public interface LessonChangeRepoCustom {
+
+    // JDBC-batched insert; seq is left to the database, so the entities are not updated with it
+    int insertChanges(List<LessonChange> changes);
+}
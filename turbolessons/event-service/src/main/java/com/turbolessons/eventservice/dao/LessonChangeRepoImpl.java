@@ -0,0 +1,47 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonChange;
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+class LessonChangeRepoImpl implements LessonChangeRepoCustom {
+
+    private static final String INSERT = "INSERT INTO lesson_change (lesson_id, change_type, billing_status, changed_at, payload) "
+                                         + "VALUES (?, ?, ?, ?, ?)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // The seq column is IDENTITY, which stops Hibernate from batching these inserts; going through the session's
+    // connection keeps them in the caller's transaction without a round trip per row
+    @Override
+    public int insertChanges(List<LessonChange> changes) {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                for (LessonChange change : changes) {
+                    statement.setInt(1, change.getLessonId());
+                    statement.setString(2, change.getChangeType().name());
+                    if (change.getBillingStatus() == null) {
+                        statement.setNull(3, Types.VARCHAR);
+                    } else {
+                        statement.setString(3, change.getBillingStatus().name());
+                    }
+                    statement.setTimestamp(4, Timestamp.valueOf(change.getChangedAt()));
+                    statement.setString(5, change.getPayload());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                return changes.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,128 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import io.r2dbc.spi.Row;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * R2DBC reads behind the WebFlux controller of the "reactive" profile. Rows are mapped one at a time as the driver
+ * hands them over, so a slow or cancelled subscriber holds back or stops the read instead of the whole result being
+ * buffered. Writes stay on {@link LessonEventRepo} so versions, the change outbox and the caches keep a single owner.
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class LessonEventReactiveRepo {
+
+    private static final String COLUMNS = "id, start_time, end_time, title, student, student_email, teacher, "
+                                          + "teacher_email, date, comments, billing_status, version, last_modified, series_id, occurrence_date";
+
+    private final DatabaseClient client;
+
+    public LessonEventReactiveRepo(DatabaseClient client) {
+        this.client = client;
+    }
+
+    // Same (date, id) ordering and half-open date ranges as LessonEventRepoImpl; a null limit reads every match
+    public Flux<LessonEvent> findLessonEvents(LessonFilter filter, LessonCursor after, Integer limit) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(COLUMNS).append(" FROM lesson_event WHERE 1 = 1");
+        Map<String, Object> binds = new LinkedHashMap<>();
+        if (filter.teacher() != null) {
+            sql.append(" AND teacher = :teacher");
+            binds.put("teacher", filter.teacher());
+        }
+        if (filter.student() != null) {
+            sql.append(" AND student = :student");
+            binds.put("student", filter.student());
+        }
+        if (filter.fromDate() != null) {
+            sql.append(" AND date >= :fromDate");
+            binds.put("fromDate", filter.fromDate());
+        }
+        if (filter.toDate() != null) {
+            sql.append(" AND date < :untilDate");
+            binds.put("untilDate", filter.toDate().plusDays(1));
+        }
+        if (filter.billingStatus() != null) {
+            sql.append(" AND billing_status = :billingStatus");
+            binds.put("billingStatus", filter.billingStatus().name());
+        }
+        if (after != null) {
+            sql.append(" AND (date > :afterDate OR (date = :afterDate AND id > :afterId))");
+            binds.put("afterDate", after.date());
+            binds.put("afterId", after.id());
+        }
+        sql.append(" ORDER BY date, id");
+        if (limit != null) {
+            sql.append(" LIMIT ").append((int) limit);
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = client.sql(sql.toString());
+        for (Map.Entry<String, Object> bind : binds.entrySet()) {
+            spec = spec.bind(bind.getKey(), bind.getValue());
+        }
+        return spec.map((row, metadata) -> lessonEvent(row)).all();
+    }
+
+    public Mono<LessonEvent> findById(Integer id) {
+        return client.sql("SELECT " + COLUMNS + " FROM lesson_event WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> lessonEvent(row))
+                .one();
+    }
+
+    // Same markers as LessonEventRepo.findTeacherMarker/findStudentMarker, off the (x, version) indexes
+    public Mono<LessonMarker> findTeacherMarker(String teacher) {
+        return marker("teacher", teacher);
+    }
+
+    public Mono<LessonMarker> findStudentMarker(String student) {
+        return marker("student", student);
+    }
+
+    private Mono<LessonMarker> marker(String column, String value) {
+        return client.sql("SELECT COUNT(*) AS lessons, COALESCE(SUM(version), 0) AS versions, COALESCE(SUM(id), 0) AS ids "
+                          + "FROM lesson_event WHERE " + column + " = :value")
+                .bind("value", value)
+                .map((row, metadata) -> new LessonMarker(row.get("lessons", Number.class).longValue(),
+                                                         row.get("versions", Number.class).longValue(),
+                                                         row.get("ids", Number.class).longValue()))
+                .one();
+    }
+
+    private static LessonEvent lessonEvent(Row row) {
+        LessonEvent lesson = new LessonEvent();
+        lesson.setId(row.get("id", Integer.class));
+        LocalDateTime startTime = row.get("start_time", LocalDateTime.class);
+        if (startTime != null) {
+            lesson.setStartTime(startTime);
+        }
+        lesson.setEndTime(row.get("end_time", LocalDateTime.class));
+        lesson.setTitle(row.get("title", String.class));
+        lesson.setStudent(row.get("student", String.class));
+        lesson.setStudentEmail(row.get("student_email", String.class));
+        lesson.setTeacher(row.get("teacher", String.class));
+        lesson.setTeacherEmail(row.get("teacher_email", String.class));
+        // setStartTime derives the date; the stored column is what the date filters matched on
+        lesson.setDate(row.get("date", LocalDate.class));
+        lesson.setComments(row.get("comments", String.class));
+        lesson.setBillingStatus(BillingStatus.valueOf(row.get("billing_status", String.class)));
+        lesson.setVersion(row.get("version", Long.class));
+        lesson.setLastModified(row.get("last_modified", LocalDateTime.class));
+        lesson.setSeriesId(row.get("series_id", Integer.class));
+        lesson.setOccurrenceDate(row.get("occurrence_date", LocalDate.class));
+        return lesson;
+    }
+}
@@ -1,23 +1,48 @@
 package com.turbolessons.eventservice.dao;
 
 import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonDayCount;
 import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import com.turbolessons.eventservice.dto.LessonSlot;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import com.turbolessons.eventservice.dto.StudentLessonCount;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface LessonEventRepo extends JpaRepository<LessonEvent, Integer> {
+public interface LessonEventRepo extends JpaRepository<LessonEvent, Integer>, LessonEventRepoCustom {
     List<LessonEvent> findLessonEventByStudent(String student);
     List<LessonEvent> findLessonEventByTeacher(String teacher);
-    @Query(value = "SELECT * FROM lesson_event WHERE DATE(date) = :date", nativeQuery = true)
-    List<LessonEvent> findLessonEventByDate(@Param("date") LocalDate date);
-    @Query(value = "SELECT * FROM lesson_event WHERE teacher = :teacher AND DATE(date) = :date", nativeQuery = true)
-    List<LessonEvent> findLessonEventByTeacherAndDate(String teacher, LocalDate date);
+    // Date lookups are half-open ranges on the bare column so the (x, date) indexes can be range-scanned
+    @Query(value = "SELECT * FROM lesson_event WHERE date >= :fromDate AND date < :untilDate", nativeQuery = true)
+    List<LessonEvent> findLessonEventInDateRange(@Param("fromDate") LocalDate fromDate, @Param("untilDate") LocalDate untilDate);
+
+    default List<LessonEvent> findLessonEventByDate(LocalDate date) {
+        return findLessonEventInDateRange(date, date.plusDays(1));
+    }
+
+    @Query(value = "SELECT * FROM lesson_event WHERE teacher = :teacher AND date >= :fromDate AND date < :untilDate", nativeQuery = true)
+    List<LessonEvent> findLessonEventByTeacherInDateRange(@Param("teacher") String teacher, @Param("fromDate") LocalDate fromDate, @Param("untilDate") LocalDate untilDate);
+
+    @Query(value = "SELECT * FROM lesson_event WHERE student = :student AND date >= :fromDate AND date < :untilDate", nativeQuery = true)
+    List<LessonEvent> findLessonEventByStudentInDateRange(@Param("student") String student, @Param("fromDate") LocalDate fromDate, @Param("untilDate") LocalDate untilDate);
+
+    default List<LessonEvent> findLessonEventByTeacherAndDate(String teacher, LocalDate date) {
+        return findLessonEventByTeacherInDateRange(teacher, date, date.plusDays(1));
+    }
     
     // Add method to find lesson events by billing status
     List<LessonEvent> findLessonEventByBillingStatus(BillingStatus billingStatus);
@@ -26,9 +51,96 @@ public interface LessonEventRepo extends JpaRepository<LessonEvent, Integer> {
     List<LessonEvent> findLessonEventByTeacherAndBillingStatus(String teacher, BillingStatus billingStatus);
     
     // Add method to find lesson events by date range and billing status
-    @Query(value = "SELECT * FROM lesson_event WHERE DATE(date) BETWEEN :startDate AND :endDate AND billing_status = :billingStatus", nativeQuery = true)
-    List<LessonEvent> findLessonEventByDateRangeAndBillingStatus(
-            @Param("startDate") LocalDate startDate, 
-            @Param("endDate") LocalDate endDate, 
+    @Query(value = "SELECT * FROM lesson_event WHERE billing_status = :billingStatus AND date >= :fromDate AND date < :untilDate", nativeQuery = true)
+    List<LessonEvent> findLessonEventByBillingStatusInDateRange(
+            @Param("fromDate") LocalDate fromDate,
+            @Param("untilDate") LocalDate untilDate,
             @Param("billingStatus") String billingStatus);
+
+    // endDate is inclusive, matching the /daterange endpoint
+    default List<LessonEvent> findLessonEventByDateRangeAndBillingStatus(LocalDate startDate, LocalDate endDate, String billingStatus) {
+        return findLessonEventByBillingStatusInDateRange(startDate, endDate.plusDays(1), billingStatus);
+    }
+
+    // Locks the rows that are eligible for a billing transition so the following UPDATE changes exactly these ids
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l.id FROM LessonEvent l WHERE l.id IN :ids AND l.billingStatus = :expectedStatus")
+    List<Integer> lockIdsInBillingStatus(@Param("ids") Collection<Integer> ids, @Param("expectedStatus") BillingStatus expectedStatus);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("UPDATE LessonEvent l SET l.billingStatus = :targetStatus, l.version = l.version + 1, l.lastModified = :modifiedAt "
+           + "WHERE l.id IN :ids AND l.billingStatus = :expectedStatus")
+    int updateBillingStatus(@Param("ids") Collection<Integer> ids,
+                            @Param("expectedStatus") BillingStatus expectedStatus,
+                            @Param("targetStatus") BillingStatus targetStatus,
+                            @Param("modifiedAt") LocalDateTime modifiedAt);
+
+    // Locks the oldest lessons that are due for the archive, a batch at a time, off the (billing_status, date) index
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l.id FROM LessonEvent l WHERE l.billingStatus IN :statuses AND l.date < :cutoff ORDER BY l.date, l.id")
+    List<Integer> lockArchivableIds(@Param("statuses") Collection<BillingStatus> statuses, @Param("cutoff") LocalDate cutoff, Pageable page);
+
+    @Modifying(clearAutomatically = true, flushAutomatically = true)
+    @Query("DELETE FROM LessonEvent l WHERE l.id IN :ids")
+    int deleteLessonEventsById(@Param("ids") Collection<Integer> ids);
+
+    // Per-day counts and scheduled minutes for one teacher, read off the (teacher, date) index; untilDate is exclusive
+    @Query(value = "SELECT date AS lessonDate, billing_status AS billingStatus, COUNT(*) AS lessons, "
+                   + "COALESCE(SUM(TIMESTAMPDIFF(MINUTE, start_time, end_time)), 0) AS minutes "
+                   + "FROM lesson_event WHERE teacher = :teacher AND date >= :fromDate AND date < :untilDate "
+                   + "GROUP BY date, billing_status ORDER BY date", nativeQuery = true)
+    List<LessonDayCount> countLessonsByDay(@Param("teacher") String teacher,
+                                           @Param("fromDate") LocalDate fromDate,
+                                           @Param("untilDate") LocalDate untilDate);
+
+    // Change markers for the per-teacher/per-student collections, from versions and ids rather than lastModified, which
+    // is each instance's clock; they come off the (x, version) indexes, which carry the id, without touching rows
+    @Query("SELECT new com.turbolessons.eventservice.dto.LessonMarker(COUNT(l), COALESCE(SUM(l.version), 0), COALESCE(SUM(l.id), 0)) "
+           + "FROM LessonEvent l WHERE l.teacher = :teacher")
+    LessonMarker findTeacherMarker(@Param("teacher") String teacher);
+
+    @Query("SELECT new com.turbolessons.eventservice.dto.LessonMarker(COUNT(l), COALESCE(SUM(l.version), 0), COALESCE(SUM(l.id), 0)) "
+           + "FROM LessonEvent l WHERE l.student = :student")
+    LessonMarker findStudentMarker(@Param("student") String student);
+
+    // Occurrences of these series that have their own row, wherever the row has since been moved to
+    @Query("SELECT new com.turbolessons.eventservice.dto.SeriesOccurrence(l.seriesId, l.occurrenceDate) FROM LessonEvent l "
+           + "WHERE l.seriesId IN :seriesIds AND l.occurrenceDate >= :fromDate AND l.occurrenceDate <= :toDate")
+    List<SeriesOccurrence> findSeriesOccurrences(@Param("seriesIds") Collection<Integer> seriesIds,
+                                                 @Param("fromDate") LocalDate fromDate,
+                                                 @Param("toDate") LocalDate toDate);
+
+    Optional<LessonEvent> findBySeriesIdAndOccurrenceDate(Integer seriesId, LocalDate occurrenceDate);
+
+    // Every lesson's time for one teacher, to build the interval index in TeacherSchedule
+    @Query("SELECT new com.turbolessons.eventservice.dto.LessonSlot(l.id, l.startTime, l.endTime) FROM LessonEvent l WHERE l.teacher = :teacher")
+    List<LessonSlot> findTeacherSlots(@Param("teacher") String teacher);
+
+    // The teacher's committed lessons overlapping [start, end) other than excludedId, off the (teacher, date) index; a
+    // locking read, so it sees the latest commits rather than the transaction's snapshot. Dates start the day before,
+    // for a lesson late in the evening that runs into the window.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l.id FROM LessonEvent l WHERE l.teacher = :teacher AND l.date >= :fromDate AND l.date <= :toDate "
+           + "AND l.startTime < :end AND l.endTime > :start AND l.id <> :excludedId ORDER BY l.startTime")
+    List<Integer> lockOverlapping(@Param("teacher") String teacher, @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate,
+                                  @Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("excludedId") Integer excludedId);
+
+    default List<Integer> lockOverlapping(String teacher, LocalDateTime start, LocalDateTime end, Integer excludedId) {
+        return lockOverlapping(teacher, start.toLocalDate().minusDays(1), end.toLocalDate(), start, end, excludedId);
+    }
+
+    // As lockOverlapping, with the times, for checking a whole batch of the teacher's lessons against one read
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT new com.turbolessons.eventservice.dto.LessonSlot(l.id, l.startTime, l.endTime) FROM LessonEvent l "
+           + "WHERE l.teacher = :teacher AND l.date >= :fromDate AND l.date <= :toDate AND l.startTime < :end AND l.endTime > :start")
+    List<LessonSlot> lockSlotsOverlapping(@Param("teacher") String teacher, @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate,
+                                          @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    default List<LessonSlot> lockSlotsOverlapping(String teacher, LocalDateTime start, LocalDateTime end) {
+        return lockSlotsOverlapping(teacher, start.toLocalDate().minusDays(1), end.toLocalDate(), start, end);
+    }
+
+    // How many of these lessons each student has, to move the student summaries after a bulk change
+    @Query("SELECT l.student AS student, COUNT(l) AS lessons FROM LessonEvent l WHERE l.id IN :ids AND l.student IS NOT NULL GROUP BY l.student")
+    List<StudentLessonCount> countLessonsByStudent(@Param("ids") Collection<Integer> ids);
 }
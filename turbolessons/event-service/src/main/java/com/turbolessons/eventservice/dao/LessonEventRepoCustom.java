@@ -0,0 +1,36 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFields;
+import com.turbolessons.eventservice.dto.LessonFilter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public interface LessonEventRepoCustom {
+
+    // Keyset page ordered by (date, id); a null cursor starts from the beginning
+    List<LessonEvent> findLessonEventPage(LessonFilter filter, LessonCursor after, int limit);
+
+    // Same ordering and cursor as findLessonEventPage, but only the named columns are selected; a null limit reads
+    // every match
+    List<LessonFields> findLessonEventFields(LessonFilter filter, List<String> fields, LessonCursor after, Integer limit);
+
+    // One UPDATE of just the given attributes, applied only while the row is still at expectedVersion; returns the
+    // rows changed (0 for a stale version or a missing lesson)
+    int patchLessonEvent(Integer id, long expectedVersion, Map<String, Object> changes, LocalDateTime modifiedAt);
+
+    // Lessons whose title or comments match the search text, most relevant first (ties by id), narrowed by the filter;
+    // offset/limit paging since relevance has no stable keyset
+    List<LessonEvent> searchLessonEvents(String text, LessonFilter filter, int offset, int limit);
+
+    // Server-side cursor over every matching row; must be consumed inside a transaction and closed
+    Stream<LessonEvent> streamLessonEvents(LessonFilter filter, int fetchSize);
+
+    // Creates the teacher's lock row if need be and holds its lock until commit; a second caller for the same teacher,
+    // on any instance, waits here
+    void lockTeacherSchedule(String teacher);
+}
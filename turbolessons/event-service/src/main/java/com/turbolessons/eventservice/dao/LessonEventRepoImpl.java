@@ -0,0 +1,172 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFields;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+class LessonEventRepoImpl implements LessonEventRepoCustom {
+
+    // Takes the row's lock whether it inserts or finds one, like the student summary upsert
+    private static final String LOCK_TEACHER = "INSERT INTO teacher_schedule_lock (teacher) VALUES (:teacher) "
+                                               + "ON DUPLICATE KEY UPDATE teacher = teacher";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<LessonEvent> findLessonEventPage(LessonFilter filter, LessonCursor after, int limit) {
+        return query(filter, after)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<LessonEvent> streamLessonEvents(LessonFilter filter, int fetchSize) {
+        // Detach as we go so the persistence context doesn't grow with the result set
+        return query(filter, null)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .peek(entityManager::detach);
+    }
+
+    @Override
+    public List<LessonFields> findLessonEventFields(LessonFilter filter, List<String> fields, LessonCursor after, Integer limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> cq = cb.createTupleQuery();
+        Root<LessonEvent> lesson = cq.from(LessonEvent.class);
+
+        // date and id are always read so the last row can become the next cursor
+        Set<String> columns = new LinkedHashSet<>(fields);
+        columns.add("date");
+        columns.add("id");
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String column : columns) {
+            selections.add(lesson.get(column).alias(column));
+        }
+
+        cq.multiselect(selections)
+          .where(predicates(cb, lesson, filter, after))
+          .orderBy(cb.asc(lesson.get("date")), cb.asc(lesson.get("id")));
+        TypedQuery<Tuple> query = entityManager.createQuery(cq);
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+
+        List<LessonFields> rows = new ArrayList<>();
+        for (Tuple tuple : query.getResultList()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String field : fields) {
+                values.put(field, tuple.get(field));
+            }
+            rows.add(new LessonFields(new LessonCursor(tuple.get("date", LocalDate.class), tuple.get("id", Integer.class)), values));
+        }
+        return rows;
+    }
+
+    @Override
+    public List<LessonEvent> searchLessonEvents(String text, LessonFilter filter, int offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LessonEvent> cq = cb.createQuery(LessonEvent.class);
+        Root<LessonEvent> lesson = cq.from(LessonEvent.class);
+
+        Expression<Double> score = cb.function(MatchAgainstFunction.NAME, Double.class,
+                                               lesson.get("title"), lesson.get("comments"), cb.parameter(String.class, "text"));
+        List<Predicate> predicates = new ArrayList<>(List.of(predicates(cb, lesson, filter, null)));
+        predicates.add(cb.greaterThan(score, 0.0));
+        cq.select(lesson)
+          .where(predicates.toArray(new Predicate[0]))
+          .orderBy(cb.desc(score), cb.asc(lesson.get("id")));
+        return entityManager.createQuery(cq)
+                .setParameter("text", text)
+                .setFirstResult(offset)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public int patchLessonEvent(Integer id, long expectedVersion, Map<String, Object> changes, LocalDateTime modifiedAt) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<LessonEvent> update = cb.createCriteriaUpdate(LessonEvent.class);
+        Root<LessonEvent> lesson = update.from(LessonEvent.class);
+
+        changes.forEach((attribute, value) -> update.set(attribute, value));
+        Path<Long> version = lesson.get("version");
+        update.set(version, cb.sum(version, 1L))
+              .set(lesson.<LocalDateTime>get("lastModified"), modifiedAt)
+              .where(cb.equal(lesson.get("id"), id), cb.equal(version, expectedVersion));
+        // Same contract as @Modifying(flushAutomatically = true, clearAutomatically = true) on the JPQL updates
+        entityManager.flush();
+        int updated = entityManager.createQuery(update).executeUpdate();
+        entityManager.clear();
+        return updated;
+    }
+
+    private TypedQuery<LessonEvent> query(LessonFilter filter, LessonCursor after) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LessonEvent> cq = cb.createQuery(LessonEvent.class);
+        Root<LessonEvent> lesson = cq.from(LessonEvent.class);
+
+        cq.select(lesson)
+          .where(predicates(cb, lesson, filter, after))
+          .orderBy(cb.asc(lesson.get("date")), cb.asc(lesson.get("id")));
+        return entityManager.createQuery(cq);
+    }
+
+    private static Predicate[] predicates(CriteriaBuilder cb, Root<LessonEvent> lesson, LessonFilter filter, LessonCursor after) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.teacher() != null) {
+            predicates.add(cb.equal(lesson.get("teacher"), filter.teacher()));
+        }
+        if (filter.student() != null) {
+            predicates.add(cb.equal(lesson.get("student"), filter.student()));
+        }
+        if (filter.fromDate() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(lesson.get("date"), filter.fromDate()));
+        }
+        if (filter.toDate() != null) {
+            predicates.add(cb.lessThanOrEqualTo(lesson.get("date"), filter.toDate()));
+        }
+        if (filter.billingStatus() != null) {
+            predicates.add(cb.equal(lesson.get("billingStatus"), filter.billingStatus()));
+        }
+        if (after != null) {
+            predicates.add(cb.or(
+                    cb.greaterThan(lesson.get("date"), after.date()),
+                    cb.and(cb.equal(lesson.get("date"), after.date()),
+                           cb.greaterThan(lesson.get("id"), after.id()))));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    @Override
+    public void lockTeacherSchedule(String teacher) {
+        entityManager.createNativeQuery(LOCK_TEACHER)
+                .setParameter("teacher", teacher)
+                .executeUpdate();
+    }
+}
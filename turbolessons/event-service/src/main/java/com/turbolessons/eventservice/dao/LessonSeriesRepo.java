@@ -0,0 +1,29 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonSeries;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface LessonSeriesRepo extends JpaRepository<LessonSeries, Integer> {
+
+    // Series that may have occurrences before untilTime and on or after fromDate, with their exdates in the same
+    // query; a count-bounded series has no stored end so it is always a candidate
+    @Query("SELECT DISTINCT s FROM LessonSeries s LEFT JOIN FETCH s.exdates WHERE s.teacher = :teacher "
+           + "AND s.startTime < :untilTime AND (s.untilDate IS NULL OR s.untilDate >= :fromDate)")
+    List<LessonSeries> findTeacherSeriesInDateRange(@Param("teacher") String teacher,
+                                                    @Param("fromDate") LocalDate fromDate,
+                                                    @Param("untilTime") LocalDateTime untilTime);
+
+    @Query("SELECT DISTINCT s FROM LessonSeries s LEFT JOIN FETCH s.exdates WHERE s.student = :student "
+           + "AND s.startTime < :untilTime AND (s.untilDate IS NULL OR s.untilDate >= :fromDate)")
+    List<LessonSeries> findStudentSeriesInDateRange(@Param("student") String student,
+                                                    @Param("fromDate") LocalDate fromDate,
+                                                    @Param("untilTime") LocalDateTime untilTime);
+}
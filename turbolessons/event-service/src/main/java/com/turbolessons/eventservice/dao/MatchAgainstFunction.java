@@ -0,0 +1,64 @@
+package com.turbolessons.eventservice.dao;
+
+import org.hibernate.QueryException;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+/**
+ * {@code function('match_against', column..., query)} for criteria and JPQL queries: a relevance score, greater than
+ * zero for rows that match. On MySQL it renders {@code MATCH (column, ...) AGAINST (query IN NATURAL LANGUAGE MODE)},
+ * which needs a FULLTEXT index over exactly those columns. Other databases (H2 in tests) get a case-insensitive
+ * substring match scoring 1 or 0, enough to exercise the filters and paging but with no real ranking.
+ */
+public class MatchAgainstFunction implements SQLFunction {
+
+    public static final String NAME = "match_against";
+
+    @Override
+    public boolean hasArguments() {
+        return true;
+    }
+
+    @Override
+    public boolean hasParenthesesIfNoArguments() {
+        return true;
+    }
+
+    @Override
+    public Type getReturnType(Type firstArgumentType, Mapping mapping) throws QueryException {
+        return StandardBasicTypes.DOUBLE;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public String render(Type firstArgumentType, List arguments, SessionFactoryImplementor factory) throws QueryException {
+        if (arguments.size() < 2) {
+            throw new QueryException(NAME + " needs at least one column and the search text");
+        }
+        List<?> columns = arguments.subList(0, arguments.size() - 1);
+        Object query = arguments.get(arguments.size() - 1);
+        if (factory.getJdbcServices().getDialect() instanceof MySQLDialect) {
+            return "MATCH (" + join(columns, ", ") + ") AGAINST (" + query + " IN NATURAL LANGUAGE MODE)";
+        }
+        StringBuilder text = new StringBuilder("CONCAT(");
+        for (int i = 0; i < columns.size(); i++) {
+            text.append(i == 0 ? "" : ", ' ', ").append("COALESCE(").append(columns.get(i)).append(", '')");
+        }
+        text.append(columns.size() == 1 ? ", ''" : "").append(')');
+        return "(CASE WHEN LOCATE(LOWER(" + query + "), LOWER(" + text + ")) > 0 THEN 1.0 ELSE 0.0 END)";
+    }
+
+    private static String join(List<?> parts, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (Object part : parts) {
+            joined.append(joined.length() == 0 ? "" : separator).append(part);
+        }
+        return joined.toString();
+    }
+}
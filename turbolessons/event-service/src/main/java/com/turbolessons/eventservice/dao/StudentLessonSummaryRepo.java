@@ -0,0 +1,33 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+import com.turbolessons.eventservice.dto.StudentLessonTotals;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface StudentLessonSummaryRepo extends JpaRepository<StudentLessonSummary, String>, StudentLessonSummaryRepoCustom {
+
+    // Held until commit, so concurrent writes for the same student apply their changes one after the other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM StudentLessonSummary s WHERE s.student = :student")
+    Optional<StudentLessonSummary> lockByStudent(@Param("student") String student);
+
+    // One student's totals from scratch, off the (student, date) indexes of the live and archive tables
+    @Query(value = "SELECT COALESCE(SUM(CASE WHEN start_time < :now THEN 1 ELSE 0 END), 0) AS lessonsTaken, "
+                   + "COALESCE(SUM(CASE WHEN start_time >= :now THEN 1 ELSE 0 END), 0) AS upcoming, "
+                   + "COALESCE(SUM(CASE WHEN billing_status = 'UNLOGGED' THEN 1 ELSE 0 END), 0) AS unbilled, "
+                   + "MAX(CASE WHEN start_time < :now THEN date END) AS lastLessonDate, "
+                   + "MIN(CASE WHEN start_time >= :now THEN start_time END) AS nextLessonStart "
+                   + "FROM (SELECT start_time, date, billing_status FROM lesson_event WHERE student = :student "
+                   + "UNION ALL SELECT start_time, date, billing_status FROM lesson_event_archive WHERE student = :student) l",
+           nativeQuery = true)
+    StudentLessonTotals countStudentLessons(@Param("student") String student, @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,8 @@
+package com.turbolessons.eventservice.dao;
+
+public interface StudentLessonSummaryRepoCustom {
+
+    // Inserts an uncounted row for the student unless one exists, without failing when another transaction is
+    // inserting the same student; that transaction's row is waited for instead
+    void insertIfMissing(String student);
+}
@@ -0,0 +1,24 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+class StudentLessonSummaryRepoImpl implements StudentLessonSummaryRepoCustom {
+
+    // Takes the row's lock whether it inserts or finds one; the no-op update is what makes a duplicate not an error
+    private static final String UPSERT = "INSERT INTO student_lesson_summary (student, lessons_taken, upcoming, unbilled, next_lesson_start) "
+                                         + "VALUES (:student, 0, 0, 0, :uncounted) ON DUPLICATE KEY UPDATE student = student";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public void insertIfMissing(String student) {
+        entityManager.createNativeQuery(UPSERT)
+                .setParameter("student", student)
+                .setParameter("uncounted", StudentLessonSummary.UNCOUNTED)
+                .executeUpdate();
+    }
+}
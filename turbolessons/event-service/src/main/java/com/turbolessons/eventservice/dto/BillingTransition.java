@@ -0,0 +1,7 @@
+package com.turbolessons.eventservice.dto;
+
+import java.util.List;
+
+// Request body for PATCH /api/lessons/billing: move every listed lesson still in expectedStatus to targetStatus
+public record BillingTransition(List<Integer> ids, BillingStatus expectedStatus, BillingStatus targetStatus) {
+}
@@ -0,0 +1,3 @@
+package com.turbolessons.eventservice.dto;
+
+public enum ChangeType {CREATED, UPDATED, BILLING_STATUS, DELETED, ARCHIVED}
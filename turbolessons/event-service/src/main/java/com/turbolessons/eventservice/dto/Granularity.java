@@ -0,0 +1,23 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+public enum Granularity {
+    DAY,
+    WEEK,
+    MONTH;
+
+    // First day of the period containing date; weeks start on Monday
+    public LocalDate periodStart(LocalDate date) {
+        switch (this) {
+            case WEEK:
+                return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH:
+                return date.withDayOfMonth(1);
+            default:
+                return date;
+        }
+    }
+}
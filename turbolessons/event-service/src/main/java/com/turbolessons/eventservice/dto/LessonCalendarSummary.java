@@ -0,0 +1,19 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A teacher's lessons between two dates (both inclusive), counted per period and per {@link BillingStatus} in place
+ * of the lessons themselves. Periods without lessons are left out.
+ */
+public record LessonCalendarSummary(String teacher,
+                                    LocalDate startDate,
+                                    LocalDate endDate,
+                                    Granularity granularity,
+                                    long lessons,
+                                    long minutes,
+                                    Map<BillingStatus, Long> byBillingStatus,
+                                    List<LessonPeriod> periods) {
+}
@@ -0,0 +1,134 @@
+package com.turbolessons.eventservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Outbox entry for one {@link LessonEvent} mutation. {@code seq} is the resume position for the change feed;
+ * {@code payload} is the lesson as JSON after the change, or {@code null} for deletes and for writes that
+ * bypass the entity (bulk billing transitions, merge patches, archiving). An ARCHIVED lesson has left the live table
+ * like a deleted one, but is still readable through the student history.
+ */
+@Entity
+@Table(name = "lesson_change")
+public class LessonChange implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(nullable = false)
+    private Integer lessonId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ChangeType changeType;
+
+    @Enumerated(EnumType.STRING)
+    private BillingStatus billingStatus;
+
+    @Column(nullable = false)
+    private LocalDateTime changedAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    // Set by the database on insert, so it shares a clock with the feed's reads; never written from here
+    @Column(nullable = false, insertable = false, updatable = false, columnDefinition = "TIMESTAMP(6) DEFAULT LOCALTIMESTAMP")
+    private LocalDateTime recordedAt;
+
+    public LessonChange() {
+    }
+
+    public LessonChange(Integer lessonId, ChangeType changeType, BillingStatus billingStatus, LocalDateTime changedAt, String payload) {
+        this.lessonId = lessonId;
+        this.changeType = changeType;
+        this.billingStatus = billingStatus;
+        this.changedAt = changedAt;
+        this.payload = payload;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public Integer getLessonId() {
+        return lessonId;
+    }
+
+    public void setLessonId(Integer lessonId) {
+        this.lessonId = lessonId;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public void setChangeType(ChangeType changeType) {
+        this.changeType = changeType;
+    }
+
+    public BillingStatus getBillingStatus() {
+        return billingStatus;
+    }
+
+    public void setBillingStatus(BillingStatus billingStatus) {
+        this.billingStatus = billingStatus;
+    }
+
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    public void setChangedAt(LocalDateTime changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(LocalDateTime recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+
+    @JsonRawValue
+    @JsonProperty("lesson")
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LessonChange that = (LessonChange) o;
+        return Objects.equals(seq, that.seq) && Objects.equals(lessonId, that.lessonId) && changeType == that.changeType
+               && billingStatus == that.billingStatus && Objects.equals(changedAt, that.changedAt) && Objects.equals(payload, that.payload);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seq, lessonId, changeType, billingStatus, changedAt, payload);
+    }
+
+    @Override
+    public String toString() {
+        return "LessonChange{" + "seq=" + seq + ", lessonId=" + lessonId + ", changeType=" + changeType + ", billingStatus=" + billingStatus + ", changedAt=" + changedAt + '}';
+    }
+}
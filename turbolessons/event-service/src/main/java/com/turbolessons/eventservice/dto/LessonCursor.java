@@ -0,0 +1,37 @@
+package com.turbolessons.eventservice.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in the {@code (date, id)} ordering used by the paged lesson endpoints. Clients only ever see the
+ * opaque {@link #encode() encoded} form handed back in the {@code X-Next-Cursor} header.
+ */
+public record LessonCursor(LocalDate date, Integer id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static LessonCursor of(LessonEvent lesson) {
+        return new LessonCursor(lesson.getDate(), lesson.getId());
+    }
+
+    public String encode() {
+        String raw = date.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static LessonCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int split = raw.indexOf(SEPARATOR);
+            if (split < 0) {
+                throw new IllegalArgumentException("Malformed lesson cursor: " + encoded);
+            }
+            return new LessonCursor(LocalDate.parse(raw.substring(0, split)), Integer.valueOf(raw.substring(split + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed lesson cursor: " + encoded, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDate;
+
+// One GROUP BY (date, billing_status) row of a teacher's calendar
+public interface LessonDayCount {
+
+    LocalDate getLessonDate();
+
+    BillingStatus getBillingStatus();
+
+    long getLessons();
+
+    long getMinutes();
+}
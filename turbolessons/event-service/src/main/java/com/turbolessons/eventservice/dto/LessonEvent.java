@@ -1,17 +1,34 @@
 package com.turbolessons.eventservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import javax.persistence.*;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 @Entity
-@Table(name = "lesson_event")
+@Table(name = "lesson_event", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_lesson_event_series_occurrence", columnNames = {"seriesId", "occurrenceDate"})
+}, indexes = {
+        @Index(name = "idx_lesson_event_date", columnList = "date"),
+        @Index(name = "idx_lesson_event_teacher_date", columnList = "teacher, date"),
+        @Index(name = "idx_lesson_event_student_date", columnList = "student, date"),
+        @Index(name = "idx_lesson_event_billing_status_date", columnList = "billingStatus, date"),
+        @Index(name = "idx_lesson_event_teacher_version", columnList = "teacher, version"),
+        @Index(name = "idx_lesson_event_student_version", columnList = "student, version")
+})
 public class LessonEvent implements Serializable {
 
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled ids come from lesson_event_seq fifty at a time, so inserts can be batched; IDENTITY would force a
+    // round trip per row to read the generated key
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lesson_event_seq")
+    @SequenceGenerator(name = "lesson_event_seq", sequenceName = "lesson_event_seq", allocationSize = LessonEvent.ID_ALLOCATION_SIZE)
     private Integer id;
 
     private LocalDateTime startTime;
@@ -29,6 +46,24 @@ public class LessonEvent implements Serializable {
     @Column(nullable = false)
     private BillingStatus billingStatus;
 
+    // Server-maintained; clients read them for ETag/Last-Modified but can't set them
+    @Version
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    @Column(nullable = false)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private LocalDateTime lastModified;
+
+    // Set on the rows materialised from a LessonSeries (exceptions and billed occurrences): the series and the date
+    // the occurrence was originally scheduled on, which stays put when the lesson itself is moved
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer seriesId;
+
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private LocalDate occurrenceDate;
+
     public LessonEvent() {
     }
 
@@ -135,6 +170,45 @@ public class LessonEvent implements Serializable {
         return this;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(LocalDateTime lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public Integer getSeriesId() {
+        return seriesId;
+    }
+
+    public void setSeriesId(Integer seriesId) {
+        this.seriesId = seriesId;
+    }
+
+    public LocalDate getOccurrenceDate() {
+        return occurrenceDate;
+    }
+
+    public void setOccurrenceDate(LocalDate occurrenceDate) {
+        this.occurrenceDate = occurrenceDate;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        // Microseconds is all DATETIME(6) keeps; truncating here keeps the in-memory value equal to the stored one
+        this.lastModified = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
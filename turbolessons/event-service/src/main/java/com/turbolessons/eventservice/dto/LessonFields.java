@@ -0,0 +1,83 @@
+package com.turbolessons.eventservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sparse projection of a {@link LessonEvent} holding only the attributes a caller asked for with {@code fields=}.
+ * Serialises as just those attributes; {@code position} is kept aside so a page can still hand out its next cursor
+ * when the caller didn't ask for {@code date} or {@code id}.
+ */
+public record LessonFields(LessonCursor position, Map<String, Object> values) {
+
+    public static final Set<String> NAMES = Set.of("id", "startTime", "endTime", "title", "student", "studentEmail",
+                                                   "teacher", "teacherEmail", "date", "comments", "billingStatus");
+
+    @JsonValue
+    @Override
+    public Map<String, Object> values() {
+        return values;
+    }
+
+    // Projection of a lesson that was read whole, for readers that can't select columns by name
+    public static LessonFields of(LessonEvent lesson, List<String> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String field : fields) {
+            values.put(field, value(lesson, field));
+        }
+        return new LessonFields(LessonCursor.of(lesson), values);
+    }
+
+    private static Object value(LessonEvent lesson, String field) {
+        switch (field) {
+            case "id":
+                return lesson.getId();
+            case "startTime":
+                return lesson.getStartTime();
+            case "endTime":
+                return lesson.getEndTime();
+            case "title":
+                return lesson.getTitle();
+            case "student":
+                return lesson.getStudent();
+            case "studentEmail":
+                return lesson.getStudentEmail();
+            case "teacher":
+                return lesson.getTeacher();
+            case "teacherEmail":
+                return lesson.getTeacherEmail();
+            case "date":
+                return lesson.getDate();
+            case "comments":
+                return lesson.getComments();
+            case "billingStatus":
+                return lesson.getBillingStatus();
+            default:
+                throw new IllegalArgumentException("Unknown lesson field: " + field);
+        }
+    }
+
+    // Comma separated attribute names, e.g. "id,endTime,billingStatus,studentEmail"
+    public static List<String> parse(String fields) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (!trimmed.isEmpty()) {
+                if (!NAMES.contains(trimmed)) {
+                    throw new IllegalArgumentException("Unknown lesson field: " + trimmed);
+                }
+                names.add(trimmed);
+            }
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("fields must name at least one of " + NAMES);
+        }
+        return new ArrayList<>(names);
+    }
+}
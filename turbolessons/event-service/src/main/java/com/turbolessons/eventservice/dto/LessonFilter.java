@@ -0,0 +1,42 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDate;
+
+/**
+ * Optional criteria shared by the lesson list endpoints. A {@code null} component means "don't filter on it";
+ * {@code fromDate} and {@code toDate} are both inclusive.
+ */
+public record LessonFilter(String teacher, String student, LocalDate fromDate, LocalDate toDate, BillingStatus billingStatus) {
+
+    public static LessonFilter all() {
+        return new LessonFilter(null, null, null, null, null);
+    }
+
+    public static LessonFilter byTeacher(String teacher) {
+        return new LessonFilter(teacher, null, null, null, null);
+    }
+
+    public static LessonFilter byStudent(String student) {
+        return new LessonFilter(null, student, null, null, null);
+    }
+
+    public static LessonFilter byDate(LocalDate date) {
+        return new LessonFilter(null, null, date, date, null);
+    }
+
+    public static LessonFilter byTeacherAndDate(String teacher, LocalDate date) {
+        return new LessonFilter(teacher, null, date, date, null);
+    }
+
+    public static LessonFilter byBillingStatus(BillingStatus billingStatus) {
+        return new LessonFilter(null, null, null, null, billingStatus);
+    }
+
+    public static LessonFilter byTeacherAndBillingStatus(String teacher, BillingStatus billingStatus) {
+        return new LessonFilter(teacher, null, null, null, billingStatus);
+    }
+
+    public static LessonFilter byDateRangeAndBillingStatus(LocalDate fromDate, LocalDate toDate, BillingStatus billingStatus) {
+        return new LessonFilter(null, null, fromDate, toDate, billingStatus);
+    }
+}
@@ -0,0 +1,13 @@
+package com.turbolessons.eventservice.dto;
+
+/**
+ * Cheap stand-in for the version of a lesson collection: how many lessons it holds and the sums of their versions and
+ * ids. An update moves the version sum, an insert, delete or reassignment moves the count or the id sum. Nothing here
+ * comes from a clock, so writes from instances whose clocks disagree still change it.
+ */
+public record LessonMarker(long count, long versions, long ids) {
+
+    public String etag(String scope) {
+        return "\"" + scope + "-" + count + "-" + versions + "-" + ids + "\"";
+    }
+}
@@ -0,0 +1,69 @@
+package com.turbolessons.eventservice.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A JSON merge patch (RFC 7396) against a {@link LessonEvent}, already converted to attribute values. Only the
+ * attributes present in the patch are written; an explicit {@code null} clears the column. {@code version} may be sent
+ * instead of an {@code If-Match} header and is kept apart from the changes.
+ */
+public record LessonPatch(Map<String, Object> changes, Long version) {
+
+    private static final Map<String, Class<?>> PATCHABLE = Map.of(
+            "startTime", LocalDateTime.class,
+            "endTime", LocalDateTime.class,
+            "title", String.class,
+            "student", String.class,
+            "studentEmail", String.class,
+            "teacher", String.class,
+            "teacherEmail", String.class,
+            "comments", String.class,
+            "billingStatus", BillingStatus.class);
+
+    private static final Set<String> REQUIRED = Set.of("startTime", "billingStatus");
+
+    public static LessonPatch parse(JsonNode patch, ObjectMapper objectMapper) {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("A merge patch must be a JSON object");
+        }
+        Map<String, Object> changes = new LinkedHashMap<>();
+        Long version = null;
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            JsonNode value = field.getValue();
+            if (name.equals("version")) {
+                if (!value.canConvertToLong()) {
+                    throw new IllegalArgumentException("version must be a number");
+                }
+                version = value.asLong();
+                continue;
+            }
+            Class<?> type = PATCHABLE.get(name);
+            if (type == null) {
+                throw new IllegalArgumentException("Lesson field can't be patched: " + name);
+            }
+            if (value.isNull()) {
+                if (REQUIRED.contains(name)) {
+                    throw new IllegalArgumentException(name + " can't be removed");
+                }
+                changes.put(name, null);
+            } else {
+                changes.put(name, objectMapper.convertValue(value, type));
+            }
+        }
+        // date is derived from startTime and has to move with it
+        if (changes.containsKey("startTime")) {
+            changes.put("date", ((LocalDateTime) changes.get("startTime")).toLocalDate());
+        }
+        return new LessonPatch(changes, version);
+    }
+}
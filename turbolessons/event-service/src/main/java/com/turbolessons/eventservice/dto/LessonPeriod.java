@@ -0,0 +1,7 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+public record LessonPeriod(LocalDate start, long lessons, long minutes, Map<BillingStatus, Long> byBillingStatus) {
+}
@@ -0,0 +1,229 @@
+package com.turbolessons.eventservice.dto;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * A weekly lesson stored once instead of once per week, after RRULE's FREQ=WEEKLY;INTERVAL;UNTIL|COUNT;EXDATE.
+ * {@code startTime}/{@code endTime} are the first occurrence; the n-th is the same slot {@code n * intervalWeeks}
+ * weeks later. {@code untilDate} (inclusive) and {@code occurrenceCount} each end the series, and at most one of them
+ * is set. Occurrences only become {@link LessonEvent} rows when they stop matching the rule (moved, edited) or get
+ * billed; those rows carry the series id and their original date and take the place of the computed occurrence.
+ */
+@Entity
+@Table(name = "lesson_series", indexes = {
+        @Index(name = "idx_lesson_series_teacher", columnList = "teacher"),
+        @Index(name = "idx_lesson_series_student", columnList = "student")
+})
+public class LessonSeries implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false)
+    private LocalDateTime startTime;
+    @Column(nullable = false)
+    private LocalDateTime endTime;
+    private String title;
+
+    private String student;
+    private String studentEmail;
+    private String teacher;
+    private String teacherEmail;
+    private String comments;
+
+    @Column(nullable = false)
+    private int intervalWeeks = 1;
+    private LocalDate untilDate;
+    private Integer occurrenceCount;
+
+    // Cancelled occurrences (EXDATE), by their scheduled date
+    @ElementCollection
+    @CollectionTable(name = "lesson_series_exdate", joinColumns = @JoinColumn(name = "series_id"))
+    @Column(name = "occurrence_date", nullable = false)
+    private Set<LocalDate> exdates = new LinkedHashSet<>();
+
+    public LessonSeries() {
+    }
+
+    public LessonSeries(LocalDateTime startTime, LocalDateTime endTime, String title, String student, String studentEmail, String teacher, String teacherEmail, String comments, int intervalWeeks) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.title = title;
+        this.student = student;
+        this.studentEmail = studentEmail;
+        this.teacher = teacher;
+        this.teacherEmail = teacherEmail;
+        this.comments = comments;
+        this.intervalWeeks = intervalWeeks;
+    }
+
+    // Scheduled dates in [from, to], generated one at a time; cancelled dates are left out
+    public Stream<LocalDate> occurrenceDates(LocalDate from, LocalDate to) {
+        LocalDate first = startTime.toLocalDate();
+        long stepDays = 7L * intervalWeeks;
+        long skip = from.isAfter(first) ? (ChronoUnit.DAYS.between(first, from) + stepDays - 1) / stepDays : 0;
+        LocalDate last = untilDate != null && untilDate.isBefore(to) ? untilDate : to;
+        return LongStream.iterate(skip, n -> n + 1)
+                .takeWhile(n -> occurrenceCount == null || n < occurrenceCount)
+                .mapToObj(n -> first.plusDays(n * stepDays))
+                .takeWhile(date -> !date.isAfter(last))
+                .filter(date -> !exdates.contains(date));
+    }
+
+    // Whether the rule schedules a lesson on date, cancelled or not
+    public boolean schedules(LocalDate date) {
+        LocalDate first = startTime.toLocalDate();
+        long days = ChronoUnit.DAYS.between(first, date);
+        long stepDays = 7L * intervalWeeks;
+        return days >= 0 && days % stepDays == 0
+               && (occurrenceCount == null || days / stepDays < occurrenceCount)
+               && (untilDate == null || !date.isAfter(untilDate));
+    }
+
+    // The lesson the rule puts on date, not yet saved
+    public LessonEvent occurrence(LocalDate date) {
+        long days = ChronoUnit.DAYS.between(startTime.toLocalDate(), date);
+        LessonEvent lesson = new LessonEvent(startTime.plusDays(days), endTime.plusDays(days), title, student, studentEmail,
+                                             teacher, teacherEmail, comments);
+        lesson.setSeriesId(id);
+        lesson.setOccurrenceDate(date);
+        return lesson;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(LocalDateTime startTime) {
+        this.startTime = startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public void setEndTime(LocalDateTime endTime) {
+        this.endTime = endTime;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getStudent() {
+        return student;
+    }
+
+    public void setStudent(String student) {
+        this.student = student;
+    }
+
+    public String getStudentEmail() {
+        return studentEmail;
+    }
+
+    public void setStudentEmail(String studentEmail) {
+        this.studentEmail = studentEmail;
+    }
+
+    public String getTeacher() {
+        return teacher;
+    }
+
+    public void setTeacher(String teacher) {
+        this.teacher = teacher;
+    }
+
+    public String getTeacherEmail() {
+        return teacherEmail;
+    }
+
+    public void setTeacherEmail(String teacherEmail) {
+        this.teacherEmail = teacherEmail;
+    }
+
+    public String getComments() {
+        return comments;
+    }
+
+    public void setComments(String comments) {
+        this.comments = comments;
+    }
+
+    public int getIntervalWeeks() {
+        return intervalWeeks;
+    }
+
+    public void setIntervalWeeks(int intervalWeeks) {
+        this.intervalWeeks = intervalWeeks;
+    }
+
+    public LocalDate getUntilDate() {
+        return untilDate;
+    }
+
+    public void setUntilDate(LocalDate untilDate) {
+        this.untilDate = untilDate;
+    }
+
+    public Integer getOccurrenceCount() {
+        return occurrenceCount;
+    }
+
+    public void setOccurrenceCount(Integer occurrenceCount) {
+        this.occurrenceCount = occurrenceCount;
+    }
+
+    public Set<LocalDate> getExdates() {
+        return exdates;
+    }
+
+    public void setExdates(Set<LocalDate> exdates) {
+        this.exdates = exdates == null ? new LinkedHashSet<>() : exdates;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        LessonSeries that = (LessonSeries) o;
+        return intervalWeeks == that.intervalWeeks && Objects.equals(id, that.id) && Objects.equals(startTime, that.startTime)
+               && Objects.equals(endTime, that.endTime) && Objects.equals(title, that.title) && Objects.equals(student, that.student)
+               && Objects.equals(studentEmail, that.studentEmail) && Objects.equals(teacher, that.teacher)
+               && Objects.equals(teacherEmail, that.teacherEmail) && Objects.equals(comments, that.comments)
+               && Objects.equals(untilDate, that.untilDate) && Objects.equals(occurrenceCount, that.occurrenceCount);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, startTime, endTime, title, student, studentEmail, teacher, teacherEmail, comments,
+                            intervalWeeks, untilDate, occurrenceCount);
+    }
+
+    @Override
+    public String toString() {
+        return "LessonSeries{" + "id=" + id + ", startTime=" + startTime + ", endTime=" + endTime + ", title='" + title + '\'' + ", student='" + student + '\'' + ", teacher='" + teacher + '\'' + ", intervalWeeks=" + intervalWeeks + ", untilDate=" + untilDate + ", occurrenceCount=" + occurrenceCount + ", exdates=" + exdates + '}';
+    }
+}
@@ -0,0 +1,7 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDateTime;
+
+// The time a lesson occupies, as held by the per-teacher interval index
+public record LessonSlot(Integer id, LocalDateTime startTime, LocalDateTime endTime) {
+}
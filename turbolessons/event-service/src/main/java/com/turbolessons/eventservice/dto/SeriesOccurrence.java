@@ -0,0 +1,7 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDate;
+
+// A LessonSeries occurrence that has its own lesson_event row
+public record SeriesOccurrence(Integer seriesId, LocalDate occurrenceDate) {
+}
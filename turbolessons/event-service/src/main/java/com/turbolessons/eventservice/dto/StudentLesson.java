@@ -0,0 +1,20 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// The part of a lesson a student's summary counts, captured before a write changes it
+public record StudentLesson(String student, LocalDateTime startTime, LocalDate date, BillingStatus billingStatus) {
+
+    public static StudentLesson of(LessonEvent lesson) {
+        return new StudentLesson(lesson.getStudent(), lesson.getStartTime(), lesson.getDate(), lesson.getBillingStatus());
+    }
+
+    public boolean takenBy(LocalDateTime now) {
+        return startTime != null && startTime.isBefore(now);
+    }
+
+    public boolean upcomingAt(LocalDateTime now) {
+        return startTime != null && !startTime.isBefore(now);
+    }
+}
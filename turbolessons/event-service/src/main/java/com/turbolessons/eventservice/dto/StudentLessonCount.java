@@ -0,0 +1,9 @@
+package com.turbolessons.eventservice.dto;
+
+// How many of a set of lessons belong to one student
+public interface StudentLessonCount {
+
+    String getStudent();
+
+    long getLessons();
+}
@@ -0,0 +1,171 @@
+package com.turbolessons.eventservice.dto;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * A student's lesson totals for the profile page, one row per student kept up to date by the writes in
+ * {@code LessonEventService}. Taken and upcoming split at the time of the last change; {@code nextLessonStart} is the
+ * earliest upcoming lesson, so once it has passed the split is stale and the row is recounted. Archived lessons stay
+ * counted; computed series occurrences are not lessons until they are materialised.
+ */
+@Entity
+@Table(name = "student_lesson_summary")
+public class StudentLessonSummary implements Serializable {
+
+    // The next lesson start of a row inserted before its first count; always in the past, so the row reads as stale
+    public static final LocalDateTime UNCOUNTED = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Id
+    private String student;
+
+    @Column(nullable = false)
+    private long lessonsTaken;
+    @Column(nullable = false)
+    private long upcoming;
+    @Column(nullable = false)
+    private long unbilled;
+    private LocalDate lastLessonDate;
+    private LocalDateTime nextLessonStart;
+
+    public StudentLessonSummary() {
+    }
+
+    public StudentLessonSummary(String student) {
+        this.student = student;
+    }
+
+    // The upcoming lessons counted as such are no longer all in the future
+    public boolean isStale(LocalDateTime now) {
+        return nextLessonStart != null && !nextLessonStart.isAfter(now);
+    }
+
+    public void recount(StudentLessonTotals totals) {
+        lessonsTaken = totals.getLessonsTaken();
+        upcoming = totals.getUpcoming();
+        unbilled = totals.getUnbilled();
+        lastLessonDate = totals.getLastLessonDate();
+        nextLessonStart = totals.getNextLessonStart();
+    }
+
+    // Moves the removed lessons out of the totals and the added ones in. Returns false, leaving the row to be recounted,
+    // when a removed lesson was the last or the next one, since the runner-up isn't known here.
+    public boolean apply(Collection<StudentLesson> removed, Collection<StudentLesson> added, LocalDateTime now) {
+        boolean exact = true;
+        for (StudentLesson lesson : removed) {
+            if (lesson.takenBy(now)) {
+                lessonsTaken--;
+                exact &= !Objects.equals(lesson.date(), lastLessonDate);
+            } else if (lesson.upcomingAt(now)) {
+                upcoming--;
+                exact &= !lesson.startTime().equals(nextLessonStart);
+            }
+            if (lesson.billingStatus() == BillingStatus.UNLOGGED) {
+                unbilled--;
+            }
+        }
+        for (StudentLesson lesson : added) {
+            if (lesson.takenBy(now)) {
+                lessonsTaken++;
+                if (lesson.date() != null && (lastLessonDate == null || lesson.date().isAfter(lastLessonDate))) {
+                    lastLessonDate = lesson.date();
+                }
+            } else if (lesson.upcomingAt(now)) {
+                upcoming++;
+                if (nextLessonStart == null || lesson.startTime().isBefore(nextLessonStart)) {
+                    nextLessonStart = lesson.startTime();
+                }
+            }
+            if (lesson.billingStatus() == BillingStatus.UNLOGGED) {
+                unbilled++;
+            }
+        }
+        return exact;
+    }
+
+    public void addUnbilled(long lessons) {
+        unbilled += lessons;
+    }
+
+    public String getStudent() {
+        return student;
+    }
+
+    public void setStudent(String student) {
+        this.student = student;
+    }
+
+    public long getLessonsTaken() {
+        return lessonsTaken;
+    }
+
+    public void setLessonsTaken(long lessonsTaken) {
+        this.lessonsTaken = lessonsTaken;
+    }
+
+    public long getUpcoming() {
+        return upcoming;
+    }
+
+    public void setUpcoming(long upcoming) {
+        this.upcoming = upcoming;
+    }
+
+    public long getUnbilled() {
+        return unbilled;
+    }
+
+    public void setUnbilled(long unbilled) {
+        this.unbilled = unbilled;
+    }
+
+    public LocalDate getLastLessonDate() {
+        return lastLessonDate;
+    }
+
+    public void setLastLessonDate(LocalDate lastLessonDate) {
+        this.lastLessonDate = lastLessonDate;
+    }
+
+    public LocalDateTime getNextLessonStart() {
+        return nextLessonStart;
+    }
+
+    public void setNextLessonStart(LocalDateTime nextLessonStart) {
+        this.nextLessonStart = nextLessonStart;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StudentLessonSummary that = (StudentLessonSummary) o;
+        return lessonsTaken == that.lessonsTaken && upcoming == that.upcoming && unbilled == that.unbilled
+               && Objects.equals(student, that.student) && Objects.equals(lastLessonDate, that.lastLessonDate)
+               && Objects.equals(nextLessonStart, that.nextLessonStart);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(student, lessonsTaken, upcoming, unbilled, lastLessonDate, nextLessonStart);
+    }
+
+    @Override
+    public String toString() {
+        return "StudentLessonSummary{" +
+               "student='" + student + '\'' +
+               ", lessonsTaken=" + lessonsTaken +
+               ", upcoming=" + upcoming +
+               ", unbilled=" + unbilled +
+               ", lastLessonDate=" + lastLessonDate +
+               ", nextLessonStart=" + nextLessonStart +
+               '}';
+    }
+}
@@ -0,0 +1,18 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// One student's lessons counted from scratch, live and archived together
+public interface StudentLessonTotals {
+
+    long getLessonsTaken();
+
+    long getUpcoming();
+
+    long getUnbilled();
+
+    LocalDate getLastLessonDate();
+
+    LocalDateTime getNextLessonStart();
+}
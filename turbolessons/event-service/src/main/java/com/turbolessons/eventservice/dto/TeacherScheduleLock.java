@@ -0,0 +1,25 @@
+package com.turbolessons.eventservice.dto;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The row a lesson write for a teacher locks before checking for overlaps, so two instances booking the same teacher
+ * take turns. It carries nothing else; it is mapped only so the schema knows the table, and is written by
+ * {@code LessonEventRepo.lockTeacherSchedule}.
+ */
+@Entity
+@Table(name = "teacher_schedule_lock")
+public class TeacherScheduleLock {
+
+    @Id
+    private String teacher;
+
+    public TeacherScheduleLock() {
+    }
+
+    public String getTeacher() {
+        return teacher;
+    }
+}
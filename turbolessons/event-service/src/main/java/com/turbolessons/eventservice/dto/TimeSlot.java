@@ -0,0 +1,7 @@
+package com.turbolessons.eventservice.dto;
+
+import java.time.LocalDateTime;
+
+// A free stretch of a teacher's time, [start, end)
+public record TimeSlot(LocalDateTime start, LocalDateTime end) {
+}
@@ -0,0 +1,14 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Thrown inside the write transaction when a merged lesson would end at or before its start
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidLessonTimesException extends RuntimeException {
+
+    public InvalidLessonTimesException(LessonEvent lesson) {
+        super("Lesson " + lesson.getId() + " would end at " + lesson.getEndTime() + ", not after its start at " + lesson.getStartTime());
+    }
+}
@@ -0,0 +1,108 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dao.LessonArchiveRepo;
+import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.ChangeType;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps {@code lesson_event} down to the lessons that can still change. Lessons in one of the settled
+ * {@code lessons.archive.statuses} (default LOGGED) and more than {@code lessons.archive.after-days} (default 365) old
+ * are moved to {@code lesson_event_archive} in batches of {@code lessons.archive.batch-size}, each batch copied and
+ * deleted in its own short transaction so the move never holds many row locks at once. Archived lessons are read-only
+ * and only come back through the history reads below. Each batch leaves an ARCHIVED change for every lesson, so the
+ * change feed sees them leave the live set, and frees their slots in this instance's {@link TeacherSchedule}.
+ */
+@Service
+public class LessonArchiveService {
+
+    private static final Comparator<LessonEvent> BY_DATE_AND_ID = Comparator.comparing(LessonEvent::getDate)
+            .thenComparing(LessonEvent::getId);
+
+    private final LessonEventRepo repository;
+    private final LessonArchiveRepo archive;
+    private final LessonEventCache cache;
+    private final LessonChangeService changes;
+    private final TeacherSchedule schedule;
+    private final TransactionTemplate transactions;
+    private final List<BillingStatus> statuses;
+    private final int afterDays;
+    private final int batchSize;
+
+    public LessonArchiveService(LessonEventRepo repository, LessonArchiveRepo archive, LessonEventCache cache,
+                                LessonChangeService changes, TeacherSchedule schedule,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${lessons.archive.statuses:LOGGED}") BillingStatus[] statuses,
+                                @Value("${lessons.archive.after-days:365}") int afterDays,
+                                @Value("${lessons.archive.batch-size:500}") int batchSize) {
+        this.repository = repository;
+        this.archive = archive;
+        this.cache = cache;
+        this.changes = changes;
+        this.schedule = schedule;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.statuses = List.of(statuses);
+        this.afterDays = afterDays;
+        this.batchSize = batchSize;
+    }
+
+    //Archive Lesson Events; returns how many were moved
+    public int archiveOldLessons() {
+        LocalDate cutoff = LocalDate.now().minusDays(afterDays);
+        int moved = 0;
+        Integer batch;
+        do {
+            batch = transactions.execute(status -> archiveBatch(cutoff));
+            moved += batch == null ? 0 : batch;
+        } while (batch != null && batch == batchSize);
+        return moved;
+    }
+
+    private int archiveBatch(LocalDate cutoff) {
+        List<Integer> ids = repository.lockArchivableIds(statuses, cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        archive.copyFromLessonEvents(ids, LocalDateTime.now());
+        // Recorded from the live rows, so before they go
+        changes.recordRowChanges(ChangeType.ARCHIVED, ids);
+        repository.deleteLessonEventsById(ids);
+        ids.forEach(schedule::release);
+        cache.evictIds(ids);
+        return ids.size();
+    }
+
+    //Get Lesson Events By Student including the archive
+    @Transactional(readOnly = true)
+    public List<LessonEvent> findStudentHistory(String student) {
+        List<LessonEvent> lessons = new ArrayList<>(archive.findStudentPage(student, null, null));
+        lessons.addAll(repository.findLessonEventByStudent(student));
+        lessons.sort(BY_DATE_AND_ID);
+        return lessons;
+    }
+
+    //Get a page of Lesson Events By Student including the archive: the first limit of both tables' pages in (date, id)
+    //order, so the same cursor walks on through both
+    @Transactional(readOnly = true)
+    public List<LessonEvent> findStudentHistoryPage(String student, LessonCursor after, int limit) {
+        List<LessonEvent> lessons = new ArrayList<>(archive.findStudentPage(student, after, limit));
+        lessons.addAll(repository.findLessonEventPage(LessonFilter.byStudent(student), after, limit));
+        lessons.sort(BY_DATE_AND_ID);
+        return lessons.size() > limit ? new ArrayList<>(lessons.subList(0, limit)) : lessons;
+    }
+}
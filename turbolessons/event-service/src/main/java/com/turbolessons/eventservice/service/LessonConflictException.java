@@ -0,0 +1,37 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+// Thrown inside the write transaction when a lesson would overlap another lesson, or a series occurrence, of the same teacher
+@ResponseStatus(HttpStatus.CONFLICT)
+public class LessonConflictException extends RuntimeException {
+
+    private final Integer conflictingId;
+    private final SeriesOccurrence conflictingOccurrence;
+
+    public LessonConflictException(LessonEvent lesson, Integer conflictingId) {
+        super("Lesson " + lesson.getStartTime() + " - " + lesson.getEndTime() + " for " + lesson.getTeacher()
+              + " overlaps lesson " + conflictingId);
+        this.conflictingId = conflictingId;
+        this.conflictingOccurrence = null;
+    }
+
+    // The overlapped occurrence has no lesson row yet
+    public LessonConflictException(LessonEvent lesson, SeriesOccurrence conflictingOccurrence) {
+        super("Lesson " + lesson.getStartTime() + " - " + lesson.getEndTime() + " for " + lesson.getTeacher()
+              + " overlaps the " + conflictingOccurrence.occurrenceDate() + " occurrence of series " + conflictingOccurrence.seriesId());
+        this.conflictingId = null;
+        this.conflictingOccurrence = conflictingOccurrence;
+    }
+
+    public Integer getConflictingId() {
+        return conflictingId;
+    }
+
+    public SeriesOccurrence getConflictingOccurrence() {
+        return conflictingOccurrence;
+    }
+}
@@ -0,0 +1,92 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Names of the lesson read caches and the targeted eviction used by every write in {@link LessonEventService}.
+ * Evicting only the entries a lesson can appear in keeps the rest of the calendar warm.
+ */
+@Component
+public class LessonEventCache {
+
+    public static final String BY_ID = "lessons";
+    public static final String BY_TEACHER = "lessonsByTeacher";
+    public static final String BY_STUDENT = "lessonsByStudent";
+    public static final String BY_DATE = "lessonsByDate";
+    public static final String BY_TEACHER_AND_DATE = "lessonsByTeacherAndDate";
+
+    public static final List<String> NAMES = List.of(BY_ID, BY_TEACHER, BY_STUDENT, BY_DATE, BY_TEACHER_AND_DATE);
+
+    private final CacheManager cacheManager;
+
+    public LessonEventCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    // Evicts now and again after commit, so a read racing the transaction can't re-cache the old row. Keys are
+    // captured up front because callers go on to mutate the lesson.
+    public void evict(LessonEvent lesson) {
+        Map<String, Object> keys = keysOf(lesson);
+        keys.forEach(this::evictKey);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    keys.forEach(LessonEventCache.this::evictKey);
+                }
+            });
+        }
+    }
+
+    // For set-based writes that only know ids: drop those ids and every list, since any list may hold them
+    public void evictIds(Collection<Integer> ids) {
+        ids.forEach(id -> evictKey(BY_ID, id));
+        clear(BY_TEACHER);
+        clear(BY_STUDENT);
+        clear(BY_DATE);
+        clear(BY_TEACHER_AND_DATE);
+    }
+
+    private static Map<String, Object> keysOf(LessonEvent lesson) {
+        Map<String, Object> keys = new HashMap<>();
+        if (lesson.getId() != null) {
+            keys.put(BY_ID, lesson.getId());
+        }
+        if (lesson.getTeacher() != null) {
+            keys.put(BY_TEACHER, lesson.getTeacher());
+        }
+        if (lesson.getStudent() != null) {
+            keys.put(BY_STUDENT, lesson.getStudent());
+        }
+        if (lesson.getDate() != null) {
+            keys.put(BY_DATE, lesson.getDate());
+        }
+        keys.put(BY_TEACHER_AND_DATE, new SimpleKey(lesson.getTeacher(), lesson.getDate()));
+        return keys;
+    }
+
+    private void evictKey(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -2,76 +2,260 @@ package com.turbolessons.eventservice.service;
 
 import com.turbolessons.eventservice.dao.LessonEventRepo;
 import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.ChangeType;
+import com.turbolessons.eventservice.dto.Granularity;
+import com.turbolessons.eventservice.dto.LessonCalendarSummary;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonDayCount;
 import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFields;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import com.turbolessons.eventservice.dto.LessonPeriod;
+import com.turbolessons.eventservice.dto.StudentLesson;
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class LessonEventService {
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 500;
+    // How deep relevance search pages: each page scans every match before it, and page * limit stays within an int
+    public static final int MAX_SEARCH_OFFSET = 10_000;
+    // Upper bound on the IN (...) list of a single bulk billing UPDATE
+    static final int BILLING_BATCH_SIZE = 1000;
+    // Upper bound on the lessons accepted by one bulk create request
+    public static final int MAX_CREATE_BATCH_SIZE = 1000;
+
     private final LessonEventRepo repository;
+    private final LessonEventCache cache;
+    private final LessonChangeService changes;
+    private final TeacherSchedule schedule;
+    private final StudentSummaryService summaries;
+    private final int streamFetchSize;
 
-    public LessonEventService(LessonEventRepo lessonEventRepo) {
+    public LessonEventService(LessonEventRepo lessonEventRepo, LessonEventCache cache, LessonChangeService changes,
+                              TeacherSchedule schedule, StudentSummaryService summaries,
+                              @Value("${lessons.stream.fetch-size:500}") int streamFetchSize) {
         this.repository = lessonEventRepo;
+        this.cache = cache;
+        this.changes = changes;
+        this.schedule = schedule;
+        this.summaries = summaries;
+        this.streamFetchSize = streamFetchSize;
     }
 
     //Get All Lesson Event Events
 
+    @Transactional(readOnly = true)
     public List<LessonEvent> findAllLessonEvents() {
         return this.repository.findAll();
     }
     //Get One Lesson Event
+    //The cached finders are not read-only, so they read from the primary: a replica still behind a write would put
+    //the old row back in the cache for the whole TTL, long after the read-your-writes window has passed
+    @Cacheable(cacheNames = LessonEventCache.BY_ID, unless = "#result == null")
+    @Transactional
     public LessonEvent findLessonEvent(Integer id) {
         Optional<LessonEvent> lesson = this.repository.findById(id);
         return lesson.orElse(null);
     }
 
     //Get Lesson Event Events By Teacher
+    @Cacheable(LessonEventCache.BY_TEACHER)
+    @Transactional
     public List<LessonEvent> findLessonEventsByTeacher(String teacher) {
         return repository.findLessonEventByTeacher(teacher);
     }
 
     //Get Lesson Event Events By Student
+    @Cacheable(LessonEventCache.BY_STUDENT)
+    @Transactional
     public List<LessonEvent> findLessonEventsByStudent(String student) {
         return repository.findLessonEventByStudent(student);
     }
 
+    @Cacheable(LessonEventCache.BY_DATE)
+    @Transactional
     public List<LessonEvent> findLessonEventsByDate(LocalDate date) {
         return repository.findLessonEventByDate(date);
     }
 
     //Get Lesson Event Events By Teacher and Date
+    @Cacheable(LessonEventCache.BY_TEACHER_AND_DATE)
+    @Transactional
     public List<LessonEvent> findLessonEventsByTeacherAndDate(String teacher, LocalDate date) {
         return repository.findLessonEventByTeacherAndDate(teacher,date);
     }
     
+    //Change markers for conditional GETs on the teacher and student collections; never cached
+    @Transactional(readOnly = true)
+    public LessonMarker findTeacherMarker(String teacher) {
+        return repository.findTeacherMarker(teacher);
+    }
+
+    @Transactional(readOnly = true)
+    public LessonMarker findStudentMarker(String student) {
+        return repository.findStudentMarker(student);
+    }
+
+    //Get a Student's lesson totals for the profile page off the summary row; never cached
+    public StudentLessonSummary findStudentSummary(String student) {
+        return summaries.findSummary(student);
+    }
+
+    //Summarize a Teacher's Lessons per day, week or month; endDate is inclusive
+    //The database groups by day and billing status, so at most one row per status per day comes back to be rolled up
+    @Transactional(readOnly = true)
+    public LessonCalendarSummary summarizeTeacherLessons(String teacher, LocalDate startDate, LocalDate endDate, Granularity granularity) {
+        Map<LocalDate, PeriodTotals> periods = new TreeMap<>();
+        PeriodTotals totals = new PeriodTotals();
+        for (LessonDayCount day : repository.countLessonsByDay(teacher, startDate, endDate.plusDays(1))) {
+            periods.computeIfAbsent(granularity.periodStart(day.getLessonDate()), start -> new PeriodTotals()).add(day);
+            totals.add(day);
+        }
+        List<LessonPeriod> summaries = new ArrayList<>(periods.size());
+        periods.forEach((start, period) -> summaries.add(new LessonPeriod(start, period.lessons, period.minutes, period.byBillingStatus)));
+        return new LessonCalendarSummary(teacher, startDate, endDate, granularity,
+                                         totals.lessons, totals.minutes, totals.byBillingStatus, summaries);
+    }
+
+    private static final class PeriodTotals {
+        private long lessons;
+        private long minutes;
+        private final Map<BillingStatus, Long> byBillingStatus = new EnumMap<>(BillingStatus.class);
+
+        void add(LessonDayCount day) {
+            lessons += day.getLessons();
+            minutes += day.getMinutes();
+            byBillingStatus.merge(day.getBillingStatus(), day.getLessons(), Long::sum);
+        }
+    }
+
+    //Get Free Slots By Teacher: gaps of at least minLength between the teacher's lessons in [from, to)
+    //Not read-only: the interval index this may load also guards bookings, so it is read from the primary
+    @Transactional
+    public List<TimeSlot> findFreeSlots(String teacher, LocalDateTime from, LocalDateTime to, Duration minLength) {
+        return schedule.findFreeSlots(teacher, from, to, minLength);
+    }
+
     //Get Lesson Events By Billing Status
+    @Transactional(readOnly = true)
     public List<LessonEvent> findLessonEventsByBillingStatus(BillingStatus billingStatus) {
         return repository.findLessonEventByBillingStatus(billingStatus);
     }
     
     //Get Lesson Events By Teacher and Billing Status
+    @Transactional(readOnly = true)
     public List<LessonEvent> findLessonEventsByTeacherAndBillingStatus(String teacher, BillingStatus billingStatus) {
         return repository.findLessonEventByTeacherAndBillingStatus(teacher, billingStatus);
     }
     
     //Get Lesson Events By Date Range and Billing Status
+    @Transactional(readOnly = true)
     public List<LessonEvent> findLessonEventsByDateRangeAndBillingStatus(LocalDate startDate, LocalDate endDate, BillingStatus billingStatus) {
         return repository.findLessonEventByDateRangeAndBillingStatus(startDate, endDate, billingStatus.name());
     }
 
+    //Get One Keyset Page of Lesson Events, ordered by date then id
+    @Transactional(readOnly = true)
+    public List<LessonEvent> findLessonEventPage(LessonFilter filter, LessonCursor after, int limit) {
+        return repository.findLessonEventPage(filter, after, limit);
+    }
+
+    //Get Lesson Events with only the requested fields selected; a null limit returns every match
+    @Transactional(readOnly = true)
+    public List<LessonFields> findLessonEventFields(LessonFilter filter, List<String> fields, LessonCursor after, Integer limit) {
+        return repository.findLessonEventFields(filter, fields, after, limit);
+    }
+
+    //Clamp a requested page size into [1, MAX_PAGE_SIZE]
+    public static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    //Search Lesson Events by title and comments, most relevant first; page is zero-based
+    @Transactional(readOnly = true)
+    public List<LessonEvent> searchLessonEvents(String text, LessonFilter filter, int page, int limit) {
+        return repository.searchLessonEvents(text, filter, Math.multiplyExact(page, limit), limit);
+    }
+
+    //Stream Lesson Events row by row without buffering the result set
+    @Transactional(readOnly = true)
+    public void streamLessonEvents(LessonFilter filter, Consumer<LessonEvent> consumer) {
+        try (Stream<LessonEvent> lessons = repository.streamLessonEvents(filter, streamFetchSize)) {
+            lessons.forEach(consumer);
+        }
+    }
+
     //Create Lesson Event
+    @Transactional
     public LessonEvent saveLessonEvent(LessonEvent lesson) {
-        return this.repository.save(lesson);
+        ChangeType changeType = ChangeType.CREATED;
+        List<StudentLesson> replaced = List.of();
+        if (lesson.getId() != null) {
+            // A POST carrying an id overwrites that lesson; it arrives without a version, so take the stored one
+            // (an unknown id is created under a fresh id, as it was before lessons were versioned)
+            Optional<LessonEvent> existing = repository.findById(lesson.getId());
+            existing.ifPresent(cache::evict);
+            lesson.setVersion(existing.map(LessonEvent::getVersion).orElse(null));
+            if (existing.isPresent()) {
+                changeType = ChangeType.UPDATED;
+                replaced = List.of(StudentLesson.of(existing.get()));
+                lesson.setSeriesId(existing.get().getSeriesId());
+                lesson.setOccurrenceDate(existing.get().getOccurrenceDate());
+            } else {
+                lesson.setId(null);
+            }
+        }
+        // An overwrite is a merge whose version only moves on flush; flushed so the outbox payload carries the committed one
+        LessonEvent saved = changeType == ChangeType.UPDATED ? repository.saveAndFlush(lesson) : repository.save(lesson);
+        schedule.reserve(saved);
+        summaries.changed(replaced, List.of(StudentLesson.of(saved)));
+        cache.evict(saved);
+        changes.record(changeType, saved);
+        return saved;
     }
 
-    //Update Lesson Event
+    //Create Lesson Events in bulk; ids come from the pooled generator, so Hibernate sends the inserts as JDBC batches,
+    //and the schedule checks them a teacher at a time rather than a lesson at a time
+    @Transactional
+    public List<LessonEvent> saveLessonEvents(List<LessonEvent> lessons) {
+        List<LessonEvent> saved = this.repository.saveAll(lessons);
+        schedule.reserve(saved);
+        summaries.changed(List.of(), saved.stream().map(StudentLesson::of).toList());
+        saved.forEach(cache::evict);
+        changes.recordAll(ChangeType.CREATED, saved);
+        return saved;
+    }
+
+    //Update Lesson Event; evicts the lesson under both its old and its new teacher/student/date
+    @Transactional
     public void updateLessonEvent(Integer id, LessonEvent lesson) {
         Optional<LessonEvent> fromRepo = repository.findById(id);
         fromRepo.ifPresent(existingLessonEvent -> {
+            cache.evict(existingLessonEvent);
+            StudentLesson before = StudentLesson.of(existingLessonEvent);
             existingLessonEvent.setStartTime(lesson.getStartTime());
             existingLessonEvent.setEndTime(lesson.getEndTime());
             existingLessonEvent.setTitle(lesson.getTitle());
@@ -80,22 +264,100 @@ public class LessonEventService {
             existingLessonEvent.setTeacher(lesson.getTeacher());
             existingLessonEvent.setTeacherEmail(lesson.getTeacherEmail());
             existingLessonEvent.setComments(lesson.getComments());
-            repository.save(existingLessonEvent);
+            if (lesson.getBillingStatus() != null) {
+                existingLessonEvent.setBillingStatus(lesson.getBillingStatus());
+            }
+            // Flushed so the version and lastModified in the outbox payload are the ones that get committed
+            LessonEvent saved = repository.saveAndFlush(existingLessonEvent);
+            schedule.reserve(saved);
+            summaries.changed(List.of(before), List.of(StudentLesson.of(saved)));
+            cache.evict(saved);
+            changes.record(ChangeType.UPDATED, saved);
         });
     }
     
+    //Patch Lesson Event: one UPDATE of the patched columns guarded by the version; returns the new version, or null
+    //if there is no such lesson. A stale version throws instead of overwriting someone else's edit, and so does a
+    //patch that leaves the lesson ending at or before its start. Like an update, evicts the lesson under both its old
+    //and its new teacher/student/date.
+    @Transactional
+    public Long patchLessonEvent(Integer id, long expectedVersion, LessonPatch patch) {
+        Map<String, Object> patched = patch.changes();
+        Optional<LessonEvent> before = repository.findById(id);
+        if (before.isEmpty()) {
+            return null;
+        }
+        // Captured now: the UPDATE clears the persistence context, and the summary needs what the row held
+        cache.evict(before.get());
+        StudentLesson counted = StudentLesson.of(before.get());
+        int updated = repository.patchLessonEvent(id, expectedVersion, patched, LocalDateTime.now());
+        if (updated == 0) {
+            if (!repository.existsById(id)) {
+                return null;
+            }
+            throw new ObjectOptimisticLockingFailureException(LessonEvent.class, id);
+        }
+        LessonEvent after = repository.findById(id).orElseThrow(() -> new ObjectOptimisticLockingFailureException(LessonEvent.class, id));
+        // Only the merged row has both times; the UPDATE is rolled back with the throw
+        if (after.getStartTime() != null && after.getEndTime() != null && !after.getEndTime().isAfter(after.getStartTime())) {
+            throw new InvalidLessonTimesException(after);
+        }
+        if (patched.containsKey("startTime") || patched.containsKey("endTime") || patched.containsKey("teacher")) {
+            schedule.reserve(after);
+        }
+        if (patched.containsKey("startTime") || patched.containsKey("student") || patched.containsKey("billingStatus")) {
+            summaries.changed(List.of(counted), List.of(StudentLesson.of(after)));
+        }
+        cache.evict(after);
+        changes.recordRowChanges(ChangeType.UPDATED, List.of(id));
+        return expectedVersion + 1;
+    }
+
     //Update Lesson Event Billing Status
+    @Transactional
     public void updateLessonEventBillingStatus(Integer id, BillingStatus billingStatus) {
         Optional<LessonEvent> fromRepo = repository.findById(id);
         fromRepo.ifPresent(existingLessonEvent -> {
+            StudentLesson before = StudentLesson.of(existingLessonEvent);
             existingLessonEvent.setBillingStatus(billingStatus);
-            repository.save(existingLessonEvent);
+            LessonEvent saved = repository.saveAndFlush(existingLessonEvent);
+            summaries.changed(List.of(before), List.of(StudentLesson.of(saved)));
+            cache.evict(saved);
+            changes.record(ChangeType.BILLING_STATUS, saved);
         });
     }
 
+    //Bulk Update Billing Status; returns the ids that were in expectedStatus and now have targetStatus
+    @Transactional
+    public List<Integer> transitionBillingStatus(List<Integer> ids, BillingStatus expectedStatus, BillingStatus targetStatus) {
+        List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<Integer> changed = new ArrayList<>();
+        LocalDateTime modifiedAt = LocalDateTime.now();
+        for (int from = 0; from < distinctIds.size(); from += BILLING_BATCH_SIZE) {
+            List<Integer> chunk = distinctIds.subList(from, Math.min(from + BILLING_BATCH_SIZE, distinctIds.size()));
+            List<Integer> eligible = repository.lockIdsInBillingStatus(chunk, expectedStatus);
+            if (!eligible.isEmpty()) {
+                repository.updateBillingStatus(eligible, expectedStatus, targetStatus, modifiedAt);
+                changed.addAll(eligible);
+            }
+        }
+        summaries.billingStatusChanged(changed, expectedStatus, targetStatus);
+        cache.evictIds(changed);
+        changes.recordBillingStatusChanges(changed);
+        return changed;
+    }
+
     //Delete Lesson Event
+    @Transactional
     public void deleteLessonEvent(Integer id) {
+        Optional<LessonEvent> existing = this.repository.findById(id);
+        existing.ifPresent(lesson -> {
+            cache.evict(lesson);
+            changes.record(ChangeType.DELETED, lesson);
+        });
+        schedule.release(id);
         this.repository.deleteById(id);
+        existing.ifPresent(lesson -> summaries.changed(List.of(StudentLesson.of(lesson)), List.of()));
     }
 
 }
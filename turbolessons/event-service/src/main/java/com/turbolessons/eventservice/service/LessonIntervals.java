@@ -0,0 +1,125 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dto.LessonSlot;
+import com.turbolessons.eventservice.dto.TimeSlot;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * One teacher's lessons as half-open [startTime, endTime) intervals, ordered by start. Any lesson overlapping a window
+ * starts less than the longest lesson's duration before the window, so overlap and free-slot queries are one
+ * O(log n) seek plus a walk over the lessons near the window, however many lessons the teacher has. Lessons that
+ * already overlap (rows from before conflicts were rejected) are handled the same way. Not thread-safe on its own.
+ */
+public class LessonIntervals {
+
+    private static final Comparator<LessonSlot> BY_START = Comparator.comparing(LessonSlot::startTime)
+            .thenComparing(LessonSlot::id, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final NavigableSet<LessonSlot> slots = new TreeSet<>(BY_START);
+    private final Map<Integer, LessonSlot> byId = new HashMap<>();
+    // Only ever grows; a stale maximum just widens the seek window
+    private Duration longest = Duration.ZERO;
+
+    public LessonIntervals() {
+    }
+
+    public LessonIntervals(List<LessonSlot> lessons) {
+        lessons.forEach(this::add);
+    }
+
+    // Adds or moves a lesson; lessons without both times occupy nothing
+    public void add(LessonSlot lesson) {
+        remove(lesson.id());
+        if (lesson.startTime() == null || lesson.endTime() == null || !lesson.endTime().isAfter(lesson.startTime())) {
+            return;
+        }
+        slots.add(lesson);
+        byId.put(lesson.id(), lesson);
+        Duration duration = Duration.between(lesson.startTime(), lesson.endTime());
+        if (duration.compareTo(longest) > 0) {
+            longest = duration;
+        }
+    }
+
+    public boolean remove(Integer id) {
+        LessonSlot previous = byId.remove(id);
+        return previous != null && slots.remove(previous);
+    }
+
+    public boolean contains(Integer id) {
+        return byId.containsKey(id);
+    }
+
+    public Set<Integer> ids() {
+        return Collections.unmodifiableSet(byId.keySet());
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    // Id of a lesson other than ignoreId that overlaps [start, end), or null
+    public Integer findOverlap(LocalDateTime start, LocalDateTime end, Integer ignoreId) {
+        for (LessonSlot slot : near(start, end)) {
+            if (slot.endTime().isAfter(start) && !slot.id().equals(ignoreId)) {
+                return slot.id();
+            }
+        }
+        return null;
+    }
+
+    // The lessons overlapping [start, end), in order
+    public List<LessonSlot> overlapping(LocalDateTime start, LocalDateTime end) {
+        List<LessonSlot> overlapping = new ArrayList<>();
+        for (LessonSlot slot : near(start, end)) {
+            if (slot.endTime().isAfter(start)) {
+                overlapping.add(slot);
+            }
+        }
+        return overlapping;
+    }
+
+    // Gaps of at least minLength between the lessons in [from, to), in order
+    public List<TimeSlot> freeSlots(LocalDateTime from, LocalDateTime to, Duration minLength) {
+        List<TimeSlot> free = new ArrayList<>();
+        LocalDateTime cursor = from;
+        for (LessonSlot slot : near(from, to)) {
+            if (slot.startTime().isAfter(cursor)) {
+                addIfLongEnough(free, cursor, slot.startTime(), minLength);
+            }
+            if (slot.endTime().isAfter(cursor)) {
+                cursor = slot.endTime();
+            }
+        }
+        if (cursor.isBefore(to)) {
+            addIfLongEnough(free, cursor, to, minLength);
+        }
+        return free;
+    }
+
+    // Every lesson that can overlap [start, end): those starting after start - longest and before end
+    private NavigableSet<LessonSlot> near(LocalDateTime start, LocalDateTime end) {
+        if (!end.isAfter(start)) {
+            return new TreeSet<>(BY_START);
+        }
+        return slots.subSet(new LessonSlot(null, start.minus(longest), null), false,
+                            new LessonSlot(null, end, null), false);
+    }
+
+    private static void addIfLongEnough(List<TimeSlot> free, LocalDateTime start, LocalDateTime end, Duration minLength) {
+        if (Duration.between(start, end).compareTo(minLength) >= 0) {
+            free.add(new TimeSlot(start, end));
+        }
+    }
+}
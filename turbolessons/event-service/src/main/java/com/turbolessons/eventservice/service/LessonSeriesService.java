@@ -0,0 +1,149 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dao.LessonArchiveRepo;
+import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dao.LessonSeriesRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonSeries;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Recurring lessons. A series is one row however long it runs; calendar reads expand it for the requested range only
+ * and merge the result with the stored lessons. An occurrence gets a {@link LessonEvent} row of its own (through
+ * {@link LessonEventService}, so it is cached, versioned and published like any other lesson) only once it is edited
+ * or billed, and from then on that row replaces the computed occurrence.
+ */
+@Service
+public class LessonSeriesService {
+
+    private static final Comparator<LessonEvent> BY_START_TIME = Comparator.comparing(LessonEvent::getStartTime)
+            .thenComparing(LessonEvent::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final LessonSeriesRepo seriesRepository;
+    private final LessonEventRepo lessonRepository;
+    private final LessonArchiveRepo archive;
+    private final LessonEventService lessonService;
+    private final TeacherSchedule schedule;
+
+    public LessonSeriesService(LessonSeriesRepo seriesRepository, LessonEventRepo lessonRepository, LessonArchiveRepo archive,
+                               LessonEventService lessonService, TeacherSchedule schedule) {
+        this.seriesRepository = seriesRepository;
+        this.lessonRepository = lessonRepository;
+        this.archive = archive;
+        this.lessonService = lessonService;
+        this.schedule = schedule;
+    }
+
+    //Get Lesson Series
+    @Transactional(readOnly = true)
+    public LessonSeries findSeries(Integer id) {
+        Optional<LessonSeries> series = seriesRepository.findById(id);
+        series.ifPresent(found -> found.getExdates().size());
+        return series.orElse(null);
+    }
+
+    //Create Lesson Series; throws, rolling the series back, if an occurrence overlaps the teacher's lessons or series
+    @Transactional
+    public LessonSeries saveSeries(LessonSeries series) {
+        series.setId(null);
+        LessonSeries saved = seriesRepository.save(series);
+        schedule.checkSeries(saved);
+        return saved;
+    }
+
+    //Delete Lesson Series; occurrences that already have rows stay behind as ordinary lessons
+    @Transactional
+    public void deleteSeries(Integer id) {
+        seriesRepository.findById(id).ifPresent(seriesRepository::delete);
+    }
+
+    //Get Lesson Calendar By Teacher: stored lessons, live or archived, plus the series occurrences in [startDate, endDate]
+    @Transactional(readOnly = true)
+    public List<LessonEvent> findTeacherCalendar(String teacher, LocalDate startDate, LocalDate endDate) {
+        List<LessonEvent> stored = new ArrayList<>(lessonRepository.findLessonEventByTeacherInDateRange(teacher, startDate, endDate.plusDays(1)));
+        stored.addAll(archive.findTeacherLessonsInDateRange(teacher, startDate, endDate.plusDays(1)));
+        return merge(stored,
+                     seriesRepository.findTeacherSeriesInDateRange(teacher, startDate, endDate.plusDays(1).atStartOfDay()),
+                     startDate, endDate);
+    }
+
+    //Get Lesson Calendar By Student
+    @Transactional(readOnly = true)
+    public List<LessonEvent> findStudentCalendar(String student, LocalDate startDate, LocalDate endDate) {
+        List<LessonEvent> stored = new ArrayList<>(lessonRepository.findLessonEventByStudentInDateRange(student, startDate, endDate.plusDays(1)));
+        stored.addAll(archive.findStudentLessonsInDateRange(student, startDate, endDate.plusDays(1)));
+        return merge(stored,
+                     seriesRepository.findStudentSeriesInDateRange(student, startDate, endDate.plusDays(1).atStartOfDay()),
+                     startDate, endDate);
+    }
+
+    // Occurrences that have a row are skipped whether or not the row is still in range, since an edit may have moved it
+    private List<LessonEvent> merge(List<LessonEvent> stored, List<LessonSeries> series, LocalDate startDate, LocalDate endDate) {
+        List<LessonEvent> calendar = new ArrayList<>(stored);
+        if (!series.isEmpty()) {
+            Set<Integer> seriesIds = series.stream().map(LessonSeries::getId).collect(Collectors.toSet());
+            Set<SeriesOccurrence> materialised = new HashSet<>(lessonRepository.findSeriesOccurrences(seriesIds, startDate, endDate));
+            materialised.addAll(archive.findSeriesOccurrences(seriesIds, startDate, endDate));
+            for (LessonSeries each : series) {
+                each.occurrenceDates(startDate, endDate)
+                        .filter(date -> !materialised.contains(new SeriesOccurrence(each.getId(), date)))
+                        .map(each::occurrence)
+                        .forEach(calendar::add);
+            }
+        }
+        calendar.sort(BY_START_TIME);
+        return calendar;
+    }
+
+    //Materialise Series Occurrence: gives the occurrence on date a row of its own so it can be edited or billed.
+    //edits, if given, replaces the computed lesson. Returns the row already there, live or archived, untouched; null if
+    //the series doesn't schedule a lesson on that date.
+    @Transactional
+    public LessonEvent materialiseOccurrence(Integer seriesId, LocalDate date, LessonEvent edits) {
+        LessonSeries series = seriesRepository.findById(seriesId).orElse(null);
+        if (series == null || !series.schedules(date) || series.getExdates().contains(date)) {
+            return null;
+        }
+        Optional<LessonEvent> existing = lessonRepository.findBySeriesIdAndOccurrenceDate(seriesId, date)
+                .or(() -> archive.findBySeriesIdAndOccurrenceDate(seriesId, date));
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        LessonEvent lesson = edits != null ? edits : series.occurrence(date);
+        lesson.setId(null);
+        lesson.setSeriesId(seriesId);
+        lesson.setOccurrenceDate(date);
+        return lessonService.saveLessonEvent(lesson);
+    }
+
+    //Cancel Series Occurrence: records the exdate and removes the occurrence's row unless it has been billed. An
+    //archived occurrence has already taken place and is left as it is. Returns false if the series doesn't schedule
+    //a lesson on that date.
+    @Transactional
+    public boolean cancelOccurrence(Integer seriesId, LocalDate date) {
+        LessonSeries series = seriesRepository.findById(seriesId).orElse(null);
+        if (series == null || !series.schedules(date)) {
+            return false;
+        }
+        if (archive.findBySeriesIdAndOccurrenceDate(seriesId, date).isPresent()) {
+            return true;
+        }
+        series.getExdates().add(date);
+        lessonRepository.findBySeriesIdAndOccurrenceDate(seriesId, date)
+                .filter(lesson -> lesson.getBillingStatus() == BillingStatus.UNLOGGED)
+                .ifPresent(lesson -> lessonService.deleteLessonEvent(lesson.getId()));
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dao.StudentLessonSummaryRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.StudentLesson;
+import com.turbolessons.eventservice.dto.StudentLessonCount;
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Keeps {@link StudentLessonSummary} rows in step with the lessons. {@link LessonEventService} reports each write here
+ * inside its own transaction, so a summary commits or rolls back with the lessons it counts. The row is locked and the
+ * change applied as a delta; only a stale row, a new student or the removal of a student's last/next lesson costs a
+ * recount of that one student's lessons.
+ */
+@Service
+public class StudentSummaryService {
+
+    private final StudentLessonSummaryRepo summaries;
+    private final LessonEventRepo lessons;
+
+    public StudentSummaryService(StudentLessonSummaryRepo summaries, LessonEventRepo lessons) {
+        this.summaries = summaries;
+        this.lessons = lessons;
+    }
+
+    //Get One Student's Summary, a primary key read unless an upcoming lesson has started since the row last changed
+    @Transactional
+    public StudentLessonSummary findSummary(String student) {
+        Optional<StudentLessonSummary> summary = summaries.findById(student);
+        if (summary.isEmpty()) {
+            return new StudentLessonSummary(student);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (!summary.get().isStale(now)) {
+            return summary.get();
+        }
+        return recount(student, summaries.lockByStudent(student), now);
+    }
+
+    // Lessons that left (their state before the write) and lessons that arrived (after it); students are locked in
+    // name order so two writes touching the same pair of students can't deadlock
+    public void changed(Collection<StudentLesson> removed, Collection<StudentLesson> added) {
+        Map<String, List<StudentLesson>> removedByStudent = byStudent(removed);
+        Map<String, List<StudentLesson>> addedByStudent = byStudent(added);
+        SortedSet<String> students = new TreeSet<>(removedByStudent.keySet());
+        students.addAll(addedByStudent.keySet());
+        LocalDateTime now = LocalDateTime.now();
+        for (String student : students) {
+            StudentLessonSummary summary = lock(student);
+            if (summary.isStale(now)
+                || !summary.apply(removedByStudent.getOrDefault(student, List.of()), addedByStudent.getOrDefault(student, List.of()), now)) {
+                recount(student, Optional.of(summary), now);
+            }
+        }
+    }
+
+    // A bulk billing transition of these ids, already applied; only the unbilled counts can move
+    public void billingStatusChanged(Collection<Integer> ids, BillingStatus expectedStatus, BillingStatus targetStatus) {
+        long direction = (targetStatus == BillingStatus.UNLOGGED ? 1 : 0) - (expectedStatus == BillingStatus.UNLOGGED ? 1 : 0);
+        if (ids.isEmpty() || direction == 0) {
+            return;
+        }
+        Map<String, Long> byStudent = new TreeMap<>();
+        for (StudentLessonCount count : lessons.countLessonsByStudent(ids)) {
+            byStudent.put(count.getStudent(), count.getLessons());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        byStudent.forEach((student, count) -> {
+            StudentLessonSummary summary = lock(student);
+            if (summary.isStale(now)) {
+                recount(student, Optional.of(summary), now);
+            } else {
+                summary.addUnbilled(direction * count);
+            }
+        });
+    }
+
+    // A student's first lessons may be written by two transactions at once; inserting an uncounted row first means both
+    // lock the same row and queue up behind each other, rather than both inserting. The uncounted row reads as stale,
+    // so whoever gets it first counts the student from scratch.
+    private StudentLessonSummary lock(String student) {
+        summaries.insertIfMissing(student);
+        return summaries.lockByStudent(student)
+                .orElseThrow(() -> new IllegalStateException("No summary row for " + student + " after inserting one"));
+    }
+
+    private StudentLessonSummary recount(String student, Optional<StudentLessonSummary> locked, LocalDateTime now) {
+        // The count has to see this transaction's pending lesson writes
+        lessons.flush();
+        StudentLessonSummary summary = locked.orElseGet(() -> new StudentLessonSummary(student));
+        summary.recount(summaries.countStudentLessons(student, now));
+        return summaries.save(summary);
+    }
+
+    private static Map<String, List<StudentLesson>> byStudent(Collection<StudentLesson> lessons) {
+        Map<String, List<StudentLesson>> byStudent = new TreeMap<>();
+        for (StudentLesson lesson : lessons) {
+            if (lesson.student() != null) {
+                byStudent.computeIfAbsent(lesson.student(), student -> new ArrayList<>()).add(lesson);
+            }
+        }
+        return byStudent;
+    }
+}
@@ -0,0 +1,291 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dao.LessonSeriesRepo;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonSeries;
+import com.turbolessons.eventservice.dto.LessonSlot;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Per-teacher {@link LessonIntervals}, loaded from the database on first use and kept in step by the writes in
+ * {@link LessonEventService}. A write claims its slot as soon as it is checked, so a second request for the same time
+ * on this instance conflicts even before the first one commits; a rollback drops the teacher's index so the next use
+ * reloads what was actually committed. Like the read caches, entries are reloaded after a TTL to pick up writes other
+ * instances made; until then a write also locks the teacher's row in {@code teacher_schedule_lock} and checks the
+ * committed lessons, so two instances cannot book the same time.
+ * <p>
+ * Series occurrences without a row of their own are not in the index; they are expanded from the teacher's series
+ * for just the window being checked. A new series is checked occurrence by occurrence up to
+ * {@code lessons.schedule.series-horizon-days} ahead. Archived lessons are not in the index at all.
+ */
+@Component
+public class TeacherSchedule {
+
+    private final LessonEventRepo repository;
+    private final LessonSeriesRepo seriesRepository;
+    private final long ttlNanos;
+    private final int seriesHorizonDays;
+    private final Map<String, Loaded> teachers = new ConcurrentHashMap<>();
+    // Which teacher's index holds each lesson, so a write that changes the teacher can find the old slot; entries
+    // leave with the index they point into
+    private final Map<Integer, String> teacherOf = new ConcurrentHashMap<>();
+
+    public TeacherSchedule(LessonEventRepo repository, LessonSeriesRepo seriesRepository,
+                           @Value("${lessons.schedule.ttl-seconds:600}") long ttlSeconds,
+                           @Value("${lessons.schedule.series-horizon-days:365}") int seriesHorizonDays) {
+        this.repository = repository;
+        this.seriesRepository = seriesRepository;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.seriesHorizonDays = seriesHorizonDays;
+    }
+
+    private record Loaded(LessonIntervals intervals, long loadedAt) {
+    }
+
+    // Checks a saved lesson against the teacher's other lessons and series and records its slot; throws if it overlaps
+    // one. A materialised occurrence is not checked against the occurrence it replaces.
+    public void reserve(LessonEvent lesson) {
+        reserve(List.of(lesson));
+    }
+
+    // The same for a batch of saved lessons, which are also checked against each other. Each teacher is locked once
+    // and their stored lessons and series read once, over the span of the batch, rather than once per lesson; the
+    // teachers are locked in name order so two batches cannot deadlock on each other.
+    public void reserve(List<LessonEvent> lessons) {
+        Map<String, List<LessonEvent>> byTeacher = new TreeMap<>();
+        for (LessonEvent lesson : lessons) {
+            if (lesson.getId() == null) {
+                continue;
+            }
+            release(lesson.getId());
+            if (lesson.getTeacher() != null) {
+                byTeacher.computeIfAbsent(lesson.getTeacher(), teacher -> new ArrayList<>()).add(lesson);
+            }
+        }
+        byTeacher.forEach(this::reserve);
+    }
+
+    private void reserve(String teacher, List<LessonEvent> lessons) {
+        List<LessonEvent> timed = lessons.stream()
+                .filter(lesson -> lesson.getStartTime() != null && lesson.getEndTime() != null)
+                .toList();
+        if (!timed.isEmpty()) {
+            checkStored(teacher, timed);
+        }
+        LessonIntervals intervals = intervals(teacher);
+        // Registered first: a conflict part way through leaves the earlier lessons of the batch in the index
+        invalidateOnRollback(teacher);
+        synchronized (intervals) {
+            for (LessonEvent lesson : lessons) {
+                if (lesson.getStartTime() != null && lesson.getEndTime() != null) {
+                    Integer conflict = intervals.findOverlap(lesson.getStartTime(), lesson.getEndTime(), lesson.getId());
+                    if (conflict != null) {
+                        throw new LessonConflictException(lesson, conflict);
+                    }
+                }
+                intervals.add(new LessonSlot(lesson.getId(), lesson.getStartTime(), lesson.getEndTime()));
+                teacherOf.put(lesson.getId(), teacher);
+            }
+        }
+    }
+
+    // This index misses what other instances wrote since it was loaded; with the teacher locked, the database has the
+    // last word, and the next write for this teacher anywhere waits for this one to commit. The batch's own rows are
+    // left to the index, which checks them against each other.
+    private void checkStored(String teacher, List<LessonEvent> lessons) {
+        LocalDateTime from = lessons.stream().map(LessonEvent::getStartTime).min(Comparator.naturalOrder()).orElseThrow();
+        LocalDateTime to = lessons.stream().map(LessonEvent::getEndTime).max(Comparator.naturalOrder()).orElseThrow();
+        Set<Integer> batch = lessons.stream().map(LessonEvent::getId).collect(Collectors.toSet());
+        repository.lockTeacherSchedule(teacher);
+        LessonIntervals stored = new LessonIntervals(repository.lockSlotsOverlapping(teacher, from, to).stream()
+                                                             .filter(slot -> !batch.contains(slot.id()))
+                                                             .toList());
+        List<LessonEvent> occurrences = occurrences(teacher, from, to);
+        LessonIntervals series = new LessonIntervals(occurrenceSlots(occurrences));
+        for (LessonEvent lesson : lessons) {
+            Integer conflict = stored.findOverlap(lesson.getStartTime(), lesson.getEndTime(), null);
+            if (conflict != null) {
+                throw new LessonConflictException(lesson, conflict);
+            }
+            SeriesOccurrence own = new SeriesOccurrence(lesson.getSeriesId(), lesson.getOccurrenceDate());
+            for (LessonSlot slot : series.overlapping(lesson.getStartTime(), lesson.getEndTime())) {
+                LessonEvent occurrence = occurrences.get(-slot.id() - 1);
+                SeriesOccurrence overlapped = new SeriesOccurrence(occurrence.getSeriesId(), occurrence.getOccurrenceDate());
+                if (!overlapped.equals(own)) {
+                    throw new LessonConflictException(lesson, overlapped);
+                }
+            }
+        }
+    }
+
+    // Frees a lesson's slot, e.g. on delete
+    public void release(Integer id) {
+        String teacher = teacherOf.remove(id);
+        if (teacher == null) {
+            return;
+        }
+        Loaded loaded = teachers.get(teacher);
+        if (loaded != null) {
+            synchronized (loaded.intervals()) {
+                loaded.intervals().remove(id);
+            }
+        }
+        invalidateOnRollback(teacher);
+    }
+
+    public Integer findOverlap(String teacher, LocalDateTime start, LocalDateTime end) {
+        LessonIntervals intervals = intervals(teacher);
+        synchronized (intervals) {
+            return intervals.findOverlap(start, end, null);
+        }
+    }
+
+    public List<TimeSlot> findFreeSlots(String teacher, LocalDateTime from, LocalDateTime to, Duration minLength) {
+        List<LessonEvent> occurrences = occurrences(teacher, from, to);
+        LessonIntervals intervals = intervals(teacher);
+        synchronized (intervals) {
+            if (occurrences.isEmpty()) {
+                return intervals.freeSlots(from, to, minLength);
+            }
+            LessonIntervals window = new LessonIntervals(intervals.overlapping(from, to));
+            occurrenceSlots(occurrences).forEach(window::add);
+            return window.freeSlots(from, to, minLength);
+        }
+    }
+
+    // Checks every occurrence of a newly saved series, up to the horizon, against the teacher's lessons and other series
+    public void checkSeries(LessonSeries series) {
+        if (series.getTeacher() == null || series.getStartTime() == null || series.getEndTime() == null) {
+            return;
+        }
+        repository.lockTeacherSchedule(series.getTeacher());
+        LocalDate first = series.getStartTime().toLocalDate();
+        LocalDate last = first.plusDays(seriesHorizonDays);
+        List<LessonEvent> others = occurrences(series.getTeacher(), series.getStartTime(), last.plusDays(1).atStartOfDay()).stream()
+                .filter(occurrence -> !occurrence.getSeriesId().equals(series.getId()))
+                .toList();
+        LessonIntervals otherSeries = new LessonIntervals(occurrenceSlots(others));
+        LessonIntervals intervals = intervals(series.getTeacher());
+        series.occurrenceDates(first, last).map(series::occurrence).forEach(occurrence -> {
+            Integer conflict;
+            synchronized (intervals) {
+                conflict = intervals.findOverlap(occurrence.getStartTime(), occurrence.getEndTime(), null);
+            }
+            if (conflict == null) {
+                conflict = repository.lockOverlapping(series.getTeacher(), occurrence.getStartTime(), occurrence.getEndTime(), -1).stream()
+                        .findFirst().orElse(null);
+            }
+            if (conflict != null) {
+                throw new LessonConflictException(occurrence, conflict);
+            }
+            Integer other = otherSeries.findOverlap(occurrence.getStartTime(), occurrence.getEndTime(), null);
+            if (other != null) {
+                LessonEvent overlapped = others.get(-other - 1);
+                throw new LessonConflictException(occurrence, new SeriesOccurrence(overlapped.getSeriesId(), overlapped.getOccurrenceDate()));
+            }
+        });
+    }
+
+    // Occurrences of the teacher's series overlapping [from, to) that have no row of their own (rows are in the index).
+    // Dates start the day before, for an occurrence late in the evening that runs into the window.
+    private List<LessonEvent> occurrences(String teacher, LocalDateTime from, LocalDateTime to) {
+        LocalDate fromDate = from.toLocalDate().minusDays(1);
+        LocalDate toDate = to.toLocalDate();
+        List<LessonSeries> series = seriesRepository.findTeacherSeriesInDateRange(teacher, fromDate, to);
+        if (series.isEmpty()) {
+            return List.of();
+        }
+        Set<Integer> seriesIds = series.stream().map(LessonSeries::getId).collect(Collectors.toSet());
+        Set<SeriesOccurrence> materialised = new HashSet<>(repository.findSeriesOccurrences(seriesIds, fromDate, toDate));
+        List<LessonEvent> occurrences = new ArrayList<>();
+        for (LessonSeries each : series) {
+            each.occurrenceDates(fromDate, toDate)
+                    .filter(date -> !materialised.contains(new SeriesOccurrence(each.getId(), date)))
+                    .map(each::occurrence)
+                    .filter(occurrence -> occurrence.getStartTime().isBefore(to) && occurrence.getEndTime().isAfter(from))
+                    .forEach(occurrences::add);
+        }
+        return occurrences;
+    }
+
+    // Occurrences have no lesson id; the i-th gets -(i + 1), which is only meaningful against the list it came from
+    private static List<LessonSlot> occurrenceSlots(List<LessonEvent> occurrences) {
+        List<LessonSlot> slots = new ArrayList<>(occurrences.size());
+        for (int i = 0; i < occurrences.size(); i++) {
+            slots.add(new LessonSlot(-(i + 1), occurrences.get(i).getStartTime(), occurrences.get(i).getEndTime()));
+        }
+        return slots;
+    }
+
+    public void invalidate(String teacher) {
+        teachers.computeIfPresent(teacher, (key, loaded) -> {
+            forget(key, loaded);
+            return null;
+        });
+    }
+
+    public void clear() {
+        teachers.clear();
+        teacherOf.clear();
+    }
+
+    // The query runs outside the map, so a slow load holds up only this teacher's callers. If another caller installed
+    // a fresh index meanwhile, that one wins and keeps whatever was reserved in it.
+    private LessonIntervals intervals(String teacher) {
+        long now = System.nanoTime();
+        Loaded seen = teachers.get(teacher);
+        if (seen != null && now - seen.loadedAt() < ttlNanos) {
+            return seen.intervals();
+        }
+        List<LessonSlot> slots = repository.findTeacherSlots(teacher);
+        return teachers.compute(teacher, (key, current) -> {
+            if (current != null && current != seen) {
+                return current;
+            }
+            if (current != null) {
+                forget(key, current);
+            }
+            slots.forEach(slot -> teacherOf.put(slot.id(), key));
+            return new Loaded(new LessonIntervals(slots), now);
+        }).intervals();
+    }
+
+    // Drops the lesson-to-teacher entries of an index that is going away, unless a write has since moved the lesson
+    private void forget(String teacher, Loaded loaded) {
+        synchronized (loaded.intervals()) {
+            loaded.intervals().ids().forEach(id -> teacherOf.remove(id, teacher));
+        }
+    }
+
+    private void invalidateOnRollback(String teacher) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        invalidate(teacher);
+                    }
+                }
+            });
+        }
+    }
+}
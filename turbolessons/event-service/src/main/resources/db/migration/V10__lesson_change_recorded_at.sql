@@ -0,0 +1,2 @@
+-- Insert time by the database's own clock; LessonChangeService ages sequence gaps out against it
+ALTER TABLE lesson_change ADD COLUMN recorded_at DATETIME(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6);
@@ -0,0 +1,6 @@
+-- One row per teacher, locked by every lesson write for that teacher so the overlap check and the write are one step
+-- across instances; see TeacherSchedule.reserve. Rows are created on first use.
+CREATE TABLE teacher_schedule_lock (
+    teacher VARCHAR(255) NOT NULL,
+    PRIMARY KEY (teacher)
+) ENGINE = InnoDB;
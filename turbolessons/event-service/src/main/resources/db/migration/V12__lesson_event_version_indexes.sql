@@ -0,0 +1,6 @@
+-- The per-teacher/per-student change markers now sum versions and ids instead of taking the newest last_modified,
+-- which each instance stamps from its own clock. InnoDB appends the primary key, so these cover both sums.
+DROP INDEX idx_lesson_event_teacher_modified ON lesson_event;
+DROP INDEX idx_lesson_event_student_modified ON lesson_event;
+CREATE INDEX idx_lesson_event_teacher_version ON lesson_event (teacher, version);
+CREATE INDEX idx_lesson_event_student_version ON lesson_event (student, version);
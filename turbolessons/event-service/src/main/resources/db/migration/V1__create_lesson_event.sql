@@ -0,0 +1,15 @@
+-- Schema as previously generated by hibernate ddl-auto: update. Existing databases are baselined at this version.
+CREATE TABLE lesson_event (
+    id             INT          NOT NULL AUTO_INCREMENT,
+    billing_status VARCHAR(255) NOT NULL,
+    comments       VARCHAR(255),
+    date           DATE,
+    end_time       DATETIME,
+    start_time     DATETIME,
+    student        VARCHAR(255),
+    student_email  VARCHAR(255),
+    teacher        VARCHAR(255),
+    teacher_email  VARCHAR(255),
+    title          VARCHAR(255),
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,6 @@
+-- Composite indexes for the teacher/student/billing-status finders, all of which range-scan on date.
+-- The bare date index serves the daily lookups and the (date, id) keyset order, since InnoDB appends the primary key.
+CREATE INDEX idx_lesson_event_date ON lesson_event (date);
+CREATE INDEX idx_lesson_event_teacher_date ON lesson_event (teacher, date);
+CREATE INDEX idx_lesson_event_student_date ON lesson_event (student, date);
+CREATE INDEX idx_lesson_event_billing_status_date ON lesson_event (billing_status, date);
@@ -0,0 +1,12 @@
+-- Transactional outbox: one row per lesson mutation, written in the same transaction as the change itself
+CREATE TABLE lesson_change (
+    seq            BIGINT       NOT NULL AUTO_INCREMENT,
+    lesson_id      INT          NOT NULL,
+    change_type    VARCHAR(32)  NOT NULL,
+    billing_status VARCHAR(255),
+    changed_at     DATETIME(3)  NOT NULL,
+    payload        TEXT,
+    PRIMARY KEY (seq)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_lesson_change_changed_at ON lesson_change (changed_at);
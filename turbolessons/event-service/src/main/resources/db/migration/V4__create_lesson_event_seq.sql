@@ -0,0 +1,9 @@
+-- MySQL has no sequences, so Hibernate backs lesson_event_seq with a single-row table. The pooled optimizer treats
+-- next_val as the top of the next block of 50 ids; seed it a full block past the current maximum so the first block
+-- starts after every existing row.
+CREATE TABLE lesson_event_seq (
+    next_val BIGINT
+) ENGINE=InnoDB;
+
+INSERT INTO lesson_event_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM lesson_event;
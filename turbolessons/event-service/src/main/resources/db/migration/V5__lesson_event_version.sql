@@ -0,0 +1,10 @@
+ALTER TABLE lesson_event
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN last_modified DATETIME(6) NULL;
+
+UPDATE lesson_event SET last_modified = CURRENT_TIMESTAMP(6);
+
+ALTER TABLE lesson_event MODIFY last_modified DATETIME(6) NOT NULL;
+
+CREATE INDEX idx_lesson_event_teacher_modified ON lesson_event (teacher, last_modified);
+CREATE INDEX idx_lesson_event_student_modified ON lesson_event (student, last_modified);
@@ -0,0 +1,34 @@
+-- Weekly recurring lessons, stored once and expanded per date range; see LessonSeries
+CREATE TABLE lesson_series (
+    id               INT          NOT NULL AUTO_INCREMENT,
+    start_time       DATETIME     NOT NULL,
+    end_time         DATETIME     NOT NULL,
+    title            VARCHAR(255),
+    student          VARCHAR(255),
+    student_email    VARCHAR(255),
+    teacher          VARCHAR(255),
+    teacher_email    VARCHAR(255),
+    comments         VARCHAR(255),
+    interval_weeks   INT          NOT NULL DEFAULT 1,
+    until_date       DATE,
+    occurrence_count INT,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_lesson_series_teacher ON lesson_series (teacher);
+CREATE INDEX idx_lesson_series_student ON lesson_series (student);
+
+-- Cancelled occurrences
+CREATE TABLE lesson_series_exdate (
+    series_id       INT  NOT NULL,
+    occurrence_date DATE NOT NULL,
+    PRIMARY KEY (series_id, occurrence_date),
+    CONSTRAINT fk_lesson_series_exdate_series FOREIGN KEY (series_id) REFERENCES lesson_series (id) ON DELETE CASCADE
+) ENGINE = InnoDB;
+
+-- Occurrences that were edited or billed get a lesson_event row of their own, at most one per scheduled date
+ALTER TABLE lesson_event
+    ADD COLUMN series_id INT NULL,
+    ADD COLUMN occurrence_date DATE NULL;
+
+CREATE UNIQUE INDEX uk_lesson_event_series_occurrence ON lesson_event (series_id, occurrence_date);
@@ -0,0 +1,25 @@
+-- Lessons moved out of lesson_event once they are old and settled; see LessonArchiveService. Same columns plus the
+-- time of the move, and only the indexes the history reads use, so the hot table's indexes stay small.
+CREATE TABLE lesson_event_archive (
+    id              INT          NOT NULL,
+    billing_status  VARCHAR(255) NOT NULL,
+    comments        VARCHAR(255),
+    date            DATE,
+    end_time        DATETIME,
+    start_time      DATETIME,
+    student         VARCHAR(255),
+    student_email   VARCHAR(255),
+    teacher         VARCHAR(255),
+    teacher_email   VARCHAR(255),
+    title           VARCHAR(255),
+    version         BIGINT       NOT NULL,
+    last_modified   DATETIME(6)  NOT NULL,
+    series_id       INT,
+    occurrence_date DATE,
+    archived_at     DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_lesson_event_archive_student_date ON lesson_event_archive (student, date);
+CREATE INDEX idx_lesson_event_archive_teacher_date ON lesson_event_archive (teacher, date);
+CREATE INDEX idx_lesson_event_archive_series ON lesson_event_archive (series_id, occurrence_date);
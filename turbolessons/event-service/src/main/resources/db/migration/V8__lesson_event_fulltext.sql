@@ -0,0 +1,2 @@
+-- Backs GET /api/lessons/search; the MATCH column list in LessonEventRepoImpl.searchLessonEvents has to match this one
+CREATE FULLTEXT INDEX ft_lesson_event_title_comments ON lesson_event (title, comments);
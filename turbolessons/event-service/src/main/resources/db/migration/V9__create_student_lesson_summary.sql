@@ -0,0 +1,24 @@
+-- Per-student lesson totals for the profile page; see StudentLessonSummary. Kept up to date by LessonEventService.
+CREATE TABLE student_lesson_summary (
+    student           VARCHAR(255) NOT NULL,
+    lessons_taken     BIGINT       NOT NULL,
+    upcoming          BIGINT       NOT NULL,
+    unbilled          BIGINT       NOT NULL,
+    last_lesson_date  DATE,
+    next_lesson_start DATETIME,
+    PRIMARY KEY (student)
+) ENGINE = InnoDB;
+
+-- Existing students, counted the same way as StudentLessonSummaryRepo.countStudentLessons
+INSERT INTO student_lesson_summary (student, lessons_taken, upcoming, unbilled, last_lesson_date, next_lesson_start)
+SELECT student,
+       SUM(CASE WHEN start_time < NOW() THEN 1 ELSE 0 END),
+       SUM(CASE WHEN start_time >= NOW() THEN 1 ELSE 0 END),
+       SUM(CASE WHEN billing_status = 'UNLOGGED' THEN 1 ELSE 0 END),
+       MAX(CASE WHEN start_time < NOW() THEN date END),
+       MIN(CASE WHEN start_time >= NOW() THEN start_time END)
+FROM (SELECT student, start_time, date, billing_status FROM lesson_event
+      UNION ALL
+      SELECT student, start_time, date, billing_status FROM lesson_event_archive) l
+WHERE student IS NOT NULL
+GROUP BY student;
@@ -0,0 +1,87 @@
+package com.turbolessons.eventservice.benchmark;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Shared plumbing for the {@code -Pbenchmark} suite. Every benchmark defaults to an in-memory H2 database in MySQL
+ * mode; point it at a real server with {@code -Dbenchmark.url=jdbc:mysql://... -Dbenchmark.username=...
+ * -Dbenchmark.password=...} for numbers that mean something.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    static DataSource dataSource(String h2Name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setUrl(System.getProperty("benchmark.url", "jdbc:h2:mem:" + h2Name + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+        dataSource.setUsername(System.getProperty("benchmark.username", "sa"));
+        dataSource.setPassword(System.getProperty("benchmark.password", ""));
+        return dataSource;
+    }
+
+    static int intProperty(String name, int defaultValue) {
+        return Integer.getInteger("benchmark." + name, defaultValue);
+    }
+
+    // Runs the given versioned migrations in order, dropping whatever a previous run left behind
+    static void migrate(DataSource dataSource, String... scripts) {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP TABLE IF EXISTS lesson_event_seq");
+        jdbc.execute("DROP TABLE IF EXISTS lesson_event");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        for (String script : scripts) {
+            populator.addScript(new ClassPathResource("db/migration/" + script));
+        }
+        populator.execute(dataSource);
+    }
+
+    static void apply(DataSource dataSource, String script) {
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/" + script)).execute(dataSource);
+    }
+
+    // Latency samples in nanoseconds, summarised as mean/p50/p99
+    static Stats time(int warmup, int iterations, Runnable action) {
+        for (int i = 0; i < warmup; i++) {
+            action.run();
+        }
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            action.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        return new Stats(samples);
+    }
+
+    static final class Stats {
+        private final long[] sorted;
+
+        Stats(long[] samples) {
+            this.sorted = samples.clone();
+            Arrays.sort(this.sorted);
+        }
+
+        double meanMillis() {
+            return Arrays.stream(sorted).average().orElse(0) / 1_000_000.0;
+        }
+
+        double percentileMillis(double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "mean %8.3f ms  p50 %8.3f ms  p99 %8.3f ms",
+                                 meanMillis(), percentileMillis(50), percentileMillis(99));
+        }
+    }
+}
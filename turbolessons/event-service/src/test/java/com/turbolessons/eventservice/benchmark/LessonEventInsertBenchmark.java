@@ -0,0 +1,211 @@
+package com.turbolessons.eventservice.benchmark;
+
+import com.turbolessons.eventservice.EventServiceApplication;
+import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dao.LessonSeriesRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonSeries;
+import com.turbolessons.eventservice.service.TeacherSchedule;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Compares insert throughput of the statements Hibernate issues for the old IDENTITY mapping (one INSERT and one
+ * generated-key read per row) against the pooled lesson_event_seq mapping (one sequence bump per
+ * {@link LessonEvent#ID_ALLOCATION_SIZE} ids, inserts sent as JDBC batches of the same size). Run with
+ * {@code mvn test -Pbenchmark}; tune with {@code -Dbenchmark.rows} (default 20000). Against MySQL add
+ * {@code rewriteBatchedStatements=true} to the URL, as the integration profile does.
+ * <p>
+ * A second run boots the service and times a bulk create with conflict checking on: {@code -Dbenchmark.bulk} lessons
+ * (default 1000) across {@code -Dbenchmark.teachers} teachers (default 10), each of whom also has a weekly series,
+ * saved in one transaction and checked by {@link TeacherSchedule} once a lesson at a time and once as a batch. It
+ * reports the statements Hibernate prepared as well as the time, since on H2 a round trip costs next to nothing.
+ */
+@Tag("benchmark")
+public class LessonEventInsertBenchmark {
+
+    private static final String INSERT_COLUMNS = "billing_status, comments, date, end_time, start_time, student, "
+                                                 + "student_email, teacher, teacher_email, title";
+    private static final LocalDateTime FIRST_LESSON = LocalDateTime.of(2020, 1, 6, 15, 0);
+
+    @Test
+    void compareIdentityAndPooledBatchInserts() throws SQLException {
+        int rows = BenchmarkSupport.intProperty("rows", 20_000);
+        DataSource dataSource = BenchmarkSupport.dataSource("lesson_insert_benchmark");
+
+        BenchmarkSupport.migrate(dataSource, "V1__create_lesson_event.sql", "V4__create_lesson_event_seq.sql");
+        insertWithIdentity(dataSource, rows / 10);
+        double identity = rowsPerSecond(rows, () -> insertWithIdentity(dataSource, rows));
+
+        BenchmarkSupport.migrate(dataSource, "V1__create_lesson_event.sql", "V4__create_lesson_event_seq.sql");
+        insertWithPooledBatches(dataSource, rows / 10);
+        double pooled = rowsPerSecond(rows, () -> insertWithPooledBatches(dataSource, rows));
+
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet count = statement.executeQuery("SELECT COUNT(DISTINCT id) FROM lesson_event")) {
+            count.next();
+            Assertions.assertEquals(rows + rows / 10, count.getInt(1));
+        }
+
+        System.out.printf(Locale.ROOT, "Inserted %d lesson_event rows%n", rows);
+        System.out.printf(Locale.ROOT, "IDENTITY, row by row       %10.0f rows/s%n", identity);
+        System.out.printf(Locale.ROOT, "pooled ids, batches of %-3d %10.0f rows/s%n", LessonEvent.ID_ALLOCATION_SIZE, pooled);
+    }
+
+    // One INSERT per row, reading the generated key back before the next one can be sent
+    private static void insertWithIdentity(DataSource dataSource, int rows) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO lesson_event (" + INSERT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (int i = 0; i < rows; i++) {
+                    bind(insert, 1, i);
+                    insert.executeUpdate();
+                    try (ResultSet keys = insert.getGeneratedKeys()) {
+                        keys.next();
+                    }
+                }
+            }
+            connection.commit();
+        }
+    }
+
+    // Hibernate's table-backed pooled optimizer: bump next_val once per block, then hand out ids locally
+    private static void insertWithPooledBatches(DataSource dataSource, int rows) throws SQLException {
+        int blockSize = LessonEvent.ID_ALLOCATION_SIZE;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement nextBlock = connection.prepareStatement("SELECT next_val FROM lesson_event_seq FOR UPDATE");
+                 PreparedStatement bump = connection.prepareStatement("UPDATE lesson_event_seq SET next_val = ? WHERE next_val = ?");
+                 PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO lesson_event (id, " + INSERT_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (int from = 0; from < rows; from += blockSize) {
+                    long hi;
+                    try (ResultSet block = nextBlock.executeQuery()) {
+                        block.next();
+                        hi = block.getLong(1);
+                    }
+                    bump.setLong(1, hi + blockSize);
+                    bump.setLong(2, hi);
+                    bump.executeUpdate();
+
+                    long id = hi - blockSize + 1;
+                    for (int i = from; i < Math.min(from + blockSize, rows); i++) {
+                        insert.setLong(1, id++);
+                        bind(insert, 2, i);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            }
+            connection.commit();
+        }
+    }
+
+    private static void bind(PreparedStatement insert, int first, int i) throws SQLException {
+        LocalDateTime start = FIRST_LESSON.plusWeeks(i % 520).plusMinutes(30L * (i % 12));
+        insert.setString(first, BillingStatus.UNLOGGED.name());
+        insert.setString(first + 1, "comments");
+        insert.setDate(first + 2, Date.valueOf(start.toLocalDate()));
+        insert.setTimestamp(first + 3, Timestamp.valueOf(start.plusMinutes(30)));
+        insert.setTimestamp(first + 4, Timestamp.valueOf(start));
+        insert.setString(first + 5, "Student" + (i % 2000));
+        insert.setString(first + 6, "student@example.com");
+        insert.setString(first + 7, "Teacher" + (i % 50));
+        insert.setString(first + 8, "teacher@example.com");
+        insert.setString(first + 9, "title");
+    }
+
+    private static double rowsPerSecond(int rows, InsertRun run) throws SQLException {
+        long start = System.nanoTime();
+        run.insert();
+        return rows / ((System.nanoTime() - start) / 1_000_000_000.0);
+    }
+
+    @Test
+    void compareConflictCheckPerLessonAndPerBatch() {
+        int bulk = BenchmarkSupport.intProperty("bulk", 1000);
+        int teachers = BenchmarkSupport.intProperty("teachers", 10);
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EventServiceApplication.class)
+                .profiles("test")
+                .properties("spring.config.name=application-test", "server.port=0")
+                .run()) {
+            LessonEventRepo repository = context.getBean(LessonEventRepo.class);
+            TeacherSchedule schedule = context.getBean(TeacherSchedule.class);
+            // Built here rather than looked up: the test classes on the classpath bring a JDBC-only transaction manager
+            EntityManagerFactory entityManagerFactory = context.getBean(EntityManagerFactory.class);
+            TransactionTemplate transaction = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            statistics.setStatisticsEnabled(true);
+            LessonSeriesRepo seriesRepository = context.getBean(LessonSeriesRepo.class);
+            for (int teacher = 0; teacher < teachers; teacher++) {
+                LocalDateTime tuesday = FIRST_LESSON.plusDays(1);
+                seriesRepository.save(new LessonSeries(tuesday, tuesday.plusMinutes(30), "title", "Student", "student@example.com",
+                                                       "Teacher" + teacher, "teacher@example.com", "comments", 1));
+            }
+
+            Consumer<List<LessonEvent>> perLesson = saved -> saved.forEach(schedule::reserve);
+            Consumer<List<LessonEvent>> perBatch = schedule::reserve;
+            for (int warmup = 0; warmup < 3; warmup++) {
+                bulkCreate(repository, schedule, transaction, statistics, bulk, teachers, perLesson);
+                bulkCreate(repository, schedule, transaction, statistics, bulk, teachers, perBatch);
+            }
+            long[] lesson = bulkCreate(repository, schedule, transaction, statistics, bulk, teachers, perLesson);
+            long[] batch = bulkCreate(repository, schedule, transaction, statistics, bulk, teachers, perBatch);
+
+            System.out.printf(Locale.ROOT, "Bulk create of %d lessons for %d teachers, conflict checking on%n", bulk, teachers);
+            System.out.printf(Locale.ROOT, "reserve per lesson  %8.1f ms  %6d statements%n", lesson[0] / 1_000_000.0, lesson[1]);
+            System.out.printf(Locale.ROOT, "reserve per batch   %8.1f ms  %6d statements%n", batch[0] / 1_000_000.0, batch[1]);
+        }
+    }
+
+    // Saves and checks one bulk create, then rolls it back; returns the nanoseconds taken and the statements prepared
+    private static long[] bulkCreate(LessonEventRepo repository, TeacherSchedule schedule, TransactionTemplate transaction,
+                                     Statistics statistics, int bulk, int teachers, Consumer<List<LessonEvent>> reserve) {
+        List<LessonEvent> lessons = new ArrayList<>(bulk);
+        for (int i = 0; i < bulk; i++) {
+            LocalDateTime start = FIRST_LESSON.plusWeeks(i / teachers);
+            lessons.add(new LessonEvent(start, start.plusMinutes(30), "title", "Student" + i, "student@example.com",
+                                        "Teacher" + (i % teachers), "teacher@example.com", "comments"));
+        }
+        schedule.clear();
+        statistics.clear();
+        long start = System.nanoTime();
+        transaction.executeWithoutResult(status -> {
+            reserve.accept(repository.saveAll(lessons));
+            repository.flush();
+            status.setRollbackOnly();
+        });
+        return new long[]{System.nanoTime() - start, statistics.getPrepareStatementCount()};
+    }
+
+    @FunctionalInterface
+    private interface InsertRun {
+        void insert() throws SQLException;
+    }
+}
@@ -0,0 +1,217 @@
+package com.turbolessons.eventservice.benchmark;
+
+import com.turbolessons.eventservice.EventServiceApplication;
+import com.turbolessons.eventservice.config.LessonThreads;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Boots the service once per mode and drives {@code GET /api/lessons?limit=20} at high concurrency, reporting
+ * throughput and p99: JPA on Tomcat platform threads, JPA on virtual threads, and the "reactive" profile (WebFlux on
+ * Netty reading through R2DBC). H2 answers in microseconds, so every JDBC connection checkout is held, and every R2DBC
+ * connection handed out late, by {@code -Dbenchmark.latency-millis} (default 10) to stand in for a MySQL round trip;
+ * the JDBC delay parks a thread, the R2DBC one does not. Other knobs: {@code -Dbenchmark.concurrency} (default 1000),
+ * {@code -Dbenchmark.requests} (default 20000), {@code -Dbenchmark.pool} (default 400, used for both Hikari and the
+ * R2DBC pool) and {@code -Dbenchmark.tomcat-threads} (default 200). The pool is larger than the platform worker count
+ * so the comparison measures the thread model, not the pool. The virtual-thread run is skipped below Java 21.
+ */
+@Tag("benchmark")
+public class LessonEventLoadBenchmark {
+
+    private final int concurrency = BenchmarkSupport.intProperty("concurrency", 1000);
+    private final int requests = BenchmarkSupport.intProperty("requests", 20_000);
+    private final int latencyMillis = BenchmarkSupport.intProperty("latency-millis", 10);
+    private final int pool = BenchmarkSupport.intProperty("pool", 400);
+    private final int tomcatThreads = BenchmarkSupport.intProperty("tomcat-threads", 200);
+
+    private enum Mode { PLATFORM, VIRTUAL, REACTIVE }
+
+    @Test
+    void platformThreads() throws Exception {
+        run(Mode.PLATFORM);
+    }
+
+    @Test
+    void virtualThreads() throws Exception {
+        Assumptions.assumeTrue(LessonThreads.virtualThreadsSupported(), "virtual threads need Java 21+");
+        run(Mode.VIRTUAL);
+    }
+
+    @Test
+    void reactive() throws Exception {
+        run(Mode.REACTIVE);
+    }
+
+    private void run(Mode mode) throws Exception {
+        try (ConfigurableApplicationContext context = start(mode)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+            seed(client, port);
+
+            URI uri = URI.create("http://localhost:" + port + "/api/lessons?limit=20");
+            drive(client, uri, requests / 10);
+            long[] latencies = new long[requests];
+            long start = System.nanoTime();
+            int failures = drive(client, uri, latencies);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            Arrays.sort(latencies);
+            System.out.printf(Locale.ROOT, "%-8s mode, %d concurrent: %8.0f req/s  p50 %7.1f ms  p99 %7.1f ms  failures %d%n",
+                              mode.name().toLowerCase(Locale.ROOT), concurrency, requests / seconds,
+                              latencies[requests / 2] / 1_000_000.0,
+                              latencies[(int) Math.ceil(requests * 0.99) - 1] / 1_000_000.0, failures);
+            Assertions.assertEquals(0, failures);
+        }
+    }
+
+    private ConfigurableApplicationContext start(Mode mode) {
+        return new SpringApplicationBuilder(EventServiceApplication.class)
+                .profiles("test")
+                .properties("spring.config.name=application-test",
+                            "server.port=0",
+                            "lessons.threads.virtual=" + (mode == Mode.VIRTUAL),
+                            "spring.main.web-application-type=" + (mode == Mode.REACTIVE ? "reactive" : "servlet"),
+                            // Same in-memory database the JDBC side creates and seeds
+                            "spring.r2dbc.url=r2dbc:h2:mem:///testdb?options=DB_CLOSE_DELAY=-1",
+                            "spring.r2dbc.username=sa",
+                            "spring.r2dbc.pool.initial-size=" + Math.min(pool, 50),
+                            "spring.r2dbc.pool.max-size=" + pool,
+                            "server.tomcat.threads.max=" + tomcatThreads,
+                            "server.tomcat.max-connections=" + (concurrency * 2),
+                            "spring.datasource.hikari.maximum-pool-size=" + pool,
+                            "spring.datasource.hikari.connection-timeout=30000")
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(new SlowConnections(latencyMillis)))
+                .run();
+    }
+
+    private void seed(HttpClient client, int port) throws Exception {
+        StringBuilder lessons = new StringBuilder("[");
+        LocalDateTime start = LocalDateTime.of(2033, 9, 1, 15, 0);
+        for (int i = 0; i < 200; i++) {
+            LocalDateTime lessonStart = start.plusDays(i);
+            lessons.append(i == 0 ? "" : ",")
+                   .append(String.format(Locale.ROOT, "{\"startTime\":\"%s\",\"endTime\":\"%s\",\"title\":\"title\",\"student\":\"Student%d\","
+                                                      + "\"studentEmail\":\"s@example.com\",\"teacher\":\"Teacher%d\",\"teacherEmail\":\"t@example.com\",\"billingStatus\":\"UNLOGGED\"}",
+                                         lessonStart, lessonStart.plusMinutes(30), i % 40, i % 10));
+        }
+        HttpResponse<String> response = client.send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/lessons/batch"))
+                           .header("Content-Type", "application/json")
+                           .POST(HttpRequest.BodyPublishers.ofString(lessons.append("]").toString()))
+                           .build(),
+                HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(201, response.statusCode(), response.body());
+    }
+
+    private int drive(HttpClient client, URI uri, int count) throws InterruptedException {
+        return drive(client, uri, new long[count]);
+    }
+
+    // Keeps `concurrency` requests in flight until every slot in latencies is filled; returns the non-200 count
+    private int drive(HttpClient client, URI uri, long[] latencies) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[latencies.length];
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+        for (int i = 0; i < latencies.length; i++) {
+            inFlight.acquire();
+            int slot = i;
+            long sent = System.nanoTime();
+            calls[i] = client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                             .whenComplete((response, error) -> {
+                                 latencies[slot] = System.nanoTime() - sent;
+                                 if (error != null || response.statusCode() != 200) {
+                                     failures.incrementAndGet();
+                                 }
+                                 inFlight.release();
+                             });
+        }
+        CompletableFuture.allOf(calls).exceptionally(error -> null).join();
+        return failures.get();
+    }
+
+    // Holds every checked-out connection for a fixed delay, standing in for the network round trip to MySQL
+    private static final class SlowConnections implements BeanPostProcessor {
+        private final int latencyMillis;
+
+        SlowConnections(int latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof ConnectionPool) {
+                return new SlowConnectionFactory((ConnectionPool) bean, latencyMillis);
+            }
+            if (!(bean instanceof DataSource)) {
+                return bean;
+            }
+            return new DelegatingDataSource((DataSource) bean) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    Connection connection = super.getConnection();
+                    try {
+                        Thread.sleep(latencyMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return connection;
+                }
+            };
+        }
+    }
+
+    // The R2DBC side of SlowConnections: the delay is a timer, so nothing waits on a thread meanwhile
+    private static final class SlowConnectionFactory implements ConnectionFactory, Disposable {
+        private final ConnectionPool pool;
+        private final Duration latency;
+
+        SlowConnectionFactory(ConnectionPool pool, int latencyMillis) {
+            this.pool = pool;
+            this.latency = Duration.ofMillis(latencyMillis);
+        }
+
+        @Override
+        public Publisher<? extends io.r2dbc.spi.Connection> create() {
+            return Mono.from(pool.create()).delayElement(latency);
+        }
+
+        @Override
+        public ConnectionFactoryMetadata getMetadata() {
+            return pool.getMetadata();
+        }
+
+        @Override
+        public void dispose() {
+            pool.dispose();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.turbolessons.eventservice.benchmark;
+
+import com.turbolessons.eventservice.dto.BillingStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seeds {@code lesson_event} and compares the old {@code DATE(date)} predicates on the V1 schema against the
+ * half-open range predicates once the V2 indexes are in place. Run with {@code mvn test -Pbenchmark}; tune with
+ * {@code -Dbenchmark.rows} (default 200000) and {@code -Dbenchmark.iterations} (default 50).
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class LessonEventQueryBenchmark {
+
+    private static final int TEACHERS = 50;
+    private static final int DAYS = 3650;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+
+    private final LocalDate probeDay = FIRST_DAY.plusDays(DAYS / 2);
+    private final LocalDate rangeEnd = probeDay.plusDays(30);
+
+    private JdbcTemplate jdbc;
+    private int iterations;
+
+    @BeforeAll
+    void seed() {
+        DataSource dataSource = BenchmarkSupport.dataSource("lesson_query_benchmark");
+        BenchmarkSupport.migrate(dataSource, "V1__create_lesson_event.sql");
+        jdbc = new JdbcTemplate(dataSource);
+        iterations = BenchmarkSupport.intProperty("iterations", 50);
+
+        int rows = BenchmarkSupport.intProperty("rows", 200_000);
+        BillingStatus[] statuses = BillingStatus.values();
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            LocalDateTime start = FIRST_DAY.plusDays(i % DAYS).atTime(9 + i % 8, 0);
+            batch.add(new Object[]{statuses[i % statuses.length].name(), "comments", Date.valueOf(start.toLocalDate()),
+                                   Timestamp.valueOf(start.plusMinutes(30)), Timestamp.valueOf(start), "Student" + (i % 2000),
+                                   "student@example.com", "Teacher" + (i % TEACHERS), "teacher@example.com", "title"});
+            if (batch.size() == 1000 || i == rows - 1) {
+                jdbc.batchUpdate("INSERT INTO lesson_event (billing_status, comments, date, end_time, start_time, student, "
+                                 + "student_email, teacher, teacher_email, title) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        System.out.printf("Seeded %d lesson_event rows%n", rows);
+    }
+
+    @Test
+    void compareFunctionWrappedAndRangePredicates() {
+        Date day = Date.valueOf(probeDay);
+        Date nextDay = Date.valueOf(probeDay.plusDays(1));
+        Date end = Date.valueOf(rangeEnd);
+        Date afterEnd = Date.valueOf(rangeEnd.plusDays(1));
+        String status = BillingStatus.LOGGED.name();
+
+        int byDate = count("SELECT COUNT(*) FROM lesson_event WHERE DATE(date) = ?", day);
+        int byTeacherAndDate = count("SELECT COUNT(*) FROM lesson_event WHERE teacher = ? AND DATE(date) = ?", "Teacher7", day);
+        int byRange = count("SELECT COUNT(*) FROM lesson_event WHERE DATE(date) BETWEEN ? AND ? AND billing_status = ?", day, end, status);
+
+        BenchmarkSupport.Stats beforeDate = time("SELECT * FROM lesson_event WHERE DATE(date) = ?", day);
+        BenchmarkSupport.Stats beforeTeacher = time("SELECT * FROM lesson_event WHERE teacher = ? AND DATE(date) = ?", "Teacher7", day);
+        BenchmarkSupport.Stats beforeRange = time("SELECT * FROM lesson_event WHERE DATE(date) BETWEEN ? AND ? AND billing_status = ?", day, end, status);
+
+        BenchmarkSupport.apply(jdbc.getDataSource(), "V2__lesson_event_date_indexes.sql");
+
+        Assertions.assertEquals(byDate, count("SELECT COUNT(*) FROM lesson_event WHERE date >= ? AND date < ?", day, nextDay));
+        Assertions.assertEquals(byTeacherAndDate, count("SELECT COUNT(*) FROM lesson_event WHERE teacher = ? AND date >= ? AND date < ?", "Teacher7", day, nextDay));
+        Assertions.assertEquals(byRange, count("SELECT COUNT(*) FROM lesson_event WHERE billing_status = ? AND date >= ? AND date < ?", status, day, afterEnd));
+
+        BenchmarkSupport.Stats afterDate = time("SELECT * FROM lesson_event WHERE date >= ? AND date < ?", day, nextDay);
+        BenchmarkSupport.Stats afterTeacher = time("SELECT * FROM lesson_event WHERE teacher = ? AND date >= ? AND date < ?", "Teacher7", day, nextDay);
+        BenchmarkSupport.Stats afterRange = time("SELECT * FROM lesson_event WHERE billing_status = ? AND date >= ? AND date < ?", status, day, afterEnd);
+
+        System.out.println("findLessonEventByDate                      before: " + beforeDate + "   after: " + afterDate);
+        System.out.println("findLessonEventByTeacherAndDate            before: " + beforeTeacher + "   after: " + afterTeacher);
+        System.out.println("findLessonEventByDateRangeAndBillingStatus before: " + beforeRange + "   after: " + afterRange);
+    }
+
+    private int count(String sql, Object... args) {
+        Integer count = jdbc.queryForObject(sql, Integer.class, args);
+        return count == null ? 0 : count;
+    }
+
+    private BenchmarkSupport.Stats time(String sql, Object... args) {
+        return BenchmarkSupport.time(5, iterations, () -> jdbc.queryForList(sql, args));
+    }
+}
@@ -0,0 +1,126 @@
+package com.turbolessons.eventservice.benchmark;
+
+import com.turbolessons.eventservice.dto.LessonSlot;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import com.turbolessons.eventservice.service.LessonIntervals;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In-memory microbenchmark for the per-teacher interval index behind double-booking checks and free-slot queries,
+ * against the linear scan over a teacher's lessons it replaces. One teacher with {@code -Dbenchmark.lessons} lessons
+ * (default 500000, four 30 minute lessons a day with gaps); each sample is {@code -Dbenchmark.batch} operations
+ * (default 1000), {@code -Dbenchmark.iterations} samples (default 50). Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class LessonIntervalsBenchmark {
+
+    private static final LocalDateTime FIRST = LocalDateTime.of(2020, 1, 1, 9, 0);
+    private static final int LESSONS_PER_DAY = 4;
+
+    private final List<LessonSlot> lessons = new ArrayList<>();
+    private LessonIntervals intervals;
+    private int batch;
+    private int iterations;
+
+    @BeforeAll
+    void seed() {
+        int count = BenchmarkSupport.intProperty("lessons", 500_000);
+        batch = BenchmarkSupport.intProperty("batch", 1000);
+        iterations = BenchmarkSupport.intProperty("iterations", 50);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime start = slot(i);
+            lessons.add(new LessonSlot(i + 1, start, start.plusMinutes(30)));
+        }
+        long started = System.nanoTime();
+        intervals = new LessonIntervals(lessons);
+        System.out.printf("Indexed %d lessons in %d ms%n", count, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Lesson i: day i / 4, one of 9:00, 10:00, 11:00, 12:00
+    private static LocalDateTime slot(int i) {
+        return FIRST.plusDays(i / LESSONS_PER_DAY).plusHours(i % LESSONS_PER_DAY);
+    }
+
+    @Test
+    void compareOverlapCheckWithLinearScan() {
+        Random random = new Random(42);
+        int[] probes = random.ints(batch, 0, lessons.size()).toArray();
+
+        // Half the probes overlap an existing lesson, half fall in the gap after it
+        for (int i = 0; i < probes.length; i++) {
+            LocalDateTime start = slot(probes[i]).plusMinutes(i % 2 == 0 ? 15 : 30);
+            Assertions.assertEquals(i % 2 == 0 ? (Integer) (probes[i] + 1) : null,
+                                    intervals.findOverlap(start, start.plusMinutes(30), null));
+        }
+
+        BenchmarkSupport.Stats indexed = BenchmarkSupport.time(5, iterations, () -> {
+            for (int i = 0; i < probes.length; i++) {
+                LocalDateTime start = slot(probes[i]).plusMinutes(i % 2 == 0 ? 15 : 30);
+                intervals.findOverlap(start, start.plusMinutes(30), null);
+            }
+        });
+        int scanned = Math.max(1, probes.length / 100);
+        BenchmarkSupport.Stats linear = BenchmarkSupport.time(1, Math.max(3, iterations / 10), () -> {
+            for (int i = 0; i < scanned; i++) {
+                LocalDateTime start = slot(probes[i]).plusMinutes(i % 2 == 0 ? 15 : 30);
+                scan(start, start.plusMinutes(30));
+            }
+        });
+
+        System.out.printf("overlap check, %d lessons: index  %s per %d checks%n", lessons.size(), indexed, probes.length);
+        System.out.printf("overlap check, %d lessons: linear %s per %d checks%n", lessons.size(), linear, scanned);
+    }
+
+    @Test
+    void measureInsertAndFreeSlots() {
+        LessonIntervals growing = new LessonIntervals(lessons);
+        // New lessons go in the afternoon gaps, so every insert is a check plus an add
+        int[] next = {0};
+        BenchmarkSupport.Stats inserts = BenchmarkSupport.time(5, iterations, () -> {
+            for (int i = 0; i < batch; i++) {
+                int n = next[0]++;
+                LocalDateTime start = slot(n % lessons.size()).plusHours(5).plusMinutes(n / lessons.size() * 30L);
+                Assertions.assertNull(growing.findOverlap(start, start.plusMinutes(30), null));
+                growing.add(new LessonSlot(lessons.size() + n + 1, start, start.plusMinutes(30)));
+            }
+        });
+
+        Random random = new Random(7);
+        int[] days = random.ints(batch, 0, lessons.size() / LESSONS_PER_DAY).toArray();
+        List<TimeSlot> sample = intervals.freeSlots(FIRST.toLocalDate().atStartOfDay(), FIRST.toLocalDate().plusDays(7).atStartOfDay(),
+                                                    Duration.ofMinutes(30));
+        // Three half-hour gaps between each day's lessons, one overnight gap into the next day, the last evening
+        Assertions.assertEquals(1 + 7 * 3 + 6 + 1, sample.size());
+        BenchmarkSupport.Stats freeSlots = BenchmarkSupport.time(5, iterations, () -> {
+            for (int day : days) {
+                LocalDateTime from = FIRST.toLocalDate().plusDays(day).atStartOfDay();
+                intervals.freeSlots(from, from.plusDays(7), Duration.ofMinutes(30));
+            }
+        });
+
+        System.out.printf("insert,            %d lessons: %s per %d inserts (index now %d)%n", lessons.size(), inserts, batch, growing.size());
+        System.out.printf("free slots (week), %d lessons: %s per %d queries%n", lessons.size(), freeSlots, batch);
+    }
+
+    // What a double-booking check costs without the index: every lesson of the teacher
+    private Integer scan(LocalDateTime start, LocalDateTime end) {
+        Integer found = null;
+        for (LessonSlot lesson : lessons) {
+            if (found == null && lesson.startTime().isBefore(end) && lesson.endTime().isAfter(start)) {
+                found = lesson.id();
+            }
+        }
+        return found;
+    }
+}
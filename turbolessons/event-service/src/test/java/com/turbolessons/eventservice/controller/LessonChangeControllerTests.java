@@ -0,0 +1,86 @@
+package com.turbolessons.eventservice.controller;
+
+import com.turbolessons.eventservice.config.ChangeFeedConfig;
+import com.turbolessons.eventservice.config.ThreadingConfig;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.ChangeType;
+import com.turbolessons.eventservice.dto.LessonChange;
+import com.turbolessons.eventservice.service.LessonChangeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(value = LessonChangeController.class, properties = "lessons.changes.poll-millis=20")
+@AutoConfigureMockMvc(addFilters = false)
+@Import({ChangeFeedConfig.class, ThreadingConfig.class})
+public class LessonChangeControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LessonChangeService changeService;
+
+    private final LessonChange created = change(5L, ChangeType.CREATED, "{\"id\":7}");
+    private final LessonChange deleted = change(6L, ChangeType.DELETED, null);
+
+    @Test
+    void getChanges_ShouldWriteChangesAfterSinceAsNdjson() throws Exception {
+        when(changeService.findChangesSince(eq(4L), anyInt())).thenReturn(List.of(created, deleted));
+
+        MvcResult result = mockMvc.perform(get("/api/lessons/changes").param("since", "4"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"seq\":5") && lines[0].contains("\"lesson\":{\"id\":7}"));
+        assertTrue(lines[1].contains("\"seq\":6") && lines[1].contains("\"changeType\":\"DELETED\""));
+    }
+
+    @Test
+    void followChanges_ShouldResumeFromLastEventId() throws Exception {
+        when(changeService.findChangesSince(anyLong(), anyInt())).thenReturn(List.of());
+        when(changeService.findChangesSince(eq(5L), anyInt())).thenReturn(List.of(deleted));
+
+        MvcResult result = mockMvc.perform(get("/api/lessons/changes/sse").header("Last-Event-ID", "5"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String body = "";
+        for (int attempt = 0; attempt < 100 && !body.contains("id:6"); attempt++) {
+            Thread.sleep(20);
+            body = result.getResponse().getContentAsString();
+        }
+        assertTrue(body.contains("id:6"), body);
+        assertTrue(body.contains("event:" + LessonChangeController.EVENT_NAME), body);
+    }
+
+    private static LessonChange change(Long seq, ChangeType type, String payload) {
+        LessonChange change = new LessonChange(7, type, BillingStatus.UNLOGGED, LocalDateTime.of(2033, 8, 17, 12, 0), payload);
+        change.setSeq(seq);
+        return change;
+    }
+}
@@ -2,26 +2,56 @@ package com.turbolessons.eventservice.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.Granularity;
+import com.turbolessons.eventservice.dto.LessonCalendarSummary;
+import com.turbolessons.eventservice.dto.LessonCursor;
 import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFields;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+import com.turbolessons.eventservice.dto.LessonPeriod;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import com.turbolessons.eventservice.service.InvalidLessonTimesException;
+import com.turbolessons.eventservice.service.LessonConflictException;
+import com.turbolessons.eventservice.service.LessonArchiveService;
 import com.turbolessons.eventservice.service.LessonEventService;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -40,6 +70,9 @@ public class LessonEventControllerTests {
     @MockBean
     private LessonEventService service;
 
+    @MockBean
+    private LessonArchiveService archiveService;
+
     private LessonEvent lesson1;
     private LessonEvent lesson2;
     private LessonEvent loggedLesson;
@@ -65,6 +98,9 @@ public class LessonEventControllerTests {
         invoicedLesson = new LessonEvent(start2, end2, "Invoiced Lesson", "StudentD", "student_d@example.com", "TeacherA", "teacher_a@example.com", "invoiced status");
         invoicedLesson.setId(4);
         invoicedLesson.setBillingStatus(BillingStatus.INVOICED);
+
+        when(service.findTeacherMarker(any())).thenReturn(new LessonMarker(0, 0, 0));
+        when(service.findStudentMarker(any())).thenReturn(new LessonMarker(0, 0, 0));
     }
 
     @Test
@@ -90,6 +126,150 @@ public class LessonEventControllerTests {
             .andExpect(jsonPath("$.student").value(lesson1.getStudent()));
     }
 
+    @Test
+    void getLessonById_ShouldAnswerMatchingIfNoneMatchWithNotModified() throws Exception {
+        lesson1.setVersion(3L);
+        lesson1.setLastModified(LocalDateTime.of(2033, Month.AUGUST, 1, 9, 0));
+        when(service.findLessonEvent(eq(1))).thenReturn(lesson1);
+
+        String etag = mockMvc.perform(get("/api/lessons/{id}", 1))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"1-3\""))
+            .andExpect(header().doesNotExist("Last-Modified"))
+            .andExpect(jsonPath("$.version").value(3))
+            .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/lessons/{id}", 1).header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        lesson1.setVersion(4L);
+        mockMvc.perform(get("/api/lessons/{id}", 1).header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", "\"1-4\""));
+    }
+
+    @Test
+    void getLessonsByTeacher_WithCurrentMarker_ShouldSkipTheQuery() throws Exception {
+        LessonMarker marker = new LessonMarker(2, 5, 3);
+        when(service.findTeacherMarker("TeacherA")).thenReturn(marker);
+        when(service.findLessonEventsByTeacher("TeacherA")).thenReturn(List.of(loggedLesson, invoicedLesson));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}", "TeacherA"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("ETag", marker.etag("teacher")))
+            .andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}", "TeacherA").header("If-None-Match", marker.etag("teacher")))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        verify(service, times(1)).findLessonEventsByTeacher("TeacherA");
+    }
+
+    @Test
+    void patchLesson_WithIfMatch_ShouldApplyOnlyPatchedFields() throws Exception {
+        when(service.patchLessonEvent(eq(1), eq(3L), any(LessonPatch.class))).thenReturn(4L);
+
+        mockMvc.perform(patch("/api/lessons/{id}", 1)
+            .contentType(LessonEventController.MERGE_PATCH_JSON_VALUE)
+            .header("If-Match", "\"1-3\"")
+            .content("{\"comments\":\"bring the etudes\",\"teacherEmail\":null,\"startTime\":\"2033-08-20T16:00:00\"}"))
+            .andExpect(status().isNoContent())
+            .andExpect(header().string("ETag", "\"1-4\""));
+
+        ArgumentCaptor<LessonPatch> patch = ArgumentCaptor.forClass(LessonPatch.class);
+        verify(service).patchLessonEvent(eq(1), eq(3L), patch.capture());
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("comments", "bring the etudes");
+        expected.put("teacherEmail", null);
+        expected.put("startTime", LocalDateTime.of(2033, Month.AUGUST, 20, 16, 0));
+        expected.put("date", LocalDate.of(2033, Month.AUGUST, 20));
+        assertEquals(expected, patch.getValue().changes());
+    }
+
+    @Test
+    void patchLesson_EndingBeforeTheStart_ShouldBeRejected() throws Exception {
+        when(service.patchLessonEvent(eq(1), eq(2L), any(LessonPatch.class))).thenThrow(new InvalidLessonTimesException(lesson1));
+
+        mockMvc.perform(patch("/api/lessons/{id}", 1)
+            .contentType(LessonEventController.MERGE_PATCH_JSON_VALUE)
+            .content("{\"version\":2,\"endTime\":\"2033-08-17T14:00:00\"}"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void patchLesson_WithStaleVersion_ShouldReturnConflict() throws Exception {
+        when(service.patchLessonEvent(eq(1), eq(2L), any(LessonPatch.class)))
+            .thenThrow(new ObjectOptimisticLockingFailureException(LessonEvent.class, 1));
+
+        mockMvc.perform(patch("/api/lessons/{id}", 1)
+            .contentType(LessonEventController.MERGE_PATCH_JSON_VALUE)
+            .content("{\"version\":2,\"title\":\"Recital prep\"}"))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    void patchLesson_WithoutVersionOrBadFields_ShouldBeRejected() throws Exception {
+        mockMvc.perform(patch("/api/lessons/{id}", 1)
+            .contentType(LessonEventController.MERGE_PATCH_JSON_VALUE)
+            .content("{\"title\":\"Recital prep\"}"))
+            .andExpect(status().isPreconditionRequired());
+
+        mockMvc.perform(patch("/api/lessons/{id}", 1)
+            .contentType(LessonEventController.MERGE_PATCH_JSON_VALUE)
+            .header("If-Match", "\"1-3\"")
+            .content("{\"id\":9}"))
+            .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/api/lessons/{id}", 1)
+            .contentType(LessonEventController.MERGE_PATCH_JSON_VALUE)
+            .header("If-Match", "\"1-3\"")
+            .content("{\"billingStatus\":null}"))
+            .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/api/lessons/{id}", 1)
+            .contentType(LessonEventController.MERGE_PATCH_JSON_VALUE)
+            .header("If-Match", "\"2-3\"")
+            .content("{\"title\":\"Recital prep\"}"))
+            .andExpect(status().isPreconditionFailed());
+
+        verify(service, never()).patchLessonEvent(any(), any(Long.class), any());
+    }
+
+    @Test
+    void createLessons_ShouldReturnCreatedLessonsWithIds() throws Exception {
+        LocalDateTime start = LocalDateTime.of(2033, Month.SEPTEMBER, 1, 15, 0);
+        List<LessonEvent> semester = List.of(
+            new LessonEvent(start, start.plusMinutes(30), "Week 1", "StudentA", "a@example.com", "TeacherA", "t@example.com", ""),
+            new LessonEvent(start.plusWeeks(1), start.plusWeeks(1).plusMinutes(30), "Week 2", "StudentA", "a@example.com", "TeacherA", "t@example.com", ""));
+        when(service.saveLessonEvents(anyList())).thenAnswer(invocation -> {
+            List<LessonEvent> lessons = invocation.getArgument(0);
+            for (int i = 0; i < lessons.size(); i++) {
+                lessons.get(i).setId(100 + i);
+            }
+            return lessons;
+        });
+
+        mockMvc.perform(post("/api/lessons/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(semester)))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0].id").value(100))
+            .andExpect(jsonPath("$[1].title").value("Week 2"));
+    }
+
+    @Test
+    void createLessons_ShouldRejectLessonsThatAlreadyHaveIds() throws Exception {
+        mockMvc.perform(post("/api/lessons/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(List.of(lesson1))))
+            .andExpect(status().isBadRequest());
+
+        verify(service, never()).saveLessonEvents(anyList());
+    }
+
     @Test
     void getLessonById_ShouldReturnLesson() throws Exception {
         when(service.findLessonEvent(eq(1))).thenReturn(lesson1);
@@ -131,6 +311,119 @@ public class LessonEventControllerTests {
             .andExpect(jsonPath("$[0].billingStatus").value(BillingStatus.LOGGED.name()));
     }
     
+    @Test
+    void getLessonSummaryByTeacher_ShouldReturnPeriodsNotLessons() throws Exception {
+        LocalDate startDate = LocalDate.of(2033, Month.AUGUST, 1);
+        LocalDate endDate = LocalDate.of(2033, Month.AUGUST, 31);
+        LessonCalendarSummary summary = new LessonCalendarSummary("TeacherA", startDate, endDate, Granularity.WEEK, 3, 120,
+                Map.of(BillingStatus.LOGGED, 3L),
+                List.of(new LessonPeriod(LocalDate.of(2033, Month.AUGUST, 15), 3, 120, Map.of(BillingStatus.LOGGED, 3L))));
+        when(service.summarizeTeacherLessons("TeacherA", startDate, endDate, Granularity.WEEK)).thenReturn(summary);
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}/summary", "TeacherA")
+                            .param("startDate", "2033-08-01").param("endDate", "2033-08-31").param("granularity", "week"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.lessons").value(3))
+            .andExpect(jsonPath("$.byBillingStatus.LOGGED").value(3))
+            .andExpect(jsonPath("$.periods[0].start").value("2033-08-15"))
+            .andExpect(jsonPath("$.periods[0].minutes").value(120));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}/summary", "TeacherA")
+                            .param("startDate", "2033-08-01").param("endDate", "2033-08-31").param("granularity", "year"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}/summary", "TeacherA")
+                            .param("startDate", "2033-08-31").param("endDate", "2033-08-01"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getFreeSlotsByTeacher_ShouldReturnGapsForTheWholeDays() throws Exception {
+        LocalDateTime day = LocalDate.of(2033, Month.AUGUST, 17).atStartOfDay();
+        when(service.findFreeSlots("TeacherA", day, day.plusDays(1), Duration.ofMinutes(45)))
+                .thenReturn(List.of(new TimeSlot(day, day.plusHours(15))));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}/free-slots", "TeacherA")
+                            .param("startDate", "2033-08-17").param("endDate", "2033-08-17").param("minutes", "45"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].start").value("2033-08-17T00:00:00"))
+            .andExpect(jsonPath("$[0].end").value("2033-08-17T15:00:00"));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}/free-slots", "TeacherA")
+                            .param("startDate", "2033-08-17").param("endDate", "2033-08-17").param("minutes", "0"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getStudentSummary_ShouldReturnTheSummaryRow() throws Exception {
+        StudentLessonSummary summary = new StudentLessonSummary("StudentA");
+        summary.setLessonsTaken(12);
+        summary.setUnbilled(2);
+        summary.setLastLessonDate(LocalDate.of(2033, Month.AUGUST, 10));
+        when(service.findStudentSummary("StudentA")).thenReturn(summary);
+
+        mockMvc.perform(get("/api/lessons/student/{student}/summary", "StudentA"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.lessonsTaken").value(12))
+            .andExpect(jsonPath("$.unbilled").value(2))
+            .andExpect(jsonPath("$.lastLessonDate").value("2033-08-10"));
+    }
+
+    @Test
+    void searchLessons_WithFullPage_ShouldPointAtNextPage() throws Exception {
+        LessonFilter filter = new LessonFilter("TeacherA", null, null, null, BillingStatus.UNLOGGED);
+        when(service.searchLessonEvents("scales", filter, 1, 2)).thenReturn(List.of(lesson1, lesson2));
+
+        mockMvc.perform(get("/api/lessons/search")
+                            .param("q", " scales ").param("teacher", "TeacherA").param("status", "UNLOGGED")
+                            .param("page", "1").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(LessonEventController.NEXT_PAGE_HEADER, "2"))
+            .andExpect(jsonPath("$[0].id").value(lesson1.getId()));
+
+        mockMvc.perform(get("/api/lessons/search").param("q", "  "))
+            .andExpect(status().isBadRequest());
+    }
+
+    // page * limit used to wrap around to a negative offset; deep pages are refused and the last one has no next
+    @Test
+    void searchLessons_PastTheMaximumOffset_ShouldBeRejected() throws Exception {
+        mockMvc.perform(get("/api/lessons/search").param("q", "scales").param("page", "4294968").param("limit", "500"))
+            .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/lessons/search").param("q", "scales").param("page", "21").param("limit", "500"))
+            .andExpect(status().isBadRequest());
+        verify(service, never()).searchLessonEvents(any(), any(), anyInt(), anyInt());
+
+        LessonFilter filter = new LessonFilter(null, null, null, null, null);
+        when(service.searchLessonEvents("scales", filter, 20, 500)).thenReturn(Collections.nCopies(500, lesson1));
+        mockMvc.perform(get("/api/lessons/search").param("q", "scales").param("page", "20").param("limit", "500"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(LessonEventController.NEXT_PAGE_HEADER));
+    }
+
+    @Test
+    void getLessonsByStudent_IncludingArchived_ShouldPageThroughHistory() throws Exception {
+        when(service.findStudentMarker("StudentA")).thenReturn(new LessonMarker(1, 0, 1));
+        when(archiveService.findStudentHistoryPage("StudentA", null, 2)).thenReturn(List.of(lesson1, lesson2));
+
+        mockMvc.perform(get("/api/lessons/student/{student}", "StudentA")
+                            .param("includeArchived", "true").param("limit", "2").param("fields", "title"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(LessonEventController.NEXT_CURSOR_HEADER, LessonCursor.of(lesson2).encode()))
+            .andExpect(jsonPath("$[1].title").value("StudentB - 3:00PM"))
+            .andExpect(jsonPath("$[1].id").doesNotExist());
+        verify(service, never()).findLessonEventPage(any(), any(), anyInt());
+    }
+
+    @Test
+    void createLesson_ThatDoubleBooksTheTeacher_ShouldConflict() throws Exception {
+        when(service.saveLessonEvent(any(LessonEvent.class))).thenThrow(new LessonConflictException(lesson1, 2));
+
+        mockMvc.perform(post("/api/lessons")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(lesson1)))
+            .andExpect(status().isConflict());
+    }
+
     @Test
     void getLessonsByTeacherAndBillingStatus_ShouldReturnFilteredLessons() throws Exception {
         List<LessonEvent> teacherLoggedLessons = Arrays.asList(loggedLesson);
@@ -171,4 +464,152 @@ public class LessonEventControllerTests {
         // Verify the service method was called with correct parameters
         verify(service).updateLessonEventBillingStatus(1, BillingStatus.INVOICED);
     }
+
+    @Test
+    void getLessonsByTeacher_WithLimit_ShouldReturnPageAndNextCursor() throws Exception {
+        when(service.findLessonEventPage(eq(LessonFilter.byTeacher("TeacherA")), isNull(), eq(2)))
+            .thenReturn(Arrays.asList(loggedLesson, invoicedLesson));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}", "TeacherA").param("limit", "2"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(LessonEventController.NEXT_CURSOR_HEADER, LessonCursor.of(invoicedLesson).encode()))
+            .andExpect(jsonPath("$[0].id").value(loggedLesson.getId()))
+            .andExpect(jsonPath("$[1].id").value(invoicedLesson.getId()));
+    }
+
+    @Test
+    void getAllLessons_WithCursorOnLastPage_ShouldOmitNextCursor() throws Exception {
+        LessonCursor cursor = LessonCursor.of(lesson1);
+        when(service.findLessonEventPage(eq(LessonFilter.all()), eq(cursor), eq(LessonEventService.DEFAULT_PAGE_SIZE)))
+            .thenReturn(List.of(lesson2));
+
+        mockMvc.perform(get("/api/lessons").param("after", cursor.encode()))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(LessonEventController.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$[0].id").value(lesson2.getId()));
+    }
+
+    @Test
+    void getLessonsByDate_WithFields_ShouldReturnOnlyThoseFields() throws Exception {
+        LocalDate date = lesson1.getDate();
+        List<String> fields = List.of("id", "endTime", "billingStatus", "studentEmail");
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("id", lesson1.getId());
+        values.put("endTime", lesson1.getEndTime());
+        values.put("billingStatus", lesson1.getBillingStatus());
+        values.put("studentEmail", lesson1.getStudentEmail());
+        when(service.findLessonEventFields(eq(LessonFilter.byDate(date)), eq(fields), isNull(), isNull()))
+            .thenReturn(List.of(new LessonFields(LessonCursor.of(lesson1), values)));
+
+        mockMvc.perform(get("/api/lessons/date/{date}", date).param("fields", "id,endTime,billingStatus,studentEmail"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(LessonEventController.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$[0].id").value(lesson1.getId()))
+            .andExpect(jsonPath("$[0].endTime").value("2033-08-17T15:30:00"))
+            .andExpect(jsonPath("$[0].studentEmail").value(lesson1.getStudentEmail()))
+            .andExpect(jsonPath("$[0].title").doesNotExist())
+            .andExpect(jsonPath("$[0].comments").doesNotExist());
+    }
+
+    @Test
+    void getLessonsByTeacher_WithFieldsAndLimit_ShouldCursorFromUnselectedPosition() throws Exception {
+        when(service.findLessonEventFields(eq(LessonFilter.byTeacher("TeacherA")), eq(List.of("title")), isNull(), eq(1)))
+            .thenReturn(List.of(new LessonFields(LessonCursor.of(lesson1), Map.of("title", lesson1.getTitle()))));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}", "TeacherA").param("fields", "title").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(LessonEventController.NEXT_CURSOR_HEADER, LessonCursor.of(lesson1).encode()))
+            .andExpect(jsonPath("$[0].title").value(lesson1.getTitle()))
+            .andExpect(jsonPath("$[0].id").doesNotExist());
+    }
+
+    @Test
+    void getAllLessons_WithUnknownField_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/lessons").param("fields", "id,password"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllLessons_WithMalformedCursor_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/api/lessons").param("after", "not-a-cursor"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void streamLessons_ShouldWriteOneJsonObjectPerLine() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<LessonEvent> consumer = invocation.getArgument(1);
+            consumer.accept(lesson1);
+            consumer.accept(lesson2);
+            return null;
+        }).when(service).streamLessonEvents(eq(LessonFilter.byTeacher("TeacherA")), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/lessons/stream").param("teacher", "TeacherA"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(lesson1.getId(), objectMapper.readValue(lines[0], LessonEvent.class).getId());
+        assertEquals(lesson2.getId(), objectMapper.readValue(lines[1], LessonEvent.class).getId());
+    }
+
+    @Test
+    void exportLessons_AsCsv_ShouldStreamEscapedRowsAsAnAttachment() throws Exception {
+        lesson2.setComments("Scales, \"arpeggios\"");
+        lesson2.setTitle("=1+1");
+        LessonFilter filter = LessonFilter.byDateRangeAndBillingStatus(LocalDate.of(2033, 8, 1), LocalDate.of(2033, 8, 31), BillingStatus.LOGGED);
+        doAnswer(invocation -> {
+            Consumer<LessonEvent> consumer = invocation.getArgument(1);
+            consumer.accept(lesson1);
+            consumer.accept(lesson2);
+            return null;
+        }).when(service).streamLessonEvents(eq(filter), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/lessons/billing/{status}/export", "LOGGED")
+                                               .param("startDate", "2033-08-01").param("endDate", "2033-08-31"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"lessons-logged-2033-08-01-2033-08-31.csv\""))
+            .andReturn().getResponse().getContentAsString().split("\r\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("id,date,start_time"));
+        assertTrue(lines[1].startsWith(lesson1.getId() + "," + lesson1.getDate() + ","));
+        assertTrue(lines[2].contains(",'=1+1,"));
+        assertTrue(lines[2].contains(",\"Scales, \"\"arpeggios\"\"\","));
+
+        mockMvc.perform(get("/api/lessons/billing/{status}/export", "LOGGED")
+                            .param("startDate", "2033-08-01").param("endDate", "2033-08-31").param("format", "xlsx"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void transitionLessonBillingStatus_ShouldReturnChangedIds() throws Exception {
+        when(service.transitionBillingStatus(List.of(1, 2, 3), BillingStatus.UNLOGGED, BillingStatus.LOGGED))
+            .thenReturn(List.of(1, 3));
+
+        mockMvc.perform(patch("/api/lessons/billing")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"ids\":[1,2,3],\"expectedStatus\":\"UNLOGGED\",\"targetStatus\":\"LOGGED\"}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$[0]").value(1))
+            .andExpect(jsonPath("$[1]").value(3));
+    }
+
+    @Test
+    void transitionLessonBillingStatus_WithoutTargetStatus_ShouldReturnBadRequest() throws Exception {
+        mockMvc.perform(patch("/api/lessons/billing")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"ids\":[1],\"expectedStatus\":\"UNLOGGED\"}"))
+            .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,107 @@
+package com.turbolessons.eventservice.controller;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonSeries;
+import com.turbolessons.eventservice.service.LessonSeriesService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(LessonSeriesController.class)
+@AutoConfigureMockMvc(addFilters = false)
+public class LessonSeriesControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private LessonSeriesService service;
+
+    private LessonSeries series;
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+        series = new LessonSeries(start, start.plusMinutes(30), "Piano", "StudentA", "a@example.com", "TeacherA", "t@example.com", "", 1);
+        series.setId(7);
+    }
+
+    @Test
+    void createSeries_ShouldValidateTheRule() throws Exception {
+        when(service.saveSeries(any(LessonSeries.class))).thenReturn(series);
+
+        mockMvc.perform(post("/api/lessons/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"startTime\":\"2033-08-17T15:00:00\",\"endTime\":\"2033-08-17T15:30:00\",\"teacher\":\"TeacherA\",\"occurrenceCount\":10}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(7));
+
+        mockMvc.perform(post("/api/lessons/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"startTime\":\"2033-08-17T15:00:00\",\"endTime\":\"2033-08-17T15:30:00\",\"untilDate\":\"2033-12-31\",\"occurrenceCount\":10}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/lessons/series")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"startTime\":\"2033-08-17T15:00:00\",\"endTime\":\"2033-08-17T15:30:00\",\"intervalWeeks\":0}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getCalendarByTeacher_ShouldReturnExpandedOccurrences() throws Exception {
+        LocalDate startDate = LocalDate.of(2033, Month.AUGUST, 1);
+        LocalDate endDate = LocalDate.of(2033, Month.AUGUST, 31);
+        LessonEvent occurrence = series.occurrence(LocalDate.of(2033, Month.AUGUST, 24));
+        when(service.findTeacherCalendar("TeacherA", startDate, endDate)).thenReturn(List.of(occurrence));
+
+        mockMvc.perform(get("/api/lessons/teacher/{teacher}/calendar", "TeacherA")
+                        .param("startDate", "2033-08-01")
+                        .param("endDate", "2033-08-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].seriesId").value(7))
+                .andExpect(jsonPath("$[0].occurrenceDate").value("2033-08-24"))
+                .andExpect(jsonPath("$[0].startTime").value("2033-08-24T15:00:00"));
+
+        mockMvc.perform(get("/api/lessons/student/{student}/calendar", "StudentA")
+                        .param("startDate", "2033-01-01")
+                        .param("endDate", "2034-12-31"))
+                .andExpect(status().isBadRequest());
+        verify(service, never()).findStudentCalendar(any(), any(), any());
+    }
+
+    @Test
+    void materialiseOccurrence_ShouldReturnTheRowOr404() throws Exception {
+        LocalDate date = LocalDate.of(2033, Month.AUGUST, 24);
+        LessonEvent lesson = series.occurrence(date);
+        lesson.setId(11);
+        when(service.materialiseOccurrence(eq(7), any(LocalDate.class), isNull())).thenReturn(null);
+        when(service.materialiseOccurrence(7, date, null)).thenReturn(lesson);
+
+        mockMvc.perform(post("/api/lessons/series/{id}/occurrences/{date}", 7, "2033-08-24"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(11))
+                .andExpect(jsonPath("$.seriesId").value(7));
+        mockMvc.perform(post("/api/lessons/series/{id}/occurrences/{date}", 7, "2033-08-25"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/lessons/series/{id}/occurrences/{date}", 7, "2033-08-25"))
+                .andExpect(status().isNotFound());
+    }
+}
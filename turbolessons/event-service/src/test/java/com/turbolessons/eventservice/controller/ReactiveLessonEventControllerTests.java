@@ -0,0 +1,188 @@
+package com.turbolessons.eventservice.controller;
+
+import com.turbolessons.eventservice.config.ReactiveSecurityConfig;
+import com.turbolessons.eventservice.dao.LessonEventReactiveRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import com.turbolessons.eventservice.service.LessonArchiveService;
+import com.turbolessons.eventservice.service.LessonEventService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(ReactiveLessonEventController.class)
+@Import({ReactiveSecurityConfig.class, ReactiveLessonEventControllerTests.ImmediateJdbc.class})
+public class ReactiveLessonEventControllerTests {
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private LessonEventReactiveRepo repository;
+
+    @MockBean
+    private LessonEventService service;
+
+    @MockBean
+    private LessonArchiveService archiveService;
+
+    private LessonEvent lesson1;
+    private LessonEvent lesson2;
+
+    // Imported rather than annotated, so booting the application from the test classpath doesn't scan it
+    static class ImmediateJdbc {
+        @Bean
+        Scheduler lessonJdbcScheduler() {
+            return Schedulers.immediate();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+        lesson1 = new LessonEvent(start, start.plusMinutes(30), "Piano", "StudentA", "a@example.com", "TeacherA", "t@example.com", "");
+        lesson1.setId(1);
+        lesson1.setVersion(2L);
+        lesson1.setLastModified(start);
+        lesson2 = new LessonEvent(start.plusDays(1), start.plusDays(1).plusMinutes(30), "Piano", "StudentB", "b@example.com", "TeacherA", "t@example.com", "");
+        lesson2.setId(2);
+        when(repository.findTeacherMarker(any())).thenReturn(Mono.just(new LessonMarker(2, 2, 3)));
+    }
+
+    @Test
+    void getLessonsByTeacher_AsNdjson_ShouldStreamOneLessonPerLine() {
+        when(repository.findLessonEvents(LessonFilter.byTeacher("TeacherA"), null, null)).thenReturn(Flux.just(lesson1, lesson2));
+
+        client.get().uri("/api/lessons/teacher/{teacher}", "TeacherA")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(LessonEvent.class).hasSize(2);
+    }
+
+    @Test
+    void getLessonsByTeacher_WithCurrentMarker_ShouldSkipTheQuery() {
+        String etag = new LessonMarker(2, 2, 3).etag("teacher");
+
+        client.get().uri("/api/lessons/teacher/{teacher}", "TeacherA")
+                .header("If-None-Match", etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", etag);
+        verify(repository, never()).findLessonEvents(any(), any(), any());
+    }
+
+    @Test
+    void getAllLessons_WithLimit_ShouldReturnPageAndNextCursor() {
+        when(repository.findLessonEvents(LessonFilter.all(), null, 2)).thenReturn(Flux.just(lesson1, lesson2));
+
+        client.get().uri("/api/lessons?limit=2&fields=title")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(LessonEventController.NEXT_CURSOR_HEADER, LessonCursor.of(lesson2).encode())
+                .expectBody()
+                .jsonPath("$[0].title").isEqualTo("Piano")
+                .jsonPath("$[0].id").doesNotExist();
+    }
+
+    @Test
+    void exportLessons_AsCsv_ShouldWriteHeaderThenOneRowPerLesson() {
+        LocalDate from = LocalDate.of(2033, Month.AUGUST, 1);
+        LocalDate to = LocalDate.of(2033, Month.AUGUST, 31);
+        when(repository.findLessonEvents(LessonFilter.byDateRangeAndBillingStatus(from, to, BillingStatus.UNLOGGED), null, null))
+                .thenReturn(Flux.just(lesson1, lesson2));
+
+        String body = client.get().uri("/api/lessons/billing/UNLOGGED/export?startDate=2033-08-01&endDate=2033-08-31")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith("text/csv")
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.split("\r\n");
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertTrue(lines[2].startsWith("2,2033-08-18,"));
+    }
+
+    @Test
+    void getLessonById_ShouldCarryETag() {
+        when(repository.findById(1)).thenReturn(Mono.just(lesson1));
+
+        client.get().uri("/api/lessons/{id}", 1)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"1-2\"")
+                .expectBody().jsonPath("$.billingStatus").isEqualTo(BillingStatus.UNLOGGED.name());
+    }
+
+    @Test
+    void createLessons_ShouldDelegateWritesToTheService() {
+        when(service.saveLessonEvents(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        client.post().uri("/api/lessons/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"startTime\":\"2033-08-17T15:00:00\",\"endTime\":\"2033-08-17T15:30:00\",\"teacher\":\"TeacherA\"}]")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody().jsonPath("$[0].teacher").isEqualTo("TeacherA");
+
+        client.post().uri("/api/lessons/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[]")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void patchLesson_WithStaleVersion_ShouldConflict() {
+        when(service.patchLessonEvent(eq(1), eq(1L), any(LessonPatch.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(LessonEvent.class, 1));
+        when(service.patchLessonEvent(eq(1), eq(2L), any(LessonPatch.class))).thenReturn(3L);
+        when(service.patchLessonEvent(eq(9), eq(2L), any(LessonPatch.class))).thenReturn(null);
+
+        client.patch().uri("/api/lessons/{id}", 1)
+                .contentType(MediaType.valueOf(LessonEventController.MERGE_PATCH_JSON_VALUE))
+                .header("If-Match", "\"1-1\"")
+                .bodyValue("{\"title\":\"Theory\"}")
+                .exchange()
+                .expectStatus().isEqualTo(409);
+        client.patch().uri("/api/lessons/{id}", 1)
+                .contentType(MediaType.valueOf(LessonEventController.MERGE_PATCH_JSON_VALUE))
+                .bodyValue("{\"title\":\"Theory\",\"version\":2}")
+                .exchange()
+                .expectStatus().isNoContent()
+                .expectHeader().valueEquals("ETag", "\"1-3\"");
+        client.patch().uri("/api/lessons/{id}", 9)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"title\":\"Theory\",\"version\":2}")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
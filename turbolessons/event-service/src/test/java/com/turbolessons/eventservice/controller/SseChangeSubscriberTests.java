@@ -0,0 +1,77 @@
+package com.turbolessons.eventservice.controller;
+
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.ChangeType;
+import com.turbolessons.eventservice.dto.LessonChange;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SseChangeSubscriberTests {
+
+    private final List<Runnable> pending = new ArrayList<>();
+    private final RecordingEmitter emitter = new RecordingEmitter();
+
+    @Test
+    void shouldWriteQueuedChangesOnTheSender() {
+        SseChangeSubscriber subscriber = new SseChangeSubscriber(emitter, pending::add, 4);
+        subscriber.enqueue(List.of(change(1L), change(2L)));
+        assertEquals(0, emitter.sent);
+        assertEquals(2, subscriber.room());
+
+        runPending();
+        assertEquals(2, emitter.sent);
+        assertEquals(4, subscriber.room());
+    }
+
+    // The sender never got round to this subscriber, so its queue filled and the poller gave up on it
+    @Test
+    void shouldCompleteWithErrorWhenDroppedWhileFull() {
+        SseChangeSubscriber subscriber = new SseChangeSubscriber(emitter, pending::add, 2);
+        subscriber.enqueue(List.of(change(1L), change(2L)));
+        assertEquals(0, subscriber.room());
+
+        IllegalStateException overflow = new IllegalStateException("behind");
+        subscriber.fail(overflow);
+        runPending();
+        assertEquals(0, emitter.sent);
+        assertSame(overflow, emitter.error);
+
+        subscriber.enqueue(List.of(change(3L)));
+        runPending();
+        assertEquals(0, emitter.sent);
+    }
+
+    private void runPending() {
+        List<Runnable> tasks = new ArrayList<>(pending);
+        pending.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private static LessonChange change(Long seq) {
+        LessonChange change = new LessonChange(7, ChangeType.CREATED, BillingStatus.UNLOGGED, LocalDateTime.of(2033, 8, 17, 12, 0), "{}");
+        change.setSeq(seq);
+        return change;
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+        private int sent;
+        private Throwable error;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sent++;
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            error = ex;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.config.CacheConfig;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.ChangeType;
+import com.turbolessons.eventservice.dto.LessonChange;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import com.turbolessons.eventservice.service.LessonArchiveService;
+import com.turbolessons.eventservice.service.LessonChangeService;
+import com.turbolessons.eventservice.service.LessonEventCache;
+import com.turbolessons.eventservice.service.TeacherSchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@DataJpaTest(properties = {"spring.config.name=application-test", "lessons.archive.batch-size=2"})
+@Import({LessonArchiveRepo.class, LessonArchiveService.class, LessonEventCache.class, CacheConfig.class,
+         LessonChangeService.class, TeacherSchedule.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@ActiveProfiles("test")
+public class LessonArchiveRepoTests {
+
+    @Autowired
+    private LessonEventRepo repository;
+
+    @Autowired
+    private LessonArchiveRepo archive;
+
+    @Autowired
+    private LessonArchiveService archiveService;
+
+    @Autowired
+    private LessonChangeRepo changeRepository;
+
+    @Autowired
+    private TeacherSchedule schedule;
+
+    private final LocalDateTime old = LocalDateTime.of(2020, Month.MARCH, 2, 15, 0);
+    private final LocalDateTime recent = LocalDateTime.now().withNano(0).minusDays(7);
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        changeRepository.deleteAll();
+        schedule.clear();
+        // Five old LOGGED lessons, one old UNLOGGED, one recent LOGGED; only the first five are due for the archive
+        for (int week = 0; week < 5; week++) {
+            repository.save(lesson(old.plusWeeks(week), BillingStatus.LOGGED));
+        }
+        repository.save(lesson(old.plusWeeks(5), BillingStatus.UNLOGGED));
+        repository.save(lesson(recent, BillingStatus.LOGGED));
+    }
+
+    private LessonEvent lesson(LocalDateTime start, BillingStatus billingStatus) {
+        LessonEvent lesson = new LessonEvent(start, start.plusMinutes(30), "title", "StudentA", "student@example.com",
+                                             "TeacherA", "teacher@example.com", "comments");
+        lesson.setBillingStatus(billingStatus);
+        if (start.equals(old)) {
+            lesson.setSeriesId(3);
+            lesson.setOccurrenceDate(start.toLocalDate());
+        }
+        return lesson;
+    }
+
+    @Test
+    public void shouldMoveSettledOldLessonsInBatches() {
+        Assertions.assertEquals(5, archiveService.archiveOldLessons());
+
+        Assertions.assertEquals(2, repository.count());
+        Assertions.assertEquals(5, archive.findStudentPage("StudentA", null, null).size());
+        Assertions.assertEquals(0, archiveService.archiveOldLessons());
+
+        LessonEvent archived = archive.findStudentPage("StudentA", null, 1).get(0);
+        Assertions.assertEquals(old, archived.getStartTime());
+        Assertions.assertEquals(BillingStatus.LOGGED, archived.getBillingStatus());
+        Assertions.assertEquals(List.of(new SeriesOccurrence(3, old.toLocalDate())),
+                                archive.findSeriesOccurrences(List.of(3), old.toLocalDate(), old.toLocalDate()));
+        Assertions.assertEquals(old, archive.findBySeriesIdAndOccurrenceDate(3, old.toLocalDate()).orElseThrow().getStartTime());
+        Assertions.assertTrue(archive.findBySeriesIdAndOccurrenceDate(3, old.toLocalDate().plusDays(1)).isEmpty());
+        Assertions.assertEquals(2, archive.findTeacherLessonsInDateRange("TeacherA", old.toLocalDate(), old.toLocalDate().plusWeeks(1).plusDays(1)).size());
+    }
+
+    // Leaving the live table is a change like a delete: the feed hears of it, and the slot is free on this instance
+    @Test
+    public void shouldRecordArchivedLessonsAndFreeTheirSlots() {
+        List<Integer> due = repository.findLessonEventByTeacher("TeacherA").stream()
+                .filter(lesson -> lesson.getStartTime().isBefore(old.plusWeeks(5)))
+                .map(LessonEvent::getId)
+                .sorted()
+                .toList();
+        Assertions.assertEquals(due.get(0), schedule.findOverlap("TeacherA", old, old.plusMinutes(30)));
+
+        archiveService.archiveOldLessons();
+
+        List<LessonChange> archived = changeRepository.findChangesSince(0, PageRequest.of(0, 10));
+        Assertions.assertEquals(due, archived.stream().map(LessonChange::getLessonId).sorted().toList());
+        Assertions.assertTrue(archived.stream().allMatch(change -> change.getChangeType() == ChangeType.ARCHIVED
+                                                                   && change.getBillingStatus() == BillingStatus.LOGGED));
+        Assertions.assertNull(schedule.findOverlap("TeacherA", old, old.plusMinutes(30)));
+    }
+
+    // A cursor walk over the student's history crosses from the archive into the live table without gaps or repeats
+    @Test
+    public void shouldPageStudentHistoryAcrossBothTables() {
+        archiveService.archiveOldLessons();
+
+        List<LessonEvent> walked = new ArrayList<>();
+        LessonCursor cursor = null;
+        List<LessonEvent> page;
+        do {
+            page = archiveService.findStudentHistoryPage("StudentA", cursor, 3);
+            walked.addAll(page);
+            if (!page.isEmpty()) {
+                cursor = LessonCursor.of(page.get(page.size() - 1));
+            }
+        } while (page.size() == 3);
+
+        List<LocalDate> dates = walked.stream().map(LessonEvent::getDate).collect(Collectors.toList());
+        Assertions.assertEquals(List.of(old.toLocalDate(), old.toLocalDate().plusWeeks(1), old.toLocalDate().plusWeeks(2),
+                                        old.toLocalDate().plusWeeks(3), old.toLocalDate().plusWeeks(4), old.toLocalDate().plusWeeks(5),
+                                        recent.toLocalDate()), dates);
+        Assertions.assertEquals(walked, archiveService.findStudentHistory("StudentA"));
+    }
+}
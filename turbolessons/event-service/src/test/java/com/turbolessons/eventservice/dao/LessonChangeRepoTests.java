@@ -0,0 +1,102 @@
+package com.turbolessons.eventservice.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.ChangeType;
+import com.turbolessons.eventservice.dto.LessonChange;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.service.LessonChangeService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@DataJpaTest(properties = "spring.config.name=application-test")
+@ActiveProfiles("test")
+public class LessonChangeRepoTests {
+
+    @Autowired
+    private LessonChangeRepo changeRepository;
+
+    @Autowired
+    private LessonEventRepo lessonRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private final LocalDateTime now = LocalDateTime.of(2033, Month.AUGUST, 17, 12, 0);
+
+    @Test
+    public void shouldReadChangesAfterPositionInSequenceOrder() {
+        LessonChange first = changeRepository.save(new LessonChange(1, ChangeType.CREATED, BillingStatus.UNLOGGED, now.minusMinutes(2), "{}"));
+        LessonChange second = changeRepository.save(new LessonChange(2, ChangeType.CREATED, BillingStatus.UNLOGGED, now.minusMinutes(1), "{}"));
+
+        List<LessonChange> all = changeRepository.findChangesSince(0, PageRequest.of(0, 10));
+        Assertions.assertEquals(List.of(first.getSeq(), second.getSeq()), all.stream().map(LessonChange::getSeq).collect(Collectors.toList()));
+
+        List<LessonChange> resumed = changeRepository.findChangesSince(first.getSeq(), PageRequest.of(0, 10));
+        Assertions.assertEquals(1, resumed.size());
+        Assertions.assertEquals(2, resumed.get(0).getLessonId());
+    }
+
+    // A deleted row stands in for a transaction that took a seq and has not committed (or rolled back)
+    @Test
+    public void shouldHoldTheFeedAtASequenceGapUntilItSettles() {
+        LessonChange first = changeRepository.save(new LessonChange(1, ChangeType.CREATED, BillingStatus.UNLOGGED, now, "{}"));
+        LessonChange missing = changeRepository.save(new LessonChange(2, ChangeType.CREATED, BillingStatus.UNLOGGED, now, "{}"));
+        LessonChange third = changeRepository.save(new LessonChange(3, ChangeType.CREATED, BillingStatus.UNLOGGED, now, "{}"));
+        changeRepository.delete(missing);
+        entityManager.flush();
+        entityManager.clear();
+        long since = first.getSeq() - 1;
+
+        LessonChangeService waiting = new LessonChangeService(changeRepository, new ObjectMapper(), 60_000);
+        Assertions.assertEquals(List.of(first.getSeq()), seqs(waiting.findChangesSince(since, 10)));
+        Assertions.assertEquals(List.of(), seqs(waiting.findChangesSince(first.getSeq(), 10)));
+
+        LessonChangeService settled = new LessonChangeService(changeRepository, new ObjectMapper(), 0);
+        Assertions.assertEquals(List.of(first.getSeq(), third.getSeq()), seqs(settled.findChangesSince(since, 10)));
+    }
+
+    @Test
+    public void shouldRecordBulkBillingChangesWithOneInsert() {
+        LocalDateTime start = now.plusDays(1);
+        LessonEvent a = lessonRepository.save(new LessonEvent(start, start.plusMinutes(30), "a", "StudentA", "a@example.com", "TeacherA", "t@example.com", ""));
+        LessonEvent b = lessonRepository.save(new LessonEvent(start, start.plusMinutes(30), "b", "StudentB", "b@example.com", "TeacherA", "t@example.com", ""));
+        lessonRepository.flush();
+
+        Assertions.assertEquals(2, changeRepository.recordChanges(List.of(a.getId(), b.getId()), ChangeType.BILLING_STATUS.name(), now));
+
+        List<LessonChange> changes = changeRepository.findChangesSince(0, PageRequest.of(0, 10));
+        Assertions.assertEquals(2, changes.size());
+        Assertions.assertTrue(changes.stream().allMatch(change -> change.getChangeType() == ChangeType.BILLING_STATUS
+                                                                  && change.getBillingStatus() == BillingStatus.UNLOGGED
+                                                                  && change.getPayload() == null));
+    }
+
+    @Test
+    public void shouldInsertChangesAsOneBatch() {
+        List<LessonChange> rows = List.of(
+                new LessonChange(1, ChangeType.CREATED, BillingStatus.UNLOGGED, now.minusMinutes(1), "{\"id\":1}"),
+                new LessonChange(2, ChangeType.CREATED, null, now.minusMinutes(1), null));
+
+        Assertions.assertEquals(2, changeRepository.insertChanges(rows));
+
+        List<LessonChange> changes = changeRepository.findChangesSince(0, PageRequest.of(0, 10));
+        Assertions.assertEquals(List.of(1, 2), changes.stream().map(LessonChange::getLessonId).collect(Collectors.toList()));
+        Assertions.assertEquals("{\"id\":1}", changes.get(0).getPayload());
+        Assertions.assertNull(changes.get(1).getBillingStatus());
+    }
+
+    private static List<Long> seqs(List<LessonChange> changes) {
+        return changes.stream().map(LessonChange::getSeq).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,119 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.List;
+
+// Builds the Flyway schema on H2 in MySQL mode over JDBC, then reads the same in-memory database through R2DBC
+public class LessonEventReactiveRepoTests {
+
+    private static final String DATABASE = "reactive_repo;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    private final LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+
+    private LessonEventReactiveRepo repository;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + DATABASE, "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP TABLE IF EXISTS lesson_event");
+        new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__create_lesson_event.sql")).execute(dataSource);
+        // V5's multi-column ALTER is MySQL only
+        jdbc.execute("ALTER TABLE lesson_event ADD COLUMN version BIGINT NOT NULL DEFAULT 0");
+        jdbc.execute("ALTER TABLE lesson_event ADD COLUMN last_modified DATETIME(6)");
+        jdbc.execute("ALTER TABLE lesson_event ADD COLUMN series_id INT");
+        jdbc.execute("ALTER TABLE lesson_event ADD COLUMN occurrence_date DATE");
+        // Two lessons a day for five days, alternating teachers, inserted newest day first so id order != date order
+        int id = 1;
+        for (int day = 4; day >= 0; day--) {
+            for (int slot = 0; slot < 2; slot++) {
+                LocalDateTime lessonStart = start.plusDays(day).plusHours(slot);
+                jdbc.update("INSERT INTO lesson_event (id, start_time, end_time, title, student, student_email, teacher, teacher_email, "
+                            + "date, comments, billing_status, version, last_modified) VALUES (?, ?, ?, 'title', ?, 'student@example.com', ?, "
+                            + "'teacher@example.com', ?, 'comments', ?, 3, ?)",
+                            id++, lessonStart, lessonStart.plusMinutes(30), "Student" + day, slot == 0 ? "TeacherA" : "TeacherB",
+                            lessonStart.toLocalDate(), (day % 2 == 0 ? BillingStatus.LOGGED : BillingStatus.UNLOGGED).name(),
+                            start.minusDays(day));
+            }
+        }
+        repository = new LessonEventReactiveRepo(DatabaseClient.create(
+                ConnectionFactoryBuilder.withUrl("r2dbc:h2:mem:///" + DATABASE).username("sa").build()));
+    }
+
+    @Test
+    public void shouldWalkAllPagesInDateThenIdOrder() {
+        List<LessonEvent> walked = new ArrayList<>();
+        LessonCursor cursor = null;
+        List<LessonEvent> page;
+        do {
+            page = repository.findLessonEvents(LessonFilter.all(), cursor, 3).collectList().block();
+            walked.addAll(page);
+            if (!page.isEmpty()) {
+                cursor = LessonCursor.of(page.get(page.size() - 1));
+            }
+        } while (page.size() == 3);
+
+        Assertions.assertEquals(10, walked.size());
+        for (int i = 1; i < walked.size(); i++) {
+            LessonEvent previous = walked.get(i - 1);
+            LessonEvent current = walked.get(i);
+            Assertions.assertTrue(previous.getDate().isBefore(current.getDate())
+                                  || (previous.getDate().equals(current.getDate()) && previous.getId() < current.getId()));
+        }
+    }
+
+    @Test
+    public void shouldApplyFiltersAndMapEveryColumn() {
+        StepVerifier.create(repository.findLessonEvents(
+                        LessonFilter.byDateRangeAndBillingStatus(start.toLocalDate(), start.toLocalDate().plusDays(2), BillingStatus.LOGGED), null, null))
+                .expectNextCount(4)
+                .verifyComplete();
+
+        LessonEvent lesson = repository.findLessonEvents(LessonFilter.byTeacherAndDate("TeacherB", start.toLocalDate()), null, null)
+                .single()
+                .block();
+        Assertions.assertEquals(start.plusHours(1), lesson.getStartTime());
+        Assertions.assertEquals(start.toLocalDate(), lesson.getDate());
+        Assertions.assertEquals("Student0", lesson.getStudent());
+        Assertions.assertEquals(BillingStatus.LOGGED, lesson.getBillingStatus());
+        Assertions.assertEquals(3L, lesson.getVersion());
+        Assertions.assertEquals(lesson, repository.findById(lesson.getId()).block());
+    }
+
+    // Only what the subscriber asks for is emitted; cancelling ends the read
+    @Test
+    public void shouldEmitRowsOnDemand() {
+        StepVerifier.create(repository.findLessonEvents(LessonFilter.all(), null, null), 2)
+                .expectNextCount(2)
+                .thenRequest(1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void shouldReadSameMarkersAsJpa() {
+        // TeacherA has the odd ids, each row at version 3
+        Assertions.assertEquals(new LessonMarker(5, 15, 1 + 3 + 5 + 7 + 9), repository.findTeacherMarker("TeacherA").block());
+
+        Assertions.assertEquals(new LessonMarker(0, 0, 0), repository.findStudentMarker("Nobody").block());
+    }
+}
@@ -0,0 +1,245 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.config.SearchConfig;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonCursor;
+import com.turbolessons.eventservice.dto.LessonDayCount;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonFields;
+import com.turbolessons.eventservice.dto.LessonFilter;
+import com.turbolessons.eventservice.dto.LessonMarker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@DataJpaTest(properties = "spring.config.name=application-test")
+@ActiveProfiles("test")
+@Import(SearchConfig.class)
+public class LessonEventRepoTests {
+
+    @Autowired
+    private LessonEventRepo repository;
+
+    private final LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        // Two lessons a day for five days, alternating teachers, saved newest day first so id order != date order
+        for (int day = 4; day >= 0; day--) {
+            for (int slot = 0; slot < 2; slot++) {
+                LocalDateTime lessonStart = start.plusDays(day).plusHours(slot);
+                String teacher = slot == 0 ? "TeacherA" : "TeacherB";
+                LessonEvent lesson = new LessonEvent(lessonStart, lessonStart.plusMinutes(30), "title", "Student" + day,
+                                                     "student@example.com", teacher, "teacher@example.com", "comments");
+                if (day % 2 == 0) {
+                    lesson.setBillingStatus(BillingStatus.LOGGED);
+                }
+                repository.save(lesson);
+            }
+        }
+    }
+
+    @Test
+    public void shouldWalkAllPagesInDateThenIdOrder() {
+        List<LessonEvent> walked = new ArrayList<>();
+        LessonCursor cursor = null;
+        List<LessonEvent> page;
+        do {
+            page = repository.findLessonEventPage(LessonFilter.all(), cursor, 3);
+            walked.addAll(page);
+            if (!page.isEmpty()) {
+                cursor = LessonCursor.of(page.get(page.size() - 1));
+            }
+        } while (page.size() == 3);
+
+        Assertions.assertEquals(10, walked.size());
+        for (int i = 1; i < walked.size(); i++) {
+            LessonEvent previous = walked.get(i - 1);
+            LessonEvent current = walked.get(i);
+            Assertions.assertTrue(previous.getDate().isBefore(current.getDate())
+                                  || (previous.getDate().equals(current.getDate()) && previous.getId() < current.getId()));
+        }
+    }
+
+    @Test
+    public void shouldApplyFilterToPages() {
+        List<LessonEvent> page = repository.findLessonEventPage(LessonFilter.byTeacher("TeacherA"), null, 10);
+        Assertions.assertEquals(5, page.size());
+        Assertions.assertTrue(page.stream().allMatch(lesson -> lesson.getTeacher().equals("TeacherA")));
+
+        page = repository.findLessonEventPage(
+                LessonFilter.byDateRangeAndBillingStatus(start.toLocalDate(), start.toLocalDate().plusDays(2), BillingStatus.LOGGED), null, 10);
+        Assertions.assertEquals(4, page.size());
+    }
+
+    @Test
+    public void shouldStreamMatchingLessons() {
+        try (Stream<LessonEvent> lessons = repository.streamLessonEvents(LessonFilter.byDate(start.toLocalDate()), 2)) {
+            List<String> teachers = lessons.map(LessonEvent::getTeacher).collect(Collectors.toList());
+            Assertions.assertEquals(List.of("TeacherA", "TeacherB"), teachers);
+        }
+    }
+
+    @Test
+    public void shouldMatchWholeDaysWithHalfOpenDateRanges() {
+        Assertions.assertEquals(2, repository.findLessonEventByDate(start.toLocalDate()).size());
+        Assertions.assertEquals(1, repository.findLessonEventByTeacherAndDate("TeacherB", start.toLocalDate().plusDays(4)).size());
+        // endDate is inclusive: days 0 and 2 are LOGGED, day 4 is outside the range
+        Assertions.assertEquals(4, repository.findLessonEventByDateRangeAndBillingStatus(
+                start.toLocalDate(), start.toLocalDate().plusDays(3), BillingStatus.LOGGED.name()).size());
+    }
+
+    @Test
+    public void shouldGroupTeacherLessonsByDayAndBillingStatus() {
+        List<LessonDayCount> days = repository.countLessonsByDay("TeacherA", start.toLocalDate(), start.toLocalDate().plusDays(3));
+
+        Assertions.assertEquals(List.of(start.toLocalDate(), start.toLocalDate().plusDays(1), start.toLocalDate().plusDays(2)),
+                                days.stream().map(LessonDayCount::getLessonDate).toList());
+        Assertions.assertEquals(List.of(BillingStatus.LOGGED, BillingStatus.UNLOGGED, BillingStatus.LOGGED),
+                                days.stream().map(LessonDayCount::getBillingStatus).toList());
+        Assertions.assertTrue(days.stream().allMatch(day -> day.getLessons() == 1 && day.getMinutes() == 30));
+    }
+
+    @Test
+    public void shouldOnlyTransitionLessonsInExpectedBillingStatus() {
+        List<Integer> ids = repository.findLessonEventByDate(start.toLocalDate()).stream()
+                .map(LessonEvent::getId).collect(Collectors.toList());
+        List<Integer> unlogged = repository.findLessonEventByDate(start.toLocalDate().plusDays(1)).stream()
+                .map(LessonEvent::getId).collect(Collectors.toList());
+        List<Integer> requested = new ArrayList<>(ids);
+        requested.addAll(unlogged);
+
+        List<Integer> eligible = repository.lockIdsInBillingStatus(requested, BillingStatus.UNLOGGED);
+        Assertions.assertEquals(Set.copyOf(unlogged), Set.copyOf(eligible));
+        Assertions.assertEquals(2, repository.updateBillingStatus(eligible, BillingStatus.UNLOGGED, BillingStatus.INVOICED, LocalDateTime.now()));
+        Assertions.assertTrue(repository.findAllById(unlogged).stream()
+                                      .allMatch(lesson -> lesson.getBillingStatus() == BillingStatus.INVOICED));
+        Assertions.assertTrue(repository.findAllById(ids).stream()
+                                      .allMatch(lesson -> lesson.getBillingStatus() == BillingStatus.LOGGED));
+    }
+
+    @Test
+    public void shouldAssignDistinctIdsAcrossPooledBlocks() {
+        List<LessonEvent> semester = new ArrayList<>();
+        for (int week = 0; week < LessonEvent.ID_ALLOCATION_SIZE * 2 + 5; week++) {
+            LocalDateTime lessonStart = start.plusWeeks(week + 1);
+            semester.add(new LessonEvent(lessonStart, lessonStart.plusMinutes(30), "title", "StudentZ",
+                                         "student@example.com", "TeacherZ", "teacher@example.com", "comments"));
+        }
+
+        List<Integer> ids = repository.saveAll(semester).stream().map(LessonEvent::getId).collect(Collectors.toList());
+        repository.flush();
+
+        Assertions.assertEquals(semester.size(), Set.copyOf(ids).size());
+        Assertions.assertEquals(semester.size(), repository.findLessonEventByTeacher("TeacherZ").size());
+    }
+
+    @Test
+    public void shouldSelectOnlyRequestedFieldsAndKeepPaging() {
+        List<String> fields = List.of("endTime", "billingStatus");
+        List<LessonFields> firstPage = repository.findLessonEventFields(LessonFilter.byTeacher("TeacherA"), fields, null, 3);
+        List<LessonFields> rest = repository.findLessonEventFields(LessonFilter.byTeacher("TeacherA"), fields,
+                                                                   firstPage.get(2).position(), null);
+
+        Assertions.assertEquals(3, firstPage.size());
+        Assertions.assertEquals(2, rest.size());
+        Assertions.assertEquals(Set.of("endTime", "billingStatus"), firstPage.get(0).values().keySet());
+        List<LessonEvent> expected = repository.findLessonEventPage(LessonFilter.byTeacher("TeacherA"), null, 10);
+        for (int i = 0; i < expected.size(); i++) {
+            LessonFields row = i < 3 ? firstPage.get(i) : rest.get(i - 3);
+            Assertions.assertEquals(LessonCursor.of(expected.get(i)), row.position());
+            Assertions.assertEquals(expected.get(i).getEndTime(), row.values().get("endTime"));
+            Assertions.assertEquals(expected.get(i).getBillingStatus(), row.values().get("billingStatus"));
+        }
+    }
+
+    @Test
+    public void shouldMoveVersionAndMarkersOnEveryKindOfWrite() {
+        LessonEvent lesson = repository.findLessonEventByTeacher("TeacherA").get(0);
+        Assertions.assertEquals(0L, lesson.getVersion());
+        Assertions.assertNotNull(lesson.getLastModified());
+        LessonMarker initial = repository.findTeacherMarker("TeacherA");
+        Assertions.assertEquals(5, initial.count());
+
+        lesson.setComments("moved to the small room");
+        repository.saveAndFlush(lesson);
+        Assertions.assertEquals(1L, lesson.getVersion());
+        LessonMarker afterUpdate = repository.findTeacherMarker("TeacherA");
+        Assertions.assertNotEquals(initial.etag("teacher"), afterUpdate.etag("teacher"));
+
+        // Another lesson, written by an instance whose clock is an hour behind: the newest lastModified stays put, the
+        // marker still moves
+        LessonEvent other = repository.findLessonEventByTeacher("TeacherA").get(1);
+        repository.updateBillingStatus(List.of(other.getId()), other.getBillingStatus(), BillingStatus.INVOICED,
+                                       other.getLastModified().minusHours(1));
+        Assertions.assertEquals(1L, repository.findById(other.getId()).orElseThrow().getVersion());
+        LessonMarker afterBulk = repository.findTeacherMarker("TeacherA");
+        Assertions.assertNotEquals(afterUpdate.etag("teacher"), afterBulk.etag("teacher"));
+
+        LessonEvent oldest = repository.findLessonEventPage(LessonFilter.byTeacher("TeacherA"), null, 1).get(0);
+        repository.deleteById(oldest.getId());
+        repository.flush();
+        Assertions.assertNotEquals(afterBulk.etag("teacher"), repository.findTeacherMarker("TeacherA").etag("teacher"));
+        Assertions.assertEquals(new LessonMarker(0, 0, 0), repository.findStudentMarker("nobody"));
+    }
+
+    @Test
+    public void shouldPatchOnlyGivenColumnsWhileVersionMatches() {
+        LessonEvent lesson = repository.findLessonEventByTeacher("TeacherB").get(0);
+        LocalDateTime modifiedAt = lesson.getLastModified().plusSeconds(1);
+        Map<String, Object> changes = new HashMap<>();
+        changes.put("comments", null);
+        changes.put("title", "Recital prep");
+
+        Assertions.assertEquals(0, repository.patchLessonEvent(lesson.getId(), lesson.getVersion() + 1, changes, modifiedAt));
+        Assertions.assertEquals(1, repository.patchLessonEvent(lesson.getId(), lesson.getVersion(), changes, modifiedAt));
+        Assertions.assertEquals(0, repository.patchLessonEvent(lesson.getId(), lesson.getVersion(), changes, modifiedAt));
+
+        LessonEvent patched = repository.findById(lesson.getId()).orElseThrow();
+        Assertions.assertEquals("Recital prep", patched.getTitle());
+        Assertions.assertNull(patched.getComments());
+        Assertions.assertEquals(lesson.getStudent(), patched.getStudent());
+        Assertions.assertEquals(lesson.getVersion() + 1, patched.getVersion());
+        Assertions.assertEquals(modifiedAt, patched.getLastModified());
+    }
+
+    // Off MySQL the score is a substring match, so this checks filtering and the score-then-id paging order
+    @Test
+    public void shouldSearchTitleAndCommentsWithinFiltersAndPage() {
+        LessonEvent scales = repository.findLessonEventByTeacher("TeacherA").get(0);
+        scales.setComments("Work on SCALES in C major");
+        repository.save(scales);
+        LessonEvent titled = repository.findLessonEventByTeacher("TeacherA").get(1);
+        titled.setTitle("Scales and arpeggios");
+        repository.save(titled);
+        LessonEvent other = repository.findLessonEventByTeacher("TeacherB").get(0);
+        other.setTitle("Scales");
+        repository.save(other);
+
+        List<LessonEvent> matches = repository.searchLessonEvents("scales", LessonFilter.byTeacher("TeacherA"), 0, 10);
+        Assertions.assertEquals(List.of(scales.getId(), titled.getId()).stream().sorted().toList(),
+                                matches.stream().map(LessonEvent::getId).toList());
+
+        List<LessonEvent> firstPage = repository.searchLessonEvents("scales", LessonFilter.all(), 0, 2);
+        List<LessonEvent> secondPage = repository.searchLessonEvents("scales", LessonFilter.all(), 2, 2);
+        Assertions.assertEquals(2, firstPage.size());
+        Assertions.assertEquals(1, secondPage.size());
+        Assertions.assertTrue(firstPage.get(1).getId() < secondPage.get(0).getId());
+        Assertions.assertTrue(repository.searchLessonEvents("violin", LessonFilter.all(), 0, 10).isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonSeries;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+
+@DataJpaTest(properties = "spring.config.name=application-test")
+@ActiveProfiles("test")
+public class LessonSeriesRepoTests {
+
+    @Autowired
+    private LessonSeriesRepo seriesRepository;
+
+    @Autowired
+    private LessonEventRepo lessonRepository;
+
+    private final LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+
+    private LessonSeries open;
+    private LessonSeries ended;
+
+    @BeforeEach
+    public void setUp() {
+        open = new LessonSeries(start, start.plusMinutes(30), "Piano", "StudentA", "a@example.com", "TeacherA", "t@example.com", "", 1);
+        open.getExdates().add(start.toLocalDate().plusWeeks(1));
+        open = seriesRepository.save(open);
+        ended = new LessonSeries(start, start.plusMinutes(30), "Theory", "StudentB", "b@example.com", "TeacherA", "t@example.com", "", 1);
+        ended.setUntilDate(start.toLocalDate().plusWeeks(2));
+        ended = seriesRepository.save(ended);
+    }
+
+    @Test
+    public void shouldFindSeriesThatCanOverlapTheRange() {
+        LocalDate from = start.toLocalDate().plusWeeks(3);
+        List<LessonSeries> found = seriesRepository.findTeacherSeriesInDateRange("TeacherA", from, from.plusWeeks(1).atStartOfDay());
+
+        Assertions.assertEquals(List.of(open.getId()), found.stream().map(LessonSeries::getId).toList());
+        Assertions.assertEquals(1, found.get(0).getExdates().size());
+        Assertions.assertTrue(seriesRepository.findStudentSeriesInDateRange("StudentA", start.toLocalDate().minusWeeks(2),
+                                                                            start.minusWeeks(1)).isEmpty());
+    }
+
+    @Test
+    public void shouldKeepOneRowPerOccurrence() {
+        LocalDate date = start.toLocalDate().plusWeeks(2);
+        LessonEvent moved = open.occurrence(date);
+        moved.setStartTime(moved.getStartTime().plusDays(1));
+        lessonRepository.saveAndFlush(moved);
+
+        Assertions.assertEquals(List.of(new SeriesOccurrence(open.getId(), date)),
+                                lessonRepository.findSeriesOccurrences(List.of(open.getId(), ended.getId()), date, date));
+        Assertions.assertEquals(moved.getId(), lessonRepository.findBySeriesIdAndOccurrenceDate(open.getId(), date).orElseThrow().getId());
+        Assertions.assertThrows(DataIntegrityViolationException.class, () -> lessonRepository.saveAndFlush(open.occurrence(date)));
+    }
+}
@@ -0,0 +1,57 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.config.PersistenceMetricsConfig;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+
+@DataJpaTest(properties = {"spring.config.name=application-test", "lessons.metrics.enabled=true", "lessons.metrics.slow-repository-millis=0"})
+@Import(PersistenceMetricsConfig.class)
+@ActiveProfiles("test")
+@ExtendWith(OutputCaptureExtension.class)
+public class PersistenceMetricsTests {
+
+    @Autowired
+    private LessonEventRepo repository;
+
+    @Autowired
+    private MeterBinder hibernateStatisticsMetrics;
+
+    @Test
+    public void shouldCountHibernateWork() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        hibernateStatisticsMetrics.bindTo(registry);
+        double queries = registry.get("hibernate.query.executions").functionCounter().count();
+        double statements = registry.get("hibernate.statements").tag("status", "prepared").functionCounter().count();
+
+        LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+        repository.saveAndFlush(new LessonEvent(start, start.plusMinutes(30), "title", "StudentA", "student@example.com",
+                                                "TeacherA", "teacher@example.com", "comments"));
+        repository.findLessonEventByTeacher("TeacherA");
+
+        Assertions.assertTrue(registry.get("hibernate.query.executions").functionCounter().count() > queries);
+        Assertions.assertTrue(registry.get("hibernate.statements").tag("status", "prepared").functionCounter().count() > statements);
+        Assertions.assertTrue(registry.get("hibernate.entities.inserts").functionCounter().count() >= 1);
+    }
+
+    // With a zero threshold every call counts as slow
+    @Test
+    public void shouldLogSlowRepositoryCalls(CapturedOutput output) {
+        repository.findLessonEventByStudent("StudentA");
+
+        Assertions.assertTrue(output.getOut().contains("Slow repository call LessonEventRepo.findLessonEventByStudent"));
+    }
+}
@@ -0,0 +1,153 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.config.ReadWriteRoutingDataSource;
+import com.turbolessons.eventservice.config.ReadYourWrites;
+import com.turbolessons.eventservice.config.ReadYourWritesFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Two in-memory databases stand in for the primary and the replica; each knows its own name
+public class ReadWriteRoutingTests {
+
+    private final AtomicLong millis = new AtomicLong(1_700_000_000_000L);
+
+    private ReadYourWrites readYourWrites;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate writes;
+    private TransactionTemplate reads;
+    private final List<String> issued = new ArrayList<>();
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP TABLE IF EXISTS node");
+        jdbc.execute("CREATE TABLE node (name VARCHAR(16))");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+
+    @BeforeEach
+    public void setUp() {
+        readYourWrites = new ReadYourWrites(Duration.ofSeconds(2), millis::get);
+        DataSource routing = new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(database("primary"), database("replica"), readYourWrites));
+        jdbc = new JdbcTemplate(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(routing);
+        writes = new TransactionTemplate(transactionManager);
+        reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private String node(TransactionTemplate transaction) {
+        return transaction.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    // Stands in for ReadYourWritesFilter around one request echoing token
+    private ReadYourWrites.Scope request(String token) {
+        return readYourWrites.open(token, issued::add);
+    }
+
+    @Test
+    public void shouldSendReadOnlyTransactionsToTheReplica() {
+        Assertions.assertEquals("replica", node(reads));
+        Assertions.assertEquals("primary", node(writes));
+        Assertions.assertEquals("primary", jdbc.queryForObject("SELECT name FROM node", String.class));
+    }
+
+    // Every request is anonymous under the permit-all security; the token, not the principal, pins the reads
+    @Test
+    public void shouldKeepAnAnonymousWriterOnThePrimaryForTheWindow() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new AnonymousAuthenticationToken("key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+        try (ReadYourWrites.Scope ignored = request(null)) {
+            Assertions.assertEquals("primary", node(writes));
+            Assertions.assertEquals("primary", node(reads));
+        }
+        Assertions.assertEquals(List.of(String.valueOf(millis.get())), issued);
+        String token = issued.get(0);
+
+        millis.addAndGet(1500);
+        try (ReadYourWrites.Scope ignored = request(token)) {
+            Assertions.assertEquals("primary", node(reads));
+        }
+        // Other clients never saw the write, so the replica is as good as ever for them
+        try (ReadYourWrites.Scope ignored = request(null)) {
+            Assertions.assertEquals("replica", node(reads));
+        }
+
+        millis.addAndGet(1000);
+        try (ReadYourWrites.Scope ignored = request(token)) {
+            Assertions.assertEquals("replica", node(reads));
+        }
+    }
+
+    @Test
+    public void shouldNotPinWorkOutsideARequest() {
+        Assertions.assertEquals("primary", node(writes));
+        Assertions.assertEquals("replica", node(reads));
+        Assertions.assertTrue(issued.isEmpty());
+    }
+
+    @Test
+    public void shouldIgnoreTokensItCouldNotHaveIssued() {
+        for (String token : List.of("soon", "-1", String.valueOf(millis.get() + 60_000))) {
+            try (ReadYourWrites.Scope ignored = request(token)) {
+                Assertions.assertEquals("replica", node(reads));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotCountRolledBackWrites() {
+        try (ReadYourWrites.Scope ignored = request(null)) {
+            writes.execute(status -> {
+                jdbc.queryForObject("SELECT name FROM node", String.class);
+                status.setRollbackOnly();
+                return null;
+            });
+            Assertions.assertEquals("replica", node(reads));
+        }
+        Assertions.assertTrue(issued.isEmpty());
+    }
+
+    @Test
+    public void shouldReturnTheTokenOnTheWriteAndHonourItOnTheNextRequest() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(readYourWrites);
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/lessons"), written,
+                        (request, response) -> node(writes));
+        String token = written.getHeader(ReadYourWrites.HEADER);
+        Assertions.assertEquals(String.valueOf(millis.get()), token);
+
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/api/lessons");
+        read.addHeader(ReadYourWrites.HEADER, token);
+        List<String> nodes = new ArrayList<>();
+        filter.doFilter(read, new MockHttpServletResponse(),
+                        (request, response) -> nodes.add(node(reads)));
+        Assertions.assertEquals(List.of("primary"), nodes);
+        Assertions.assertEquals("replica", node(reads));
+    }
+}
@@ -0,0 +1,158 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.config.CacheConfig;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import com.turbolessons.eventservice.dto.StudentLessonSummary;
+import com.turbolessons.eventservice.service.LessonChangeService;
+import com.turbolessons.eventservice.service.LessonEventCache;
+import com.turbolessons.eventservice.service.LessonEventService;
+import com.turbolessons.eventservice.service.StudentSummaryService;
+import com.turbolessons.eventservice.service.TeacherSchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Every kind of lesson write has to leave the summary row equal to a recount from scratch. Runs on the configured
+// database rather than a generated one, since the summary upsert needs H2's MySQL mode.
+@DataJpaTest(properties = "spring.config.name=application-test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({LessonEventService.class, StudentSummaryService.class, TeacherSchedule.class, LessonEventCache.class, CacheConfig.class})
+@ActiveProfiles("test")
+public class StudentLessonSummaryRepoTests {
+
+    @Autowired
+    private LessonEventRepo repository;
+
+    @Autowired
+    private StudentLessonSummaryRepo summaries;
+
+    @Autowired
+    private LessonEventService service;
+
+    @Autowired
+    private StudentSummaryService summaryService;
+
+    @MockBean
+    private LessonChangeService changeService;
+
+    private final LocalDateTime past = LocalDateTime.now().withNano(0).minusDays(30);
+    private final LocalDateTime future = LocalDateTime.now().withNano(0).plusDays(30);
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        summaries.deleteAll();
+    }
+
+    private LessonEvent lesson(LocalDateTime start, String student) {
+        return new LessonEvent(start, start.plusMinutes(30), "title", student, "student@example.com",
+                               "TeacherA", "teacher@example.com", "comments");
+    }
+
+    private void assertMatchesRecount(String student) {
+        StudentLessonSummary counted = new StudentLessonSummary(student);
+        counted.recount(summaries.countStudentLessons(student, LocalDateTime.now()));
+        Assertions.assertEquals(counted, summaries.findById(student).orElseThrow());
+    }
+
+    @Test
+    public void shouldFollowEveryKindOfWrite() {
+        LessonEvent first = service.saveLessonEvent(lesson(past, "StudentA"));
+        service.saveLessonEvents(List.of(lesson(past.plusDays(7), "StudentA"), lesson(future, "StudentA"), lesson(future.plusDays(7), "StudentA")));
+        StudentLessonSummary summary = summaryService.findSummary("StudentA");
+        Assertions.assertEquals(2, summary.getLessonsTaken());
+        Assertions.assertEquals(2, summary.getUpcoming());
+        Assertions.assertEquals(4, summary.getUnbilled());
+        Assertions.assertEquals(past.plusDays(7).toLocalDate(), summary.getLastLessonDate());
+        Assertions.assertEquals(future, summary.getNextLessonStart());
+
+        // Move the next lesson into the past, then hand the last one to another student
+        LessonEvent next = repository.findLessonEventByStudent("StudentA").stream()
+                .filter(lesson -> lesson.getStartTime().equals(future)).findFirst().orElseThrow();
+        service.updateLessonEvent(next.getId(), lesson(past.plusDays(14), "StudentA"));
+        assertMatchesRecount("StudentA");
+        Long version = repository.findById(first.getId()).orElseThrow().getVersion();
+        service.patchLessonEvent(first.getId(), version, new LessonPatch(Map.of("student", "StudentB"), null));
+        assertMatchesRecount("StudentA");
+        assertMatchesRecount("StudentB");
+
+        List<Integer> ids = repository.findLessonEventByStudent("StudentA").stream().map(LessonEvent::getId).toList();
+        service.transitionBillingStatus(ids, BillingStatus.UNLOGGED, BillingStatus.LOGGED);
+        service.updateLessonEventBillingStatus(ids.get(0), BillingStatus.UNLOGGED);
+        assertMatchesRecount("StudentA");
+        Assertions.assertEquals(1, summaries.findById("StudentA").orElseThrow().getUnbilled());
+
+        ids.forEach(service::deleteLessonEvent);
+        assertMatchesRecount("StudentA");
+        Assertions.assertEquals(0, summaries.findById("StudentA").orElseThrow().getLessonsTaken());
+    }
+
+    // Once the next lesson has started the stored split is out of date, and the read recounts it
+    @Test
+    public void shouldRecountWhenAnUpcomingLessonHasStarted() {
+        service.saveLessonEvent(lesson(past, "StudentA"));
+        StudentLessonSummary stale = summaries.findById("StudentA").orElseThrow();
+        stale.setLessonsTaken(0);
+        stale.setUpcoming(1);
+        stale.setNextLessonStart(past);
+        summaries.saveAndFlush(stale);
+
+        StudentLessonSummary summary = summaryService.findSummary("StudentA");
+        Assertions.assertEquals(1, summary.getLessonsTaken());
+        Assertions.assertEquals(0, summary.getUpcoming());
+        Assertions.assertNull(summary.getNextLessonStart());
+        Assertions.assertEquals(0, summaryService.findSummary("Nobody").getLessonsTaken());
+    }
+
+    // Both writers find no row for a new student; they have to queue up on one row instead of both inserting it.
+    // Runs without the test transaction so the two writes really commit side by side.
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void shouldCountConcurrentFirstLessonsOfANewStudent() throws Exception {
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 10; round++) {
+                String student = "NewStudent" + round;
+                CyclicBarrier start = new CyclicBarrier(2);
+                List<Future<LessonEvent>> saved = new ArrayList<>();
+                for (int writer = 0; writer < 2; writer++) {
+                    LessonEvent lesson = lesson(future.plusDays(writer), student);
+                    lesson.setTeacher("TeacherOf" + student);
+                    saved.add(writers.submit(() -> {
+                        start.await();
+                        return service.saveLessonEvent(lesson);
+                    }));
+                }
+                for (Future<LessonEvent> lesson : saved) {
+                    lesson.get(30, TimeUnit.SECONDS);
+                }
+                Assertions.assertEquals(2, summaries.findById(student).orElseThrow().getUpcoming());
+                assertMatchesRecount(student);
+            }
+        } finally {
+            writers.shutdownNow();
+            repository.deleteAll();
+            summaries.deleteAll();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.turbolessons.eventservice.dao;
+
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.service.LessonConflictException;
+import com.turbolessons.eventservice.service.TeacherSchedule;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Two TeacherSchedule instances over one database stand in for two service instances, each with its own index. Runs on
+// the configured database rather than a generated one, since the lock row upsert needs H2's MySQL mode.
+@DataJpaTest(properties = "spring.config.name=application-test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+public class TeacherScheduleLockTests {
+
+    @Autowired
+    private LessonEventRepo repository;
+
+    @Autowired
+    private LessonSeriesRepo seriesRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TeacherSchedule first;
+    private TeacherSchedule second;
+
+    private final LocalDateTime start = LocalDateTime.now().withNano(0).plusDays(30);
+
+    @BeforeEach
+    public void setUp() {
+        first = new TeacherSchedule(repository, seriesRepository, 600, 365);
+        second = new TeacherSchedule(repository, seriesRepository, 600, 365);
+    }
+
+    private LessonEvent lesson(String teacher, LocalDateTime start) {
+        return new LessonEvent(start, start.plusMinutes(30), "title", "StudentA", "student@example.com",
+                               teacher, "teacher@example.com", "comments");
+    }
+
+    @Test
+    public void shouldCheckTheDatabaseWhenTheIndexIsStale() {
+        // The second instance loads its index before the first one books the slot
+        Assertions.assertNull(second.findOverlap("TeacherA", start, start.plusMinutes(30)));
+        LessonEvent booked = repository.save(lesson("TeacherA", start));
+        first.reserve(booked);
+
+        LessonEvent overlapping = repository.save(lesson("TeacherA", start.plusMinutes(15)));
+        LessonConflictException conflict = Assertions.assertThrows(LessonConflictException.class, () -> second.reserve(overlapping));
+        Assertions.assertEquals(booked.getId(), conflict.getConflictingId());
+    }
+
+    @Test
+    public void shouldCheckABatchAgainstStoredLessonsAndAgainstItself() {
+        LessonEvent booked = repository.save(lesson("TeacherA", start));
+        first.reserve(booked);
+
+        LessonEvent free = repository.save(lesson("TeacherA", start.plusDays(1)));
+        LessonEvent overlapping = repository.save(lesson("TeacherA", start.plusMinutes(15)));
+        LessonConflictException conflict = Assertions.assertThrows(LessonConflictException.class,
+                                                                   () -> second.reserve(List.of(free, overlapping)));
+        Assertions.assertEquals(booked.getId(), conflict.getConflictingId());
+
+        second.clear();
+        LessonEvent early = repository.save(lesson("TeacherA", start.plusDays(2)));
+        LessonEvent late = repository.save(lesson("TeacherA", start.plusDays(2).plusMinutes(15)));
+        LessonEvent otherTeacher = repository.save(lesson("TeacherB", start.plusDays(2)));
+        // Whichever of the two is checked second conflicts with the other
+        conflict = Assertions.assertThrows(LessonConflictException.class, () -> second.reserve(List.of(otherTeacher, early, late)));
+        Assertions.assertTrue(Set.of(early.getId(), late.getId()).contains(conflict.getConflictingId()));
+    }
+
+    // Only one of two instances booking the same time at the same moment gets it
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void shouldBookASlotOnceAcrossInstances() throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService writers = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 10; round++) {
+                String teacher = "Teacher" + round;
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                List<Future<LessonEvent>> saved = new ArrayList<>();
+                for (TeacherSchedule schedule : List.of(first, second)) {
+                    Assertions.assertNull(schedule.findOverlap(teacher, start, start.plusMinutes(30)));
+                    saved.add(writers.submit(() -> {
+                        barrier.await();
+                        return transaction.execute(status -> {
+                            LessonEvent lesson = repository.save(lesson(teacher, start));
+                            schedule.reserve(lesson);
+                            return lesson;
+                        });
+                    }));
+                }
+                int booked = 0;
+                for (Future<LessonEvent> lesson : saved) {
+                    try {
+                        lesson.get(30, TimeUnit.SECONDS);
+                        booked++;
+                    } catch (ExecutionException e) {
+                        Assertions.assertInstanceOf(LessonConflictException.class, e.getCause());
+                    }
+                }
+                Assertions.assertEquals(1, booked);
+                Assertions.assertEquals(1, repository.findLessonEventByTeacher(teacher).size());
+            }
+        } finally {
+            writers.shutdownNow();
+            repository.deleteAll();
+        }
+    }
+}
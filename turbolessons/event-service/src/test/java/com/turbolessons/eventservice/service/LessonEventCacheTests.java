@@ -0,0 +1,173 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.config.CacheConfig;
+import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dao.LessonSeriesRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringJUnitConfig({CacheConfig.class, LessonEventCache.class, TeacherSchedule.class, LessonEventService.class,
+                    LessonEventCacheTests.Transactions.class})
+public class LessonEventCacheTests {
+
+    // Real transactions, so the repository stub can tell read-only work (which the replica would serve) from the rest
+    @Configuration
+    @EnableTransactionManagement
+    static class Transactions {
+        @Bean
+        public PlatformTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(new DriverManagerDataSource("jdbc:h2:mem:cache-tests;DB_CLOSE_DELAY=-1", "sa", ""));
+        }
+    }
+
+    @MockBean
+    private LessonEventRepo repository;
+
+    @MockBean
+    private LessonSeriesRepo seriesRepository;
+
+    @MockBean
+    private LessonChangeService changeService;
+
+    @MockBean
+    private StudentSummaryService summaryService;
+
+    @Autowired
+    private LessonEventService service;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private LessonEvent lesson;
+
+    @BeforeEach
+    public void setUp() {
+        LessonEventCache.NAMES.forEach(name -> cacheManager.getCache(name).clear());
+        LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+        lesson = new LessonEvent(start, start.plusMinutes(30), "title", "StudentA", "student_a@example.com",
+                                 "TeacherA", "teacher_a@example.com", "comments");
+        lesson.setId(1);
+        when(repository.findById(1)).thenReturn(Optional.of(lesson));
+        when(repository.findLessonEventByTeacher(any(String.class))).thenReturn(List.of(lesson));
+        when(repository.save(any(LessonEvent.class))).then(invocation -> invocation.getArgument(0));
+        when(repository.saveAndFlush(any(LessonEvent.class))).then(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    public void shouldServeRepeatedReadsFromCache() {
+        service.findLessonEvent(1);
+        service.findLessonEvent(1);
+        service.findLessonEventsByTeacher("TeacherA");
+        service.findLessonEventsByTeacher("TeacherA");
+
+        verify(repository, times(1)).findById(1);
+        verify(repository, times(1)).findLessonEventByTeacher("TeacherA");
+    }
+
+    @Test
+    public void shouldEvictOnlyEntriesTheWrittenLessonBelongsTo() {
+        service.findLessonEvent(1);
+        service.findLessonEventsByTeacher("TeacherA");
+        service.findLessonEventsByTeacher("TeacherB");
+
+        service.updateLessonEventBillingStatus(1, BillingStatus.LOGGED);
+
+        service.findLessonEventsByTeacher("TeacherA");
+        service.findLessonEventsByTeacher("TeacherB");
+        verify(repository, times(2)).findLessonEventByTeacher("TeacherA");
+        verify(repository, times(1)).findLessonEventByTeacher("TeacherB");
+    }
+
+    @Test
+    public void shouldEvictOldAndNewTeacherOnUpdate() {
+        service.findLessonEventsByTeacher("TeacherA");
+        service.findLessonEventsByTeacher("TeacherB");
+
+        LessonEvent moved = new LessonEvent(lesson.getStartTime(), lesson.getEndTime(), lesson.getTitle(), lesson.getStudent(),
+                                            lesson.getStudentEmail(), "TeacherB", "teacher_b@example.com", lesson.getComments());
+        service.updateLessonEvent(1, moved);
+
+        service.findLessonEventsByTeacher("TeacherA");
+        service.findLessonEventsByTeacher("TeacherB");
+        verify(repository, times(2)).findLessonEventByTeacher("TeacherA");
+        verify(repository, times(2)).findLessonEventByTeacher("TeacherB");
+    }
+
+    // A patch knows the row before and after it, so it only evicts the lists the lesson was and is in
+    @Test
+    public void shouldEvictOnlyTheOldAndNewTeacherOnPatch() {
+        LessonEvent moved = new LessonEvent(lesson.getStartTime(), lesson.getEndTime(), lesson.getTitle(), lesson.getStudent(),
+                                            lesson.getStudentEmail(), "TeacherB", "teacher_b@example.com", lesson.getComments());
+        moved.setId(1);
+        when(repository.findById(1)).thenReturn(Optional.of(lesson), Optional.of(moved));
+        when(repository.patchLessonEvent(eq(1), eq(0L), any(), any(LocalDateTime.class))).thenReturn(1);
+        service.findLessonEventsByTeacher("TeacherA");
+        service.findLessonEventsByTeacher("TeacherB");
+        service.findLessonEventsByTeacher("TeacherC");
+
+        service.patchLessonEvent(1, 0L, new LessonPatch(Map.of("teacher", "TeacherB"), null));
+
+        service.findLessonEventsByTeacher("TeacherA");
+        service.findLessonEventsByTeacher("TeacherB");
+        service.findLessonEventsByTeacher("TeacherC");
+        verify(repository, times(2)).findLessonEventByTeacher("TeacherA");
+        verify(repository, times(2)).findLessonEventByTeacher("TeacherB");
+        verify(repository, times(1)).findLessonEventByTeacher("TeacherC");
+    }
+
+    // The replica is still behind the update; a cached finder reading it would serve the old title for the whole TTL
+    @Test
+    public void shouldNotCacheWhatALaggingReplicaServes() {
+        LessonEvent stale = new LessonEvent(lesson.getStartTime(), lesson.getEndTime(), lesson.getTitle(), lesson.getStudent(),
+                                            lesson.getStudentEmail(), lesson.getTeacher(), lesson.getTeacherEmail(), lesson.getComments());
+        stale.setId(1);
+        when(repository.findById(1)).then(invocation ->
+                Optional.of(TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? stale : lesson));
+
+        LessonEvent renamed = new LessonEvent(lesson.getStartTime(), lesson.getEndTime(), "renamed", lesson.getStudent(),
+                                              lesson.getStudentEmail(), lesson.getTeacher(), lesson.getTeacherEmail(), lesson.getComments());
+        service.updateLessonEvent(1, renamed);
+
+        Assertions.assertEquals("renamed", service.findLessonEvent(1).getTitle());
+        Assertions.assertEquals("renamed", service.findLessonEvent(1).getTitle());
+    }
+
+    @Test
+    public void shouldEvictOnDelete() {
+        service.findLessonEvent(1);
+        service.deleteLessonEvent(1);
+        Mockito.reset(repository);
+        when(repository.findById(1)).thenReturn(Optional.empty());
+
+        service.findLessonEvent(1);
+        verify(repository, times(1)).findById(1);
+    }
+}
@@ -1,21 +1,33 @@
 package com.turbolessons.eventservice.service;
 
 import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dao.LessonSeriesRepo;
 import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.ChangeType;
+import com.turbolessons.eventservice.dto.Granularity;
+import com.turbolessons.eventservice.dto.LessonCalendarSummary;
+import com.turbolessons.eventservice.dto.LessonDayCount;
 import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonPatch;
+import com.turbolessons.eventservice.dto.LessonPeriod;
+import com.turbolessons.eventservice.dto.TimeSlot;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.util.*;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 
 @TestPropertySource(locations = "classpath:application-test.yml")
@@ -24,6 +36,7 @@ public class LessonEventServiceTests {
 
     private LessonEventRepo lessonEventRepo;
     private LessonEventService service;
+    private LessonChangeService changeService;
     Map<Integer, LessonEvent> lessonEventStore;
     Map<String, List<LessonEvent>> lessonEventByStudentStore;
     Map<String, List<LessonEvent>> lessonEventByTeacherStore;
@@ -90,7 +103,9 @@ public class LessonEventServiceTests {
         lessonEventByDateRangeAndBillingStatusStore = new HashMap<>();
         
         setUpLessonEventRepoMock();
-        service = new LessonEventService(lessonEventRepo);
+        changeService = mock(LessonChangeService.class);
+        service = new LessonEventService(lessonEventRepo, new LessonEventCache(new ConcurrentMapCacheManager()), changeService,
+                                         new TeacherSchedule(lessonEventRepo, mock(LessonSeriesRepo.class), 600, 365), mock(StudentSummaryService.class), 500);
         lesson = new LessonEvent(start1,
                                  end1,
                                  title1,
@@ -388,12 +403,171 @@ public class LessonEventServiceTests {
         Assertions.assertEquals(BillingStatus.LOGGED, updatedLesson.getBillingStatus());
     }
 
+    // Bulk Create Lesson Events
+    @Test
+    public void shouldSaveLessonsInOneCallAndRecordThemTogether() {
+        LessonEvent first = new LessonEvent(start1.plusWeeks(1), end1.plusWeeks(1), title1, student1, studentEmail1, teacher1, teacherEmail1, comments);
+        LessonEvent second = new LessonEvent(start1.plusWeeks(2), end1.plusWeeks(2), title1, student1, studentEmail1, teacher1, teacherEmail1, comments);
+        List<LessonEvent> semester = List.of(first, second);
+        Mockito.when(lessonEventRepo.saveAll(semester)).thenReturn(semester);
+
+        Assertions.assertEquals(semester, service.saveLessonEvents(semester));
+        Mockito.verify(lessonEventRepo).saveAll(semester);
+        Mockito.verify(changeService).recordAll(ChangeType.CREATED, semester);
+    }
+
+    // The schedule locks and reads each teacher once for the whole batch, not once per lesson
+    @Test
+    public void shouldCheckABulkCreateOneTeacherAtATime() {
+        List<LessonEvent> semester = new ArrayList<>();
+        for (int week = 1; week <= 10; week++) {
+            for (String teacher : List.of(teacher1, teacher2)) {
+                LessonEvent weekly = new LessonEvent(start1.plusWeeks(week), end1.plusWeeks(week), title1, student1, studentEmail1,
+                                                     teacher, teacherEmail1, comments);
+                weekly.setId(100 + semester.size());
+                semester.add(weekly);
+            }
+        }
+        Mockito.when(lessonEventRepo.saveAll(semester)).thenReturn(semester);
+        Mockito.clearInvocations(lessonEventRepo);
+
+        service.saveLessonEvents(semester);
+        for (String teacher : List.of(teacher1, teacher2)) {
+            Mockito.verify(lessonEventRepo).lockTeacherSchedule(teacher);
+            Mockito.verify(lessonEventRepo).lockSlotsOverlapping(teacher, start1.plusWeeks(1), end1.plusWeeks(10));
+        }
+    }
+
+    // Patch Lesson Event
+    @Test
+    public void shouldPatchWithOneStatementAndReportStaleVersions() {
+        LessonPatch patch = new LessonPatch(Map.of("title", "Recital prep"), null);
+        Mockito.when(lessonEventRepo.patchLessonEvent(eq(1), eq(4L), eq(patch.changes()), any(LocalDateTime.class))).thenReturn(1);
+        Mockito.when(lessonEventRepo.existsById(1)).thenReturn(true);
+
+        Assertions.assertEquals(5L, service.patchLessonEvent(1, 4L, patch));
+        Mockito.verify(changeService).recordRowChanges(ChangeType.UPDATED, List.of(1));
+        Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () -> service.patchLessonEvent(1, 3L, patch));
+        Assertions.assertNull(service.patchLessonEvent(99, 0L, patch));
+        Mockito.verify(lessonEventRepo, Mockito.never()).patchLessonEvent(eq(99), eq(0L), eq(patch.changes()), any(LocalDateTime.class));
+    }
+
+    // The patch only sends endTime, so it is the merged row that ends before it starts
+    @Test
+    public void shouldRejectAPatchThatEndsTheLessonBeforeItStarts() {
+        Integer id = lesson.getId();
+        LocalDateTime endTime = lesson.getStartTime().minusMinutes(10);
+        LessonPatch patch = new LessonPatch(Map.of("endTime", endTime), null);
+        Mockito.when(lessonEventRepo.patchLessonEvent(eq(id), eq(0L), eq(patch.changes()), any(LocalDateTime.class))).then(invocation -> {
+            lesson.setEndTime(endTime);
+            return 1;
+        });
+
+        Assertions.assertThrows(InvalidLessonTimesException.class, () -> service.patchLessonEvent(id, 0L, patch));
+        Mockito.verify(changeService, Mockito.never()).recordRowChanges(ChangeType.UPDATED, List.of(id));
+    }
+
+    // Every write leaves an outbox record
+    @Test
+    public void shouldRecordChangeForEveryWrite() {
+        Integer id = lesson.getId();
+        Mockito.verify(changeService).record(ChangeType.CREATED, lesson);
+
+        service.updateLessonEventBillingStatus(id, BillingStatus.LOGGED);
+        Mockito.verify(changeService).record(ChangeType.BILLING_STATUS, lesson);
+
+        // A POST carrying the id overwrites the lesson; flushed, so the recorded version is the one committed
+        LessonEvent overwrite = new LessonEvent(lesson.getStartTime(), lesson.getEndTime(), "Renamed", lesson.getStudent(),
+                                                lesson.getStudentEmail(), lesson.getTeacher(), lesson.getTeacherEmail(), "");
+        overwrite.setId(id);
+        LessonEvent overwritten = service.saveLessonEvent(overwrite);
+        Mockito.verify(lessonEventRepo).saveAndFlush(overwrite);
+        Mockito.verify(changeService).record(ChangeType.UPDATED, overwritten);
+
+        LessonEvent deleted = service.findLessonEvent(id);
+        service.deleteLessonEvent(id);
+        Mockito.verify(changeService).record(ChangeType.DELETED, deleted);
+    }
+
+    // Double-booking: a teacher's lessons may touch but not overlap
+    @Test
+    public void shouldRejectLessonThatOverlapsTheTeachersOtherLessons() {
+        LessonEvent overlapping = new LessonEvent(start1.plusMinutes(15), end1.plusMinutes(15), title3, student3, studentEmail3, teacher1, teacherEmail1, comments);
+        LessonConflictException conflict = Assertions.assertThrows(LessonConflictException.class, () -> service.saveLessonEvent(overlapping));
+        Assertions.assertNotNull(conflict.getConflictingId());
+        Mockito.verify(changeService, Mockito.never()).record(ChangeType.CREATED, overlapping);
+
+        LessonEvent otherTeacher = new LessonEvent(start1, end1, title3, student3, studentEmail3, teacher2, teacherEmail2, comments);
+        Assertions.assertNotNull(service.saveLessonEvent(otherTeacher).getId());
+        LessonEvent backToBack = new LessonEvent(end2, end2.plusMinutes(30), title3, student3, studentEmail3, teacher1, teacherEmail1, comments);
+        service.saveLessonEvent(backToBack);
+
+        LocalDateTime day = start1.toLocalDate().atStartOfDay();
+        Assertions.assertEquals(List.of(new TimeSlot(day, start1), new TimeSlot(end2.plusMinutes(30), day.plusDays(1))),
+                                service.findFreeSlots(teacher1, day, day.plusDays(1), Duration.ofMinutes(30)));
+    }
+
+    // Bulk Update Lesson Event Billing Status
+    @Test
+    public void shouldTransitionOnlyEligibleLessonsInOneUpdate() {
+        Mockito.when(lessonEventRepo.lockIdsInBillingStatus(List.of(1, 2, 3), BillingStatus.UNLOGGED))
+                .thenReturn(List.of(1, 3));
+
+        List<Integer> changed = service.transitionBillingStatus(List.of(1, 2, 3, 1), BillingStatus.UNLOGGED, BillingStatus.LOGGED);
+
+        Assertions.assertEquals(List.of(1, 3), changed);
+        Mockito.verify(lessonEventRepo).updateBillingStatus(eq(List.of(1, 3)), eq(BillingStatus.UNLOGGED), eq(BillingStatus.LOGGED), any(LocalDateTime.class));
+        Mockito.verify(lessonEventRepo, Mockito.never()).findById(any(Integer.class));
+        Mockito.verify(changeService).recordBillingStatusChanges(List.of(1, 3));
+    }
+
+    // Summarize Lesson Events By Teacher
+    @Test
+    public void shouldRollDailyCountsUpIntoWeeksAndMonths() {
+        LocalDate wednesday = LocalDate.of(2033, Month.AUGUST, 17);
+        Mockito.when(lessonEventRepo.countLessonsByDay("Teacher1", wednesday, LocalDate.of(2033, Month.SEPTEMBER, 2)))
+                .thenReturn(List.of(dayCount(wednesday, BillingStatus.LOGGED, 2, 60),
+                                    dayCount(wednesday, BillingStatus.UNLOGGED, 1, 30),
+                                    dayCount(wednesday.plusDays(4), BillingStatus.LOGGED, 1, 45),
+                                    dayCount(wednesday.plusDays(5), BillingStatus.UNLOGGED, 3, 90),
+                                    dayCount(LocalDate.of(2033, Month.SEPTEMBER, 1), BillingStatus.UNLOGGED, 1, 60)));
+
+        LessonCalendarSummary weeks = service.summarizeTeacherLessons("Teacher1", wednesday, LocalDate.of(2033, Month.SEPTEMBER, 1), Granularity.WEEK);
+        Assertions.assertEquals(8, weeks.lessons());
+        Assertions.assertEquals(285, weeks.minutes());
+        Assertions.assertEquals(Map.of(BillingStatus.LOGGED, 3L, BillingStatus.UNLOGGED, 5L), weeks.byBillingStatus());
+        // Wednesday and Sunday share the week of Monday the 15th; Monday the 22nd starts the next one
+        Assertions.assertEquals(List.of(new LessonPeriod(LocalDate.of(2033, Month.AUGUST, 15), 4, 135,
+                                                         Map.of(BillingStatus.LOGGED, 3L, BillingStatus.UNLOGGED, 1L)),
+                                        new LessonPeriod(LocalDate.of(2033, Month.AUGUST, 22), 3, 90,
+                                                         Map.of(BillingStatus.UNLOGGED, 3L)),
+                                        new LessonPeriod(LocalDate.of(2033, Month.AUGUST, 29), 1, 60,
+                                                         Map.of(BillingStatus.UNLOGGED, 1L))),
+                                weeks.periods());
+
+        LessonCalendarSummary months = service.summarizeTeacherLessons("Teacher1", wednesday, LocalDate.of(2033, Month.SEPTEMBER, 1), Granularity.MONTH);
+        Assertions.assertEquals(List.of(LocalDate.of(2033, Month.AUGUST, 1), LocalDate.of(2033, Month.SEPTEMBER, 1)),
+                                months.periods().stream().map(LessonPeriod::start).toList());
+        Assertions.assertEquals(7, months.periods().get(0).lessons());
+    }
+
+    private static LessonDayCount dayCount(LocalDate date, BillingStatus status, long lessons, long minutes) {
+        return new LessonDayCount() {
+            public LocalDate getLessonDate() { return date; }
+            public BillingStatus getBillingStatus() { return status; }
+            public long getLessons() { return lessons; }
+            public long getMinutes() { return minutes; }
+        };
+    }
+
     private void setUpLessonEventRepoMock() {
         lessonEventRepo = mock(LessonEventRepo.class);
 
         Mockito.when(lessonEventRepo.findAll())
                 .thenReturn(new ArrayList<>(lessonEventStore.values()));
 
+        Mockito.when(lessonEventRepo.saveAndFlush(any(LessonEvent.class)))
+                .then(invocation -> lessonEventRepo.save(invocation.getArgument(0)));
         Mockito.when(lessonEventRepo.save(any(LessonEvent.class)))
                 .then(invocation -> {
                     LessonEvent lesson = invocation.getArgument(0);
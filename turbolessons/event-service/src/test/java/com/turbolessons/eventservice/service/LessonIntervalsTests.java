@@ -0,0 +1,54 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dto.LessonSlot;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+
+public class LessonIntervalsTests {
+
+    private final LocalDateTime nine = LocalDateTime.of(2033, Month.AUGUST, 17, 9, 0);
+
+    @Test
+    public void shouldFindOverlapsButNotTouchingLessons() {
+        LessonIntervals intervals = new LessonIntervals(List.of(new LessonSlot(1, nine, nine.plusMinutes(30)),
+                                                                new LessonSlot(2, nine.plusHours(1), nine.plusHours(2))));
+
+        Assertions.assertEquals(1, intervals.findOverlap(nine.plusMinutes(29), nine.plusMinutes(45), null));
+        Assertions.assertEquals(2, intervals.findOverlap(nine.plusMinutes(90), nine.plusMinutes(100), null));
+        Assertions.assertNull(intervals.findOverlap(nine.plusMinutes(30), nine.plusHours(1), null));
+        Assertions.assertNull(intervals.findOverlap(nine, nine.plusMinutes(30), 1));
+    }
+
+    // Rows saved before conflicts were rejected can overlap; a long one must still be found from well inside it
+    @Test
+    public void shouldFindLongLessonsThatStartedEarlier() {
+        LessonIntervals intervals = new LessonIntervals(List.of(new LessonSlot(1, nine, nine.plusHours(8)),
+                                                                new LessonSlot(2, nine.plusHours(1), nine.plusMinutes(90))));
+
+        Assertions.assertEquals(1, intervals.findOverlap(nine.plusHours(6), nine.plusHours(7), null));
+
+        intervals.remove(1);
+        Assertions.assertNull(intervals.findOverlap(nine.plusHours(6), nine.plusHours(7), null));
+        Assertions.assertEquals(1, intervals.size());
+    }
+
+    @Test
+    public void shouldMoveALessonAndListTheGapsAroundIt() {
+        LessonIntervals intervals = new LessonIntervals();
+        intervals.add(new LessonSlot(1, nine, nine.plusMinutes(30)));
+        intervals.add(new LessonSlot(2, nine.plusMinutes(45), nine.plusMinutes(60)));
+        intervals.add(new LessonSlot(1, nine.plusHours(2), nine.plusHours(3)));
+
+        Assertions.assertEquals(List.of(new TimeSlot(nine, nine.plusMinutes(45)), new TimeSlot(nine.plusHours(1), nine.plusHours(2)),
+                                        new TimeSlot(nine.plusHours(3), nine.plusHours(4))),
+                                intervals.freeSlots(nine, nine.plusHours(4), Duration.ofMinutes(30)));
+        Assertions.assertEquals(List.of(new TimeSlot(nine.plusHours(1), nine.plusHours(2))),
+                                intervals.freeSlots(nine.plusMinutes(50), nine.plusMinutes(150), Duration.ofMinutes(30)));
+    }
+}
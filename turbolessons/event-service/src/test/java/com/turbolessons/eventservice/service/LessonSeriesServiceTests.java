@@ -0,0 +1,207 @@
+package com.turbolessons.eventservice.service;
+
+import com.turbolessons.eventservice.dao.LessonArchiveRepo;
+import com.turbolessons.eventservice.dao.LessonEventRepo;
+import com.turbolessons.eventservice.dao.LessonSeriesRepo;
+import com.turbolessons.eventservice.dto.BillingStatus;
+import com.turbolessons.eventservice.dto.LessonEvent;
+import com.turbolessons.eventservice.dto.LessonSeries;
+import com.turbolessons.eventservice.dto.LessonSlot;
+import com.turbolessons.eventservice.dto.SeriesOccurrence;
+import com.turbolessons.eventservice.dto.TimeSlot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LessonSeriesServiceTests {
+
+    private LessonSeriesRepo seriesRepo;
+    private LessonEventRepo lessonRepo;
+    private LessonEventService lessonService;
+    private LessonArchiveRepo archive;
+    private LessonSeriesService service;
+    private TeacherSchedule schedule;
+
+    // Wednesdays at 15:00, every other week
+    private final LocalDateTime start = LocalDateTime.of(2033, Month.AUGUST, 17, 15, 0);
+    private final LocalDate firstDate = start.toLocalDate();
+    private LessonSeries series;
+
+    @BeforeEach
+    public void setUp() {
+        seriesRepo = mock(LessonSeriesRepo.class);
+        lessonRepo = mock(LessonEventRepo.class);
+        lessonService = mock(LessonEventService.class);
+        schedule = new TeacherSchedule(lessonRepo, seriesRepo, 600, 365);
+        archive = mock(LessonArchiveRepo.class);
+        service = new LessonSeriesService(seriesRepo, lessonRepo, archive, lessonService, schedule);
+
+        series = new LessonSeries(start, start.plusMinutes(30), "Piano", "StudentA", "a@example.com", "TeacherA", "t@example.com", "", 2);
+        series.setId(7);
+        when(seriesRepo.findById(7)).thenReturn(Optional.of(series));
+    }
+
+    @Test
+    public void shouldExpandOnlyTheRequestedRange() {
+        // Starts mid-series: the first date on or after Oct 1 that is a whole number of fortnights from Aug 17
+        List<LocalDate> dates = series.occurrenceDates(LocalDate.of(2033, Month.OCTOBER, 1), LocalDate.of(2033, Month.OCTOBER, 31))
+                .collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of(LocalDate.of(2033, Month.OCTOBER, 12), LocalDate.of(2033, Month.OCTOBER, 26)), dates);
+        Assertions.assertTrue(series.occurrenceDates(firstDate.minusDays(30), firstDate.minusDays(1)).findAny().isEmpty());
+    }
+
+    @Test
+    public void shouldStopAtCountOrUntilAndSkipExdates() {
+        series.setOccurrenceCount(3);
+        series.getExdates().add(firstDate.plusWeeks(2));
+        Assertions.assertEquals(List.of(firstDate, firstDate.plusWeeks(4)),
+                                series.occurrenceDates(firstDate, firstDate.plusYears(10)).collect(Collectors.toList()));
+        Assertions.assertTrue(series.schedules(firstDate.plusWeeks(2)));
+        Assertions.assertFalse(series.schedules(firstDate.plusWeeks(6)));
+
+        series.setOccurrenceCount(null);
+        series.setUntilDate(firstDate.plusWeeks(6));
+        Assertions.assertEquals(3, series.occurrenceDates(firstDate, firstDate.plusYears(10)).count());
+        Assertions.assertFalse(series.schedules(firstDate.plusWeeks(1)));
+
+        // A far-off range of an open series costs the occurrences in it, not the ones before it
+        series.setUntilDate(null);
+        LocalDate farOff = firstDate.plusWeeks(2 * 100_000);
+        Assertions.assertEquals(List.of(farOff), series.occurrenceDates(farOff, farOff).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void shouldMergeStoredLessonsWithOccurrencesThatHaveNoRow() {
+        LocalDate endDate = firstDate.plusWeeks(4);
+        LessonEvent oneOff = new LessonEvent(start.plusDays(1), start.plusDays(1).plusMinutes(30), "Theory", "StudentB", "b@example.com",
+                                             "TeacherA", "t@example.com", "");
+        oneOff.setId(1);
+        // The second occurrence was moved a day later when it was edited
+        LessonEvent moved = series.occurrence(firstDate.plusWeeks(2));
+        moved.setStartTime(moved.getStartTime().plusDays(1));
+        moved.setId(2);
+        when(lessonRepo.findLessonEventByTeacherInDateRange("TeacherA", firstDate, endDate.plusDays(1))).thenReturn(List.of(moved, oneOff));
+        when(seriesRepo.findTeacherSeriesInDateRange("TeacherA", firstDate, endDate.plusDays(1).atStartOfDay())).thenReturn(List.of(series));
+        when(lessonRepo.findSeriesOccurrences(anyCollection(), eq(firstDate), eq(endDate)))
+                .thenReturn(List.of(new SeriesOccurrence(7, firstDate.plusWeeks(2))));
+
+        List<LessonEvent> calendar = service.findTeacherCalendar("TeacherA", firstDate, endDate);
+
+        Assertions.assertEquals(List.of(start, start.plusDays(1), start.plusWeeks(2).plusDays(1), start.plusWeeks(4)),
+                                calendar.stream().map(LessonEvent::getStartTime).collect(Collectors.toList()));
+        LessonEvent virtual = calendar.get(0);
+        Assertions.assertNull(virtual.getId());
+        Assertions.assertEquals(7, virtual.getSeriesId());
+        Assertions.assertEquals(firstDate, virtual.getOccurrenceDate());
+        Assertions.assertEquals(BillingStatus.UNLOGGED, virtual.getBillingStatus());
+    }
+
+    @Test
+    public void shouldMaterialiseAnOccurrenceOnce() {
+        LocalDate date = firstDate.plusWeeks(2);
+        when(lessonRepo.findBySeriesIdAndOccurrenceDate(7, date)).thenReturn(Optional.empty());
+        when(lessonService.saveLessonEvent(any(LessonEvent.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        LessonEvent saved = service.materialiseOccurrence(7, date, null);
+
+        Assertions.assertEquals(start.plusWeeks(2), saved.getStartTime());
+        Assertions.assertEquals(7, saved.getSeriesId());
+        Assertions.assertEquals(date, saved.getOccurrenceDate());
+
+        when(lessonRepo.findBySeriesIdAndOccurrenceDate(7, date)).thenReturn(Optional.of(saved));
+        Assertions.assertSame(saved, service.materialiseOccurrence(7, date, null));
+        Assertions.assertNull(service.materialiseOccurrence(7, date.plusWeeks(1), null));
+        verify(lessonService).saveLessonEvent(any(LessonEvent.class));
+    }
+
+    @Test
+    public void shouldCancelAnOccurrenceButKeepABilledRow() {
+        LocalDate date = firstDate.plusWeeks(2);
+        LessonEvent billed = series.occurrence(date);
+        billed.setId(3);
+        billed.setBillingStatus(BillingStatus.INVOICED);
+        when(lessonRepo.findBySeriesIdAndOccurrenceDate(7, date)).thenReturn(Optional.of(billed));
+
+        Assertions.assertTrue(service.cancelOccurrence(7, date));
+        Assertions.assertTrue(series.getExdates().contains(date));
+        verify(lessonService, never()).deleteLessonEvent(3);
+
+        Assertions.assertFalse(service.cancelOccurrence(7, date.plusDays(1)));
+    }
+
+    // Once archived, an occurrence's row is out of lesson_event but still the occurrence's lesson
+    @Test
+    public void shouldLeaveAnArchivedOccurrenceAlone() {
+        LocalDate date = firstDate.plusWeeks(2);
+        LessonEvent archived = series.occurrence(date);
+        archived.setId(3);
+        archived.setBillingStatus(BillingStatus.LOGGED);
+        when(lessonRepo.findBySeriesIdAndOccurrenceDate(7, date)).thenReturn(Optional.empty());
+        when(archive.findBySeriesIdAndOccurrenceDate(7, date)).thenReturn(Optional.of(archived));
+
+        Assertions.assertSame(archived, service.materialiseOccurrence(7, date, null));
+        Assertions.assertTrue(service.cancelOccurrence(7, date));
+        Assertions.assertFalse(series.getExdates().contains(date));
+        verify(lessonService, never()).saveLessonEvent(any(LessonEvent.class));
+        verify(lessonService, never()).deleteLessonEvent(any());
+    }
+
+    // Occurrences without a row count as booked for free slots and for other lessons of the teacher
+    @Test
+    public void shouldScheduleAroundOccurrencesThatHaveNoRow() {
+        when(seriesRepo.findTeacherSeriesInDateRange(eq("TeacherA"), any(LocalDate.class), any(LocalDateTime.class))).thenReturn(List.of(series));
+        LocalDateTime day = firstDate.plusWeeks(2).atStartOfDay();
+
+        Assertions.assertEquals(List.of(new TimeSlot(day, start.plusWeeks(2)), new TimeSlot(start.plusWeeks(2).plusMinutes(30), day.plusDays(1))),
+                                schedule.findFreeSlots("TeacherA", day, day.plusDays(1), Duration.ofMinutes(30)));
+
+        LessonEvent overlapping = new LessonEvent(start.plusWeeks(2).plusMinutes(15), start.plusWeeks(2).plusMinutes(45), "Theory",
+                                                  "StudentB", "b@example.com", "TeacherA", "t@example.com", "");
+        overlapping.setId(1);
+        LessonConflictException conflict = Assertions.assertThrows(LessonConflictException.class, () -> schedule.reserve(overlapping));
+        Assertions.assertEquals(new SeriesOccurrence(7, firstDate.plusWeeks(2)), conflict.getConflictingOccurrence());
+
+        // Materialising the occurrence, even moved a little, doesn't conflict with itself
+        LessonEvent materialised = series.occurrence(firstDate.plusWeeks(2));
+        materialised.setStartTime(materialised.getStartTime().plusMinutes(15));
+        materialised.setEndTime(materialised.getEndTime().plusMinutes(15));
+        materialised.setId(2);
+        schedule.reserve(materialised);
+    }
+
+    @Test
+    public void shouldRejectASeriesThatOverlapsAStoredLesson() {
+        when(seriesRepo.save(any(LessonSeries.class))).thenAnswer(invocation -> {
+            LessonSeries saved = invocation.getArgument(0);
+            saved.setId(7);
+            return saved;
+        });
+        when(seriesRepo.findTeacherSeriesInDateRange(eq("TeacherA"), any(LocalDate.class), any(LocalDateTime.class))).thenReturn(List.of(series));
+        when(lessonRepo.findTeacherSlots("TeacherA")).thenReturn(List.of(new LessonSlot(3, start.plusWeeks(4).minusMinutes(15), start.plusWeeks(4).plusMinutes(15))));
+
+        LessonConflictException conflict = Assertions.assertThrows(LessonConflictException.class, () -> service.saveSeries(series));
+        Assertions.assertEquals(3, conflict.getConflictingId());
+
+        // A week later it falls between the stored lesson's fortnights
+        series.setStartTime(start.plusWeeks(1));
+        series.setEndTime(start.plusWeeks(1).plusMinutes(30));
+        Assertions.assertSame(series, service.saveSeries(series));
+    }
+}
@@ -0,0 +1,4 @@
+-- Run by Hibernate after create-drop builds the entity tables. lesson_event_archive has no entity (it is only read and written through LessonArchiveRepo), so the test schema gets it here; keep in step with V7.
+DROP TABLE IF EXISTS lesson_event_archive;
+CREATE TABLE lesson_event_archive (id INT NOT NULL, billing_status VARCHAR(255) NOT NULL, comments VARCHAR(255), date DATE, end_time TIMESTAMP, start_time TIMESTAMP, student VARCHAR(255), student_email VARCHAR(255), teacher VARCHAR(255), teacher_email VARCHAR(255), title VARCHAR(255), version BIGINT NOT NULL, last_modified TIMESTAMP(6) NOT NULL, series_id INT, occurrence_date DATE, archived_at TIMESTAMP(6) NOT NULL, PRIMARY KEY (id));
+CREATE INDEX idx_lesson_event_archive_student_date ON lesson_event_archive (student, date);
@@ -0,0 +1,90 @@
+package com.turbolessons.messageservice.config;
+
+import com.turbolessons.messageservice.model.Msg;
+import com.turbolessons.messageservice.service.MsgService;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Brings the message collection up to date at startup: creates the compound indexes declared on {@link Msg} (Boot
+ * leaves automatic index creation off) and gives documents written before {@code sentAt} existed one, parsed from
+ * their {@code timestamp} string or, failing that, taken from their ObjectId. Both steps are idempotent, so every
+ * instance can run them.
+ */
+@Log4j2
+@Component
+public class MsgMigration implements ApplicationRunner {
+
+    // MsgService.TIMESTAMP_PATTERN, and the shorter form of older documents, both in the server's zone
+    private static final List<DateTimeFormatter> TIMESTAMP_FORMATS = List.of(
+            DateTimeFormatter.ofPattern(MsgService.TIMESTAMP_PATTERN),
+            DateTimeFormatter.ofPattern("dd-MM-yy HH:mm"));
+    private static final int CONCURRENCY = 16;
+
+    private final ReactiveMongoTemplate template;
+
+    public MsgMigration(ReactiveMongoTemplate template) {
+        this.template = template;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        ensureIndexes().block();
+        Long migrated = backfillSentAt().block();
+        if (migrated != null && migrated > 0) {
+            log.info("Set sentAt on " + migrated + " messages");
+        }
+    }
+
+    Mono<Void> ensureIndexes() {
+        IndexResolver resolver = IndexResolver.create(template.getConverter().getMappingContext());
+        ReactiveIndexOperations indexOps = template.indexOps(Msg.class);
+        return Flux.fromIterable(resolver.resolveIndexFor(Msg.class))
+                .concatMap(indexOps::ensureIndex)
+                .then();
+    }
+
+    Mono<Long> backfillSentAt() {
+        String collection = template.getCollectionName(Msg.class);
+        Query missing = Query.query(Criteria.where("sentAt").exists(false));
+        missing.fields().include("_id").include("timestamp");
+        return template.find(missing, Document.class, collection)
+                .flatMap(doc -> template.updateFirst(Query.query(Criteria.where("_id").is(doc.get("_id"))),
+                                                     Update.update("sentAt", sentAt(doc)), collection), CONCURRENCY)
+                .count();
+    }
+
+    static Instant sentAt(Document doc) {
+        String timestamp = doc.getString("timestamp");
+        if (timestamp != null) {
+            for (DateTimeFormatter format : TIMESTAMP_FORMATS) {
+                try {
+                    return LocalDateTime.parse(timestamp, format).atZone(ZoneId.systemDefault()).toInstant();
+                } catch (DateTimeParseException e) {
+                    // Try the next format
+                }
+            }
+        }
+        Object id = doc.get("_id");
+        return id instanceof ObjectId objectId ? objectId.getDate().toInstant() : Instant.EPOCH;
+    }
+}
@@ -0,0 +1,33 @@
+package com.turbolessons.messageservice.config;
+
+import com.turbolessons.messageservice.service.RecipientSessionRegistry;
+import com.turbolessons.messageservice.service.SessionOutbox;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+
+// GET /actuator/wssessions: every open WebSocket session, furthest behind first
+@Component
+@Endpoint(id = "wssessions")
+public class SessionLagEndpoint {
+
+    private final RecipientSessionRegistry sessionRegistry;
+
+    public SessionLagEndpoint(RecipientSessionRegistry sessionRegistry) {
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    @ReadOperation
+    public List<SessionLag> sessions() {
+        return sessionRegistry.outboxes().stream()
+                .map(outbox -> new SessionLag(outbox.getUserId(), outbox.lagMillis(), outbox.buffered(), outbox.delivered(), outbox.dropped()))
+                .sorted(Comparator.comparingLong(SessionLag::lagMillis).reversed())
+                .toList();
+    }
+
+    public record SessionLag(String userId, long lagMillis, int buffered, long delivered, long dropped) {
+    }
+}
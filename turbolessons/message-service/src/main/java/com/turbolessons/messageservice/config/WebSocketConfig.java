@@ -1,10 +1,10 @@
 package com.turbolessons.messageservice.config;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.turbolessons.messageservice.service.MsgCreatedEvent;
+import com.turbolessons.messageservice.service.EncodedMsg;
 import com.turbolessons.messageservice.service.MsgCreatedEventPublisher;
+import com.turbolessons.messageservice.service.RecipientSessionRegistry;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.util.MultiValueMap;
@@ -15,25 +15,21 @@ import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.server.support.WebSocketHandlerAdapter;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
-import java.util.function.Supplier;
+import java.util.Objects;
 
 @Log4j2
 @Configuration
 public
 class WebSocketConfig {
 
-    @Bean
-    Executor executor() {
-        return Executors.newSingleThreadExecutor();
-    }
-
     @Bean
     HandlerMapping handlerMapping(WebSocketHandler wsh) {
         SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping();
@@ -52,10 +48,34 @@ class WebSocketConfig {
     }
 
 
+    // One subscription to the created-message events for the whole service; each event goes to its recipient's sessions
+    // only. Encoding and queueing run on a worker of the shared parallel scheduler picked by recipient, so a recipient's
+    // messages stay in order and a slow one only holds up the recipients that share its worker
+    @Bean(destroyMethod = "dispose")
+    Disposable msgCreatedDispatcher(MsgCreatedEventPublisher eventPublisher, RecipientSessionRegistry sessionRegistry) {
+        int rails = Schedulers.DEFAULT_POOL_SIZE;
+        return eventPublisher.events()
+                .groupBy(evt -> Math.floorMod(Objects.hashCode(evt.getSource().getRecipient()), rails))
+                .flatMap(rail -> rail.publishOn(Schedulers.parallel())
+                        .doOnNext(evt -> sessionRegistry.deliver(evt.getSource())), rails)
+                .subscribe(null, e -> log.error("Message dispatch stopped", e));
+    }
+
+    // A session that stops reading is otherwise only checked against max-lag when its recipient gets another message
+    @Bean(destroyMethod = "dispose")
+    Disposable sessionLagSweeper(RecipientSessionRegistry sessionRegistry,
+                                 @Value("${messages.sessions.sweep-interval:5s}") Duration interval) {
+        return Flux.interval(interval)
+                .subscribe(tick -> {
+                    int disconnected = sessionRegistry.disconnectLagging();
+                    if (disconnected > 0) {
+                        log.info("Disconnected " + disconnected + " sessions past the maximum lag");
+                    }
+                }, e -> log.error("Session lag sweep stopped", e));
+    }
+
     @Bean
-    WebSocketHandler webSocketHandler(ObjectMapper objectMapper, MsgCreatedEventPublisher eventPublisher) {
-        Supplier<Flux<MsgCreatedEvent>> supplier = () -> Flux.create(eventPublisher).share();
-        Flux<MsgCreatedEvent> publish = Flux.defer(supplier).cache(1);
+    WebSocketHandler webSocketHandler(RecipientSessionRegistry sessionRegistry) {
         return session -> {
             String userId = parseUserId(session.getHandshakeInfo().getUri().toString());
             log.info("WebSocket session opened for user: " + userId);
@@ -67,16 +87,14 @@ class WebSocketConfig {
                 log.info("WebSocket session closed for user: " + userId);
             }).subscribe();
 
-
-            Flux<WebSocketMessage> messageFlux = publish.filter(evt -> evt.getSource().getRecipient().equals(userId)).map(evt -> {
-                try {
-                    return objectMapper.writeValueAsString(evt.getSource());
-                } catch (JsonProcessingException e) {
-                    throw new RuntimeException(e);
-                }
-            }).map(str -> {
-                log.info("sending " + str);
-                return session.textMessage(str);
+            // Without a userId nothing can be addressed to the session, but it stays open as before
+            Flux<EncodedMsg> messages = userId != null ? sessionRegistry.register(userId) : Flux.never();
+            // A session that falls too far behind is failed by its outbox, which closes the socket
+            messages = messages.doOnError(e -> log.warn("Closing WebSocket session for user " + userId + ": " + e.getMessage()));
+            // The JSON was encoded once for every session of the recipient; wrapping it doesn't copy
+            Flux<WebSocketMessage> messageFlux = messages.map(encoded -> {
+                log.debug("sending " + encoded.msg().getId() + " to " + userId);
+                return new WebSocketMessage(WebSocketMessage.Type.TEXT, session.bufferFactory().wrap(encoded.json()));
             });
             return session.send(messageFlux);
         };
@@ -1,6 +1,7 @@
 package com.turbolessons.messageservice.controller;
 
 import com.turbolessons.messageservice.model.Msg;
+import com.turbolessons.messageservice.model.MsgCursor;
 import com.turbolessons.messageservice.service.MsgService;
 import org.reactivestreams.Publisher;
 import org.springframework.http.MediaType;
@@ -15,6 +16,7 @@ import java.net.URI;
 @Component
 class MessageHandler {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     private final MsgService messageService;
 
@@ -29,12 +31,18 @@ class MessageHandler {
 
     Mono<ServerResponse> getBySender(ServerRequest r) {
         String sender = r.pathVariable("sender");
+        if (isPaged(r)) {
+            return pageResponse(r, sender, null);
+        }
         Flux<Msg> messages = this.messageService.getBySender(sender);
         return defaultReadResponse(messages);
     }
 
     Mono<ServerResponse> getByRecipient(ServerRequest r) {
         String recipient = r.pathVariable("recipient");
+        if (isPaged(r)) {
+            return pageResponse(r, null, recipient);
+        }
         Flux<Msg> messages = this.messageService.getByRecipient(recipient);
         return defaultReadResponse(messages);
     }
@@ -42,6 +50,9 @@ class MessageHandler {
     Mono<ServerResponse> getBySenderAndRecipient(ServerRequest r) {
         String sender = r.pathVariable("sender");
         String recipient = r.pathVariable("recipient");
+        if (isPaged(r)) {
+            return pageResponse(r, sender, recipient);
+        }
         Flux<Msg> messages = this.messageService.getBySenderAndRecipient(sender,recipient);
         return defaultReadResponse(messages);
     }
@@ -89,6 +100,33 @@ class MessageHandler {
                 );
     }
 
+    // Without before/limit the history endpoints return every match, as they always have
+    private static boolean isPaged(ServerRequest r) {
+        return r.queryParam("before").isPresent() || r.queryParam("limit").isPresent();
+    }
+
+    // One page, newest first; a full page carries the cursor for the next (older) one in X-Next-Cursor
+    private Mono<ServerResponse> pageResponse(ServerRequest r, String sender, String recipient) {
+        MsgCursor before;
+        Integer limit;
+        try {
+            before = r.queryParam("before").map(MsgCursor::decode).orElse(null);
+            limit = r.queryParam("limit").map(Integer::valueOf).orElse(null);
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().build();
+        }
+        int pageSize = MsgService.pageSize(limit);
+        return this.messageService.getPage(sender, recipient, before, pageSize)
+                .collectList()
+                .flatMap(messages -> {
+                    ServerResponse.BodyBuilder response = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+                    if (messages.size() == pageSize) {
+                        response.header(NEXT_CURSOR_HEADER, MsgCursor.of(messages.get(messages.size() - 1)).encode());
+                    }
+                    return response.bodyValue(messages);
+                });
+    }
+
     private static Mono<ServerResponse> defaultReadResponse(Publisher<Msg> messages) {
         return ServerResponse
                 .ok()
@@ -4,9 +4,16 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.time.Instant;
+
+// One index per history query, each ending in the (sentAt, _id) order its pages are read in
 @Document
+@CompoundIndex(name = "sender_recipient_sent", def = "{'sender': 1, 'recipient': 1, 'sentAt': -1, '_id': -1}")
+@CompoundIndex(name = "recipient_sent", def = "{'recipient': 1, 'sentAt': -1, '_id': -1}")
+@CompoundIndex(name = "sender_sent", def = "{'sender': 1, 'sentAt': -1, '_id': -1}")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -21,5 +28,13 @@ public class Msg {
 
     private String msg;
 
+    // Display form, as clients have always received it
     private String timestamp;
-}
\ No newline at end of file
+
+    // When the message was stored; what history is sorted and paged on
+    private Instant sentAt;
+
+    public Msg(String id, String sender, String recipient, String msg, String timestamp) {
+        this(id, sender, recipient, msg, timestamp, null);
+    }
+}
@@ -0,0 +1,37 @@
+package com.turbolessons.messageservice.model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in the newest-first {@code (sentAt, id)} ordering of the paged history endpoints. Clients only ever
+ * see the opaque {@link #encode() encoded} form handed back in the {@code X-Next-Cursor} header.
+ */
+public record MsgCursor(Instant sentAt, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    public static MsgCursor of(Msg msg) {
+        return new MsgCursor(msg.getSentAt(), msg.getId());
+    }
+
+    public String encode() {
+        String raw = sentAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MsgCursor decode(String encoded) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+            int split = raw.indexOf(SEPARATOR);
+            if (split < 0 || split == raw.length() - 1) {
+                throw new IllegalArgumentException("Malformed message cursor: " + encoded);
+            }
+            return new MsgCursor(Instant.parse(raw.substring(0, split)), raw.substring(split + 1));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed message cursor: " + encoded, e);
+        }
+    }
+}
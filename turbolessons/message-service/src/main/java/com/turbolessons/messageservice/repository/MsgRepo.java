@@ -4,7 +4,7 @@ import com.turbolessons.messageservice.model.Msg;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
-public interface MsgRepo extends ReactiveMongoRepository<Msg, String> {
+public interface MsgRepo extends ReactiveMongoRepository<Msg, String>, MsgRepoCustom {
     Flux<Msg> findBySender(String sender);
     Flux<Msg> findByRecipient(String recipient);
     Flux<Msg> findBySenderAndRecipient(String senderId, String recipientId);
@@ -0,0 +1,11 @@
+package com.turbolessons.messageservice.repository;
+
+import com.turbolessons.messageservice.model.Msg;
+import com.turbolessons.messageservice.model.MsgCursor;
+import reactor.core.publisher.Flux;
+
+public interface MsgRepoCustom {
+
+    // Newest first, strictly older than before (all if null); a null sender or recipient matches anyone
+    Flux<Msg> findPage(String sender, String recipient, MsgCursor before, int limit);
+}
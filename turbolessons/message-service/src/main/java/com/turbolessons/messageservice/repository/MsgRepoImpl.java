@@ -0,0 +1,42 @@
+package com.turbolessons.messageservice.repository;
+
+import com.turbolessons.messageservice.model.Msg;
+import com.turbolessons.messageservice.model.MsgCursor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+/**
+ * Keyset pages over the compound indexes declared on {@link Msg}: equality on sender and/or recipient, then a range
+ * on {@code (sentAt, _id)} walked in index order, so a page costs the same however far back it is.
+ */
+class MsgRepoImpl implements MsgRepoCustom {
+
+    private final ReactiveMongoTemplate template;
+
+    MsgRepoImpl(ReactiveMongoTemplate template) {
+        this.template = template;
+    }
+
+    @Override
+    public Flux<Msg> findPage(String sender, String recipient, MsgCursor before, int limit) {
+        Criteria criteria = new Criteria();
+        if (sender != null) {
+            criteria = criteria.and("sender").is(sender);
+        }
+        if (recipient != null) {
+            criteria = criteria.and("recipient").is(recipient);
+        }
+        if (before != null) {
+            // The id is mapped to an ObjectId like the stored _id, so ties on sentAt break the same way as the sort
+            criteria = criteria.orOperator(Criteria.where("sentAt").lt(before.sentAt()),
+                                           Criteria.where("sentAt").is(before.sentAt()).and("id").lt(before.id()));
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Direction.DESC, "sentAt", "id"))
+                .limit(limit);
+        return template.find(query, Msg.class);
+    }
+}
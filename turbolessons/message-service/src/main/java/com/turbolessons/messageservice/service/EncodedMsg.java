@@ -0,0 +1,11 @@
+package com.turbolessons.messageservice.service;
+
+import com.turbolessons.messageservice.model.Msg;
+
+/**
+ * A message together with its JSON, encoded once by {@link RecipientSessionRegistry#deliver} and shared by every
+ * session it is delivered to. Each socket wraps the same bytes without copying them; nothing may write to
+ * {@code json}.
+ */
+public record EncodedMsg(Msg msg, byte[] json) {
+}
@@ -1,48 +1,106 @@
 package com.turbolessons.messageservice.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationListener;
 import org.springframework.stereotype.Component;
-import org.springframework.util.ReflectionUtils;
-import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.function.Consumer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Multicasts created messages to whoever subscribes to {@link #events()}. Publishing only queues the event and
+ * returns, so the request that saved the message never waits on another request's publish or on the subscribers. The
+ * queue is lock-free for any number of publishing threads; one drain at a time empties it into the subscribers on the
+ * shared parallel scheduler, and is only scheduled when the queue goes from idle to busy. The drain only hands events
+ * over: subscribers move the fan-out to workers of their own, as the WebSocket dispatcher does per recipient.
+ * <p>
+ * The queue holds {@code messages.events.buffer-size} events waiting for the drain. When it is full a new
+ * event is dropped and counted rather than blocking the request that saved it; the message itself is already stored,
+ * so a client that missed it picks it up from the REST endpoints. Past the queue, the sink holds as many again for the
+ * slowest subscriber; an event it has no room for is dropped and counted the same way.
+ */
 @Slf4j
 @Component
-public class MsgCreatedEventPublisher implements
-        ApplicationListener<MsgCreatedEvent>,
-        Consumer<FluxSink<MsgCreatedEvent>> {
+public class MsgCreatedEventPublisher implements ApplicationListener<MsgCreatedEvent> {
+
+    private final Queue<MsgCreatedEvent> queue = Queues.<MsgCreatedEvent>unboundedMultiproducer().get();
+    // The queue itself is unbounded; publishers claim a slot here first
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int bufferSize;
+    private final AtomicInteger wip = new AtomicInteger();
+    // Only the drain loop emits, one event at a time, so emissions never race
+    private final Sinks.Many<MsgCreatedEvent> sink;
+    private final Executor dispatcher;
+    private final Counter published;
+    private final Counter dropped;
 
-    private final Executor executor;
-    private final BlockingQueue<MsgCreatedEvent> queue =
-            new LinkedBlockingQueue<>();
+    @Autowired
+    public MsgCreatedEventPublisher(MeterRegistry meterRegistry,
+                                    @Value("${messages.events.buffer-size:1024}") int bufferSize) {
+        this(meterRegistry, bufferSize, task -> Schedulers.parallel().schedule(task));
+    }
 
-    protected MsgCreatedEventPublisher(Executor executor) {
-        this.executor = executor;
+    MsgCreatedEventPublisher(MeterRegistry meterRegistry, int bufferSize, Executor dispatcher) {
+        this.bufferSize = bufferSize;
+        this.sink = Sinks.many().multicast().onBackpressureBuffer(bufferSize, false);
+        this.dispatcher = dispatcher;
+        this.published = Counter.builder("messages.events.published")
+                .description("Created-message events handed to the WebSocket pipeline")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("messages.events.dropped")
+                .description("Created-message events dropped because the pipeline queue or the subscribers' buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("messages.events.queued", queued, AtomicInteger::get)
+                .description("Created-message events waiting for the drain")
+                .register(meterRegistry);
+        Gauge.builder("messages.events.subscribers", sink, Sinks.Many::currentSubscriberCount)
+                .register(meterRegistry);
     }
 
+    public Flux<MsgCreatedEvent> events() {
+        return sink.asFlux();
+    }
 
     @Override
     public void onApplicationEvent(MsgCreatedEvent event) {
-        log.info("Received event: " + event);
-        this.queue.offer(event);
+        log.debug("Received event: " + event);
+        if (queued.incrementAndGet() > bufferSize) {
+            queued.decrementAndGet();
+            dropped.increment();
+            log.warn("Dropped event " + event + ": queue full");
+        } else {
+            queue.offer(event);
+            published.increment();
+        }
+        if (wip.getAndIncrement() == 0) {
+            dispatcher.execute(this::drain);
+        }
     }
 
-    @Override
-    public void accept(FluxSink<MsgCreatedEvent> sink) {
-        this.executor.execute(() -> {
-            while (true)
-                try {
-                    MsgCreatedEvent event = queue.take();
-                    log.info("Consuming event: " + event);
-                    sink.next(event);
-                }
-                catch (InterruptedException e) {
-                    ReflectionUtils.rethrowRuntimeException(e);
+    // Runs until no publisher has queued anything since it last looked; only one drain runs at a time
+    private void drain() {
+        int missed = 1;
+        do {
+            MsgCreatedEvent event;
+            while ((event = queue.poll()) != null) {
+                queued.decrementAndGet();
+                Sinks.EmitResult result = sink.tryEmitNext(event);
+                if (result.isFailure()) {
+                    dropped.increment();
+                    log.warn("Dropped event " + event + ": " + result);
                 }
-        });
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
     }
-}
\ No newline at end of file
+}
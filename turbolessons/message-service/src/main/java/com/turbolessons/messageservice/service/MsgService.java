@@ -1,6 +1,7 @@
 package com.turbolessons.messageservice.service;
 
 import com.turbolessons.messageservice.model.Msg;
+import com.turbolessons.messageservice.model.MsgCursor;
 import com.turbolessons.messageservice.repository.MsgRepo;
 import lombok.extern.log4j.Log4j2;
 import org.reactivestreams.Publisher;
@@ -16,6 +17,11 @@ import java.util.Date;
 @Service
 public class MsgService {
 
+    // Format of Msg.timestamp, in the server's zone
+    public static final String TIMESTAMP_PATTERN = "yyyy-MM-dd HH:mm:ss.SSS";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+
     private final ApplicationEventPublisher publisher;
     private final MsgRepo msgRepository;
 
@@ -48,9 +54,19 @@ public class MsgService {
                 .flatMap(p -> this.msgRepository.deleteById(p.getId()).thenReturn(p));
     }
 
+    // A page of history, newest first; sender and/or recipient may be null
+    public Flux<Msg> getPage(String sender, String recipient, MsgCursor before, Integer limit) {
+        return this.msgRepository.findPage(sender, recipient, before, pageSize(limit));
+    }
+
+    public static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
     public Mono<Msg> create(String sender,String recipient, String msg) {
-        final String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date());
-        return this.msgRepository.save(new Msg(null, sender,recipient,msg,time))
+        final Date sentAt = new Date();
+        final String time = new SimpleDateFormat(TIMESTAMP_PATTERN).format(sentAt);
+        return this.msgRepository.save(new Msg(null, sender,recipient,msg,time,sentAt.toInstant()))
                 .doOnSuccess(message -> this.publisher.publishEvent(new MsgCreatedEvent(message)));
     }
 }
\ No newline at end of file
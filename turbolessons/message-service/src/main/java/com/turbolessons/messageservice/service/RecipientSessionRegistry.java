@@ -0,0 +1,143 @@
+package com.turbolessons.messageservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.turbolessons.messageservice.model.Msg;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Open WebSocket sessions keyed by the user they belong to, so a new message is handed only to its recipient's
+ * sessions instead of being tested against every open socket. A user can hold several sessions at once (one per tab);
+ * each gets its own {@link SessionOutbox}, which is dropped when that session's outbound stream ends. A message is
+ * serialised once, and only if its recipient is connected, however many sessions it goes to.
+ * <p>
+ * Outboxes hold {@code messages.sessions.buffer-size} messages and apply {@code messages.sessions.overflow} when
+ * full; {@code messages.sessions.max-lag} is how far behind a session may fall under {@link SessionOverflow#DISCONNECT}.
+ * That is checked when a message arrives and, for sessions whose recipient has gone quiet, by
+ * {@link #disconnectLagging()} every {@code messages.sessions.sweep-interval}.
+ */
+@Slf4j
+@Component
+public class RecipientSessionRegistry {
+
+    private final Map<String, Set<SessionOutbox>> sessions = new ConcurrentHashMap<>();
+    private final ObjectWriter writer;
+    private final int bufferSize;
+    private final SessionOverflow overflow;
+    private final long maxLagMillis;
+    private final LongSupplier nanoTime;
+    private final SessionMetrics metrics;
+
+    @Autowired
+    public RecipientSessionRegistry(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                    @Value("${messages.sessions.buffer-size:256}") int bufferSize,
+                                    @Value("${messages.sessions.overflow:DROP_OLDEST}") SessionOverflow overflow,
+                                    @Value("${messages.sessions.max-lag:30s}") Duration maxLag) {
+        this(objectMapper, meterRegistry, bufferSize, overflow, maxLag, System::nanoTime);
+    }
+
+    RecipientSessionRegistry(ObjectMapper objectMapper, MeterRegistry meterRegistry, int bufferSize, SessionOverflow overflow,
+                             Duration maxLag, LongSupplier nanoTime) {
+        this.writer = objectMapper.writerFor(Msg.class);
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        this.maxLagMillis = maxLag.toMillis();
+        this.nanoTime = nanoTime;
+        this.metrics = new SessionMetrics(meterRegistry);
+        Gauge.builder("messages.sessions", this, RecipientSessionRegistry::sessionCount)
+                .description("Open WebSocket sessions")
+                .register(meterRegistry);
+        Gauge.builder("messages.sessions.buffered", this, registry -> registry.outboxes().stream().mapToInt(SessionOutbox::buffered).sum())
+                .description("Messages waiting in session outboxes")
+                .register(meterRegistry);
+        TimeGauge.builder("messages.sessions.lag.max", this, TimeUnit.MILLISECONDS,
+                          registry -> registry.outboxes().stream().mapToLong(SessionOutbox::lagMillis).max().orElse(0))
+                .description("Wait of the oldest unsent message across all sessions")
+                .register(meterRegistry);
+    }
+
+    // Messages for userId until the subscriber cancels or the session closes
+    public Flux<EncodedMsg> register(String userId) {
+        SessionOutbox outbox = new SessionOutbox(userId, bufferSize, overflow, maxLagMillis, nanoTime, metrics);
+        // compute/computeIfPresent run atomically per key, so a closing tab can't drop the set out from under a new one
+        sessions.compute(userId, (user, outboxes) -> {
+            Set<SessionOutbox> registered = outboxes != null ? outboxes : ConcurrentHashMap.newKeySet();
+            registered.add(outbox);
+            return registered;
+        });
+        return outbox.messages().doFinally(signal -> unregister(userId, outbox));
+    }
+
+    private void unregister(String userId, SessionOutbox outbox) {
+        sessions.computeIfPresent(userId, (user, outboxes) -> {
+            outboxes.remove(outbox);
+            return outboxes.isEmpty() ? null : outboxes;
+        });
+    }
+
+    // Returns the number of sessions the message was queued for
+    public int deliver(Msg msg) {
+        Set<SessionOutbox> outboxes = msg.getRecipient() != null ? sessions.get(msg.getRecipient()) : null;
+        if (outboxes == null) {
+            return 0;
+        }
+        EncodedMsg encoded;
+        try {
+            encoded = new EncodedMsg(msg, writer.writeValueAsBytes(msg));
+        } catch (JsonProcessingException e) {
+            log.error("Could not serialise message " + msg.getId(), e);
+            return 0;
+        }
+        int delivered = 0;
+        for (SessionOutbox outbox : outboxes) {
+            if (outbox.offer(encoded)) {
+                delivered++;
+            } else {
+                log.debug("Refused message for " + msg.getRecipient() + ": session disconnected");
+            }
+        }
+        return delivered;
+    }
+
+    // Disconnects the sessions that have fallen past the maximum lag without a new message to notice; returns how many
+    public int disconnectLagging() {
+        if (overflow != SessionOverflow.DISCONNECT) {
+            return 0;
+        }
+        int disconnected = 0;
+        for (SessionOutbox outbox : outboxes()) {
+            if (outbox.disconnectIfLagging()) {
+                disconnected++;
+            }
+        }
+        return disconnected;
+    }
+
+    public List<SessionOutbox> outboxes() {
+        return sessions.values().stream().flatMap(Set::stream).toList();
+    }
+
+    public int sessionCount() {
+        return sessions.values().stream().mapToInt(Set::size).sum();
+    }
+
+    public int recipientCount() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,46 @@
+package com.turbolessons.messageservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Node-wide meters shared by every SessionOutbox; the per-session view is the wssessions actuator endpoint
+final class SessionMetrics {
+
+    private final Timer lag;
+    private final Map<SessionOverflow, Counter> dropped = new EnumMap<>(SessionOverflow.class);
+    private final Counter disconnected;
+
+    SessionMetrics(MeterRegistry meterRegistry) {
+        this.lag = Timer.builder("messages.sessions.lag")
+                .description("Time a message waited in a session outbox before the socket took it")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        for (SessionOverflow reason : new SessionOverflow[]{SessionOverflow.DROP_OLDEST, SessionOverflow.COALESCE}) {
+            dropped.put(reason, Counter.builder("messages.sessions.dropped")
+                    .description("Messages discarded from a full session outbox")
+                    .tag("reason", reason.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        this.disconnected = Counter.builder("messages.sessions.disconnected")
+                .description("Sessions closed for falling too far behind")
+                .register(meterRegistry);
+    }
+
+    void delivered(long lagNanos) {
+        lag.record(lagNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void dropped(SessionOverflow reason) {
+        dropped.get(reason).increment();
+    }
+
+    void disconnected() {
+        disconnected.increment();
+    }
+}
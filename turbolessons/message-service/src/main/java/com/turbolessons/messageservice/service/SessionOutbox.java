@@ -0,0 +1,179 @@
+package com.turbolessons.messageservice.service;
+
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * The bounded queue of messages waiting to be written to one WebSocket session. Messages are only handed over as the
+ * socket requests them, so a slow client backs up its own outbox and nobody else's; once the outbox is full its
+ * {@link SessionOverflow} decides what gives. Under {@link SessionOverflow#DISCONNECT} the session is also closed
+ * when its oldest unsent message has waited longer than the configured maximum lag, whether the next message or the
+ * registry's periodic sweep notices first.
+ */
+public final class SessionOutbox {
+
+    private final String userId;
+    private final int capacity;
+    private final SessionOverflow overflow;
+    private final long maxLagNanos;
+    private final LongSupplier nanoTime;
+    private final SessionMetrics metrics;
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final Flux<EncodedMsg> messages;
+
+    private volatile FluxSink<EncodedMsg> sink;
+    private volatile boolean disconnected;
+    private long delivered;
+    private long dropped;
+
+    private record Pending(EncodedMsg msg, long queuedAt) {
+    }
+
+    SessionOutbox(String userId, int capacity, SessionOverflow overflow, long maxLagMillis, LongSupplier nanoTime,
+                  SessionMetrics metrics) {
+        this.userId = userId;
+        this.capacity = capacity;
+        this.overflow = overflow;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        this.nanoTime = nanoTime;
+        this.metrics = metrics;
+        this.messages = Flux.create(s -> {
+            sink = s;
+            s.onRequest(n -> drain());
+            drain();
+        });
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    // The one subscriber is the session's outbound stream
+    Flux<EncodedMsg> messages() {
+        return messages;
+    }
+
+    // False if the message was refused because the session is, or has just been, disconnected
+    boolean offer(EncodedMsg msg) {
+        long now = nanoTime.getAsLong();
+        synchronized (this) {
+            if (disconnected) {
+                return false;
+            }
+            if (overflow == SessionOverflow.DISCONNECT && (pending.size() >= capacity || lag(now) > maxLagNanos)) {
+                disconnect();
+            } else {
+                if (pending.size() >= capacity) {
+                    if (overflow == SessionOverflow.COALESCE && removeFromSender(msg.msg().getSender())) {
+                        metrics.dropped(SessionOverflow.COALESCE);
+                    } else {
+                        pending.removeFirst();
+                        metrics.dropped(SessionOverflow.DROP_OLDEST);
+                    }
+                    dropped++;
+                }
+                pending.addLast(new Pending(msg, now));
+            }
+        }
+        drain();
+        return !disconnected;
+    }
+
+    // Closes the session if it has fallen past the maximum lag; true if it did. For recipients nobody is writing to,
+    // whose outboxes offer never looks at again
+    boolean disconnectIfLagging() {
+        long now = nanoTime.getAsLong();
+        synchronized (this) {
+            if (overflow != SessionOverflow.DISCONNECT || disconnected || lag(now) <= maxLagNanos) {
+                return false;
+            }
+            disconnect();
+        }
+        drain();
+        return true;
+    }
+
+    // Caller holds the lock; the next drain fails the session's stream
+    private void disconnect() {
+        disconnected = true;
+        pending.clear();
+        metrics.disconnected();
+    }
+
+    // A message without a sender has nothing to coalesce with, so it falls back to dropping the oldest
+    private boolean removeFromSender(String sender) {
+        if (sender == null) {
+            return false;
+        }
+        for (Iterator<Pending> it = pending.iterator(); it.hasNext(); ) {
+            if (sender.equals(it.next().msg().msg().getSender())) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Emits while the socket has outstanding demand; whichever thread gets here first does the work for the others
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            FluxSink<EncodedMsg> s = sink;
+            if (s != null && !s.isCancelled()) {
+                if (disconnected) {
+                    s.error(Exceptions.failWithOverflow("Session for " + userId + " fell too far behind"));
+                } else {
+                    while (s.requestedFromDownstream() > 0) {
+                        Pending next;
+                        synchronized (this) {
+                            next = pending.pollFirst();
+                            if (next != null) {
+                                delivered++;
+                            }
+                        }
+                        if (next == null) {
+                            break;
+                        }
+                        metrics.delivered(nanoTime.getAsLong() - next.queuedAt());
+                        s.next(next.msg());
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private long lag(long now) {
+        Pending oldest = pending.peekFirst();
+        return oldest != null ? now - oldest.queuedAt() : 0;
+    }
+
+    // How long the oldest unsent message has been waiting, in milliseconds
+    public synchronized long lagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lag(nanoTime.getAsLong()));
+    }
+
+    public synchronized int buffered() {
+        return pending.size();
+    }
+
+    public synchronized long delivered() {
+        return delivered;
+    }
+
+    public synchronized long dropped() {
+        return dropped;
+    }
+}
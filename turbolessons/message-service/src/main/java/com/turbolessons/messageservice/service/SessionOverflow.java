@@ -0,0 +1,11 @@
+package com.turbolessons.messageservice.service;
+
+// What a WebSocket session's outbox does with a new message once it is full (messages.sessions.overflow)
+public enum SessionOverflow {
+    // Discard the oldest unsent message to make room
+    DROP_OLDEST,
+    // Replace an unsent message from the same sender, then fall back to DROP_OLDEST
+    COALESCE,
+    // Close the session; it reconnects and catches up over REST
+    DISCONNECT
+}
@@ -0,0 +1,105 @@
+package com.turbolessons.messageservice.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.turbolessons.messageservice.model.Msg;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * In-memory microbenchmark for encoding outbound WebSocket messages: {@code -Dbenchmark.batch} messages (default
+ * 10000) each going to {@code -Dbenchmark.tabs} sessions (default 4), {@code -Dbenchmark.iterations} samples (default
+ * 50). Compares a JSON string per session, wrapped the way {@code WebSocketSession.textMessage} does, with encoding
+ * once and wrapping the shared bytes per session. Reports time per batch and bytes allocated per message, read from
+ * the JVM's per-thread allocation counter. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class SerializeOnceBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectWriter writer = objectMapper.writerFor(Msg.class);
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private long sink;
+
+    @Test
+    void compareEncodeOncePerMessageWithOncePerSession() throws JsonProcessingException {
+        int batch = Integer.getInteger("benchmark.batch", 10_000);
+        int tabs = Integer.getInteger("benchmark.tabs", 4);
+        int iterations = Integer.getInteger("benchmark.iterations", 50);
+        Msg[] messages = new Msg[batch];
+        for (int i = 0; i < batch; i++) {
+            messages[i] = new Msg("64f1c0" + i, "bholiday", "tmiller", "See you at the lesson on Thursday, bring the etude #" + i,
+                                  "2033-08-17T15:00:00Z");
+        }
+        Assertions.assertEquals(objectMapper.writeValueAsString(messages[0]),
+                                new String(writer.writeValueAsBytes(messages[0]), StandardCharsets.UTF_8));
+
+        Result perSession = measure(iterations, batch, () -> {
+            for (Msg msg : messages) {
+                for (int tab = 0; tab < tabs; tab++) {
+                    try {
+                        String json = objectMapper.writeValueAsString(msg);
+                        sink += bufferFactory.wrap(json.getBytes(StandardCharsets.UTF_8)).readableByteCount();
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        });
+        Result once = measure(iterations, batch, () -> {
+            for (Msg msg : messages) {
+                try {
+                    byte[] json = writer.writeValueAsBytes(msg);
+                    for (int tab = 0; tab < tabs; tab++) {
+                        sink += bufferFactory.wrap(json).readableByteCount();
+                    }
+                } catch (JsonProcessingException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        Assertions.assertTrue(sink > 0);
+
+        System.out.printf("encode, %d sessions per message: per session %s%n", tabs, perSession);
+        System.out.printf("encode, %d sessions per message: once        %s%n", tabs, once);
+    }
+
+    private static Result measure(int iterations, int batch, Runnable action) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < 5; i++) {
+            action.run();
+        }
+        long[] samples = new long[iterations];
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            action.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        Arrays.sort(samples);
+        return new Result(samples, (double) allocated / ((long) iterations * batch), batch);
+    }
+
+    private record Result(long[] sorted, double bytesPerMessage, int batch) {
+
+        @Override
+        public String toString() {
+            double meanMillis = Arrays.stream(sorted).average().orElse(0) / 1_000_000.0;
+            return String.format(Locale.ROOT, "mean %8.3f ms  p99 %8.3f ms per %d messages  %,10.0f msg/s  %,8.0f B/msg",
+                                 meanMillis, sorted[Math.max(0, (int) Math.ceil(0.99 * sorted.length) - 1)] / 1_000_000.0,
+                                 batch, batch / (meanMillis / 1000.0), bytesPerMessage);
+        }
+    }
+}
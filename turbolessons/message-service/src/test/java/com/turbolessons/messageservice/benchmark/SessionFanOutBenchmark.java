@@ -0,0 +1,102 @@
+package com.turbolessons.messageservice.benchmark;
+
+import com.turbolessons.messageservice.model.Msg;
+import com.turbolessons.messageservice.service.RecipientSessionRegistry;
+import com.turbolessons.messageservice.service.SessionOverflow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory microbenchmark for WebSocket fan-out: {@code -Dbenchmark.users} users (default 5000) with
+ * {@code -Dbenchmark.tabs} sessions each (default 2), every session a plain subscriber standing in for a socket. Each
+ * sample delivers {@code -Dbenchmark.batch} messages (default 1000) to random users, {@code -Dbenchmark.iterations}
+ * samples (default 50), once through {@link RecipientSessionRegistry} and once through the shared stream with a
+ * recipient filter per session that it replaced. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class SessionFanOutBenchmark {
+
+    @Test
+    void compareRegistryWithFilterPerSession() {
+        int users = Integer.getInteger("benchmark.users", 5000);
+        int tabs = Integer.getInteger("benchmark.tabs", 2);
+        int batch = Integer.getInteger("benchmark.batch", 1000);
+        int iterations = Integer.getInteger("benchmark.iterations", 50);
+        Msg[] messages = new Msg[batch];
+        for (int i = 0; i < batch; i++) {
+            messages[i] = new Msg(String.valueOf(i), "sender", "user" + (i * 7919 % users), "Hello", null);
+        }
+
+        AtomicLong received = new AtomicLong();
+        List<Disposable> sessions = new ArrayList<>();
+
+        RecipientSessionRegistry registry = new RecipientSessionRegistry(Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry(),
+                                                                         256, SessionOverflow.DROP_OLDEST, Duration.ofSeconds(30));
+        for (int user = 0; user < users; user++) {
+            for (int tab = 0; tab < tabs; tab++) {
+                sessions.add(registry.register("user" + user).subscribe(msg -> received.incrementAndGet()));
+            }
+        }
+        long[] registrySamples = time(iterations, () -> {
+            for (Msg msg : messages) {
+                registry.deliver(msg);
+            }
+        });
+        Assertions.assertEquals((long) (iterations + 5) * batch * tabs, received.getAndSet(0));
+
+        // The previous shape: one shared stream, every session filtering every message on recipient
+        Sinks.Many<Msg> shared = Sinks.many().multicast().directBestEffort();
+        for (int user = 0; user < users; user++) {
+            String userId = "user" + user;
+            for (int tab = 0; tab < tabs; tab++) {
+                sessions.add(shared.asFlux().filter(msg -> msg.getRecipient().equals(userId)).subscribe(msg -> received.incrementAndGet()));
+            }
+        }
+        long[] filterSamples = time(Math.max(3, iterations / 10), () -> {
+            for (Msg msg : messages) {
+                shared.tryEmitNext(msg);
+            }
+        });
+        Assertions.assertEquals((long) (Math.max(3, iterations / 10) + 5) * batch * tabs, received.get());
+
+        sessions.forEach(Disposable::dispose);
+        Assertions.assertEquals(0, registry.sessionCount());
+
+        System.out.printf("fan-out, %d sessions: registry %s per %d messages%n", users * tabs, summary(registrySamples), batch);
+        System.out.printf("fan-out, %d sessions: filter   %s per %d messages%n", users * tabs, summary(filterSamples), batch);
+    }
+
+    // Five warm-up runs, then one nanosecond sample per iteration
+    private static long[] time(int iterations, Runnable action) {
+        for (int i = 0; i < 5; i++) {
+            action.run();
+        }
+        long[] samples = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            action.run();
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static String summary(long[] sorted) {
+        return String.format(Locale.ROOT, "mean %8.3f ms  p50 %8.3f ms  p99 %8.3f ms",
+                             Arrays.stream(sorted).average().orElse(0) / 1_000_000.0,
+                             sorted[Math.max(0, (int) Math.ceil(0.50 * sorted.length) - 1)] / 1_000_000.0,
+                             sorted[Math.max(0, (int) Math.ceil(0.99 * sorted.length) - 1)] / 1_000_000.0);
+    }
+}
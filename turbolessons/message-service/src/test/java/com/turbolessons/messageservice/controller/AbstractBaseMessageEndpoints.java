@@ -1,6 +1,7 @@
 package com.turbolessons.messageservice.controller;
 
 import com.turbolessons.messageservice.model.Msg;
+import com.turbolessons.messageservice.model.MsgCursor;
 import com.turbolessons.messageservice.repository.MsgRepo;
 import lombok.extern.log4j.Log4j2;
 import org.junit.jupiter.api.Test;
@@ -17,6 +18,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.util.Date;
 import java.util.UUID;
 
@@ -171,6 +173,42 @@ public abstract class AbstractBaseMessageEndpoints {
                 .jsonPath("$.[1].timestamp").isEqualTo(time);
     }
 
+    @Test
+    @WithMockUser
+    public void testGetConversationPage() {
+        String sender = "fmartin";
+        String recipient = "cjacobs";
+        Instant sentAt = Instant.parse("2033-08-17T15:00:00Z");
+        Msg newest = new Msg("64f1c0aa0000000000000002", sender, recipient, "second", time, sentAt.plusSeconds(60));
+        Msg older = new Msg("64f1c0aa0000000000000001", sender, recipient, "first", time, sentAt);
+        MsgCursor cursor = MsgCursor.of(older);
+        Mockito.when(this.repository.findPage(sender, recipient, null, 2)).thenReturn(Flux.just(newest, older));
+        Mockito.when(this.repository.findPage(sender, recipient, cursor, 2)).thenReturn(Flux.empty());
+
+        this.client.mutateWith(mockJwt()).get()
+                .uri("/api/messages/" + sender + "/to/" + recipient + "?limit=2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(MessageHandler.NEXT_CURSOR_HEADER, cursor.encode())
+                .expectBody()
+                .jsonPath("$.[0].msg").isEqualTo("second")
+                .jsonPath("$.[1].sentAt").isEqualTo("2033-08-17T15:00:00Z");
+
+        this.client.mutateWith(mockJwt()).get()
+                .uri("/api/messages/" + sender + "/to/" + recipient + "?limit=2&before=" + cursor.encode())
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(MessageHandler.NEXT_CURSOR_HEADER)
+                .expectBody().json("[]");
+
+        this.client.mutateWith(mockJwt()).get()
+                .uri("/api/messages/recipient/" + recipient + "?before=not-a-cursor")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     @WithMockUser
     public void testSendAll() {
@@ -0,0 +1,139 @@
+package com.turbolessons.messageservice.service;
+
+import com.turbolessons.messageservice.model.Msg;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class MsgCreatedEventPublisherTest {
+
+    private MeterRegistry meterRegistry;
+    private MsgCreatedEventPublisher publisher;
+    // Stands in for the shared scheduler: drains run when the test says so
+    private final List<Runnable> dispatches = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        publisher = new MsgCreatedEventPublisher(meterRegistry, 8, dispatches::add);
+    }
+
+    private void dispatch() {
+        List<Runnable> pending = new ArrayList<>(dispatches);
+        dispatches.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    private static MsgCreatedEvent event(String id) {
+        return new MsgCreatedEvent(new Msg(id, "bholiday", "tmiller", "Hello", null));
+    }
+
+    @Test
+    public void multicastsToEverySubscriber() {
+        StepVerifier.create(publisher.events())
+                .then(() -> StepVerifier.create(publisher.events())
+                        .then(() -> {
+                            publisher.onApplicationEvent(event("1"));
+                            dispatch();
+                        })
+                        .expectNextMatches(evt -> "1".equals(evt.getSource().getId()))
+                        .thenCancel()
+                        .verify(Duration.ofSeconds(5)))
+                .expectNextMatches(evt -> "1".equals(evt.getSource().getId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        Assertions.assertEquals(1.0, meterRegistry.counter("messages.events.published").count());
+    }
+
+    // Request threads publish at once; every event arrives, each exactly once
+    @Test
+    public void queuesFromManyPublishingThreads() throws Exception {
+        publisher = new MsgCreatedEventPublisher(meterRegistry, 4000, task -> Schedulers.parallel().schedule(task));
+        Set<String> received = ConcurrentHashMap.newKeySet();
+        Disposable subscription = publisher.events().subscribe(evt -> received.add(evt.getSource().getId()));
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        try {
+            for (int thread = 0; thread < 4; thread++) {
+                int first = thread * 1000;
+                requests.execute(() -> {
+                    for (int i = first; i < first + 1000; i++) {
+                        publisher.onApplicationEvent(event(String.valueOf(i)));
+                    }
+                });
+            }
+            requests.shutdown();
+            Assertions.assertTrue(requests.awaitTermination(5, TimeUnit.SECONDS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (received.size() < 4000 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            subscription.dispose();
+        }
+        Assertions.assertEquals(4000, received.size());
+        Assertions.assertEquals(4000.0, meterRegistry.counter("messages.events.published").count());
+        Assertions.assertEquals(0.0, meterRegistry.counter("messages.events.dropped").count());
+    }
+
+    // Publishing never waits: while the drain is behind, events queue up to the bound and the rest are counted
+    @Test
+    public void dropsAndCountsWhenTheDrainFallsBehind() {
+        StepVerifier.create(publisher.events())
+                .then(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        publisher.onApplicationEvent(event(String.valueOf(i)));
+                    }
+                    Assertions.assertEquals(1, dispatches.size());
+                    Assertions.assertEquals(8.0, meterRegistry.get("messages.events.queued").gauge().value());
+                    Assertions.assertEquals(8.0, meterRegistry.counter("messages.events.published").count());
+                    Assertions.assertEquals(2.0, meterRegistry.counter("messages.events.dropped").count());
+                    dispatch();
+                })
+                .expectNextMatches(evt -> "0".equals(evt.getSource().getId()))
+                .expectNextCount(6)
+                .expectNextMatches(evt -> "7".equals(evt.getSource().getId()))
+                .then(() -> {
+                    Assertions.assertEquals(0.0, meterRegistry.get("messages.events.queued").gauge().value());
+                    publisher.onApplicationEvent(event("10"));
+                    Assertions.assertEquals(1, dispatches.size());
+                    dispatch();
+                })
+                .expectNextMatches(evt -> "10".equals(evt.getSource().getId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    // A subscriber that stops requesting gets a buffer of its own the size of the queue, then misses what does not fit
+    @Test
+    public void dropsAndCountsWhatASlowSubscriberHasNoRoomFor() {
+        StepVerifier.create(publisher.events(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        publisher.onApplicationEvent(event(String.valueOf(i)));
+                        dispatch();
+                    }
+                    Assertions.assertEquals(10.0, meterRegistry.counter("messages.events.published").count());
+                    Assertions.assertEquals(2.0, meterRegistry.counter("messages.events.dropped").count());
+                })
+                .thenRequest(10)
+                .expectNextMatches(evt -> "0".equals(evt.getSource().getId()))
+                .expectNextCount(6)
+                .expectNextMatches(evt -> "7".equals(evt.getSource().getId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+}
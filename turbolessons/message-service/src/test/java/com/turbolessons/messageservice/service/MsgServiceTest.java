@@ -3,6 +3,7 @@ package com.turbolessons.messageservice.service;
 import com.turbolessons.messageservice.model.Msg;
 import com.turbolessons.messageservice.repository.MsgRepo;
 import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -115,6 +116,18 @@ public class MsgServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    public void testGetPage() {
+        Mockito.when(this.repository.findPage("bholiday", null, null, MsgService.MAX_PAGE_SIZE))
+                .thenReturn(Flux.just(new Msg("1", "bholiday", "tmiller", "test", "", null)));
+
+        StepVerifier.create(service.getPage("bholiday", null, null, 10_000))
+                .expectNextCount(1)
+                .verifyComplete();
+        Assertions.assertEquals(MsgService.DEFAULT_PAGE_SIZE, MsgService.pageSize(null));
+        Assertions.assertEquals(1, MsgService.pageSize(0));
+    }
+
     @Test
     public void save() {
         Mono<Msg> msgMono = this.service.create("gharold","hthompson", "Hello");
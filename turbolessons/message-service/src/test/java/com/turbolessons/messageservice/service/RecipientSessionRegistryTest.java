@@ -0,0 +1,179 @@
+package com.turbolessons.messageservice.service;
+
+import com.turbolessons.messageservice.model.Msg;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RecipientSessionRegistryTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private MeterRegistry meterRegistry;
+    private RecipientSessionRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        registry = registry(SessionOverflow.DROP_OLDEST);
+    }
+
+    private RecipientSessionRegistry registry(SessionOverflow overflow) {
+        return new RecipientSessionRegistry(Jackson2ObjectMapperBuilder.json().build(), meterRegistry, 3, overflow,
+                                            Duration.ofSeconds(30), now::get);
+    }
+
+    private static Msg msg(String id, String sender) {
+        return new Msg(id, sender, "tmiller", "Hello", null);
+    }
+
+    @Test
+    public void deliversOnlyToTheRecipientsSessions() {
+        StepVerifier.create(registry.register("tmiller"))
+                .then(() -> {
+                    Assertions.assertEquals(0, registry.deliver(new Msg("1", "bholiday", "dhagel", "Hello", null)));
+                    Assertions.assertEquals(1, registry.deliver(msg("2", "bholiday")));
+                })
+                .expectNextMatches(encoded -> "2".equals(encoded.msg().getId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    // Both tabs get the same encoded bytes rather than a serialisation each
+    @Test
+    public void deliversToEveryTabOfTheRecipient() {
+        List<EncodedMsg> received = new ArrayList<>();
+        Disposable first = registry.register("tmiller").subscribe(received::add);
+        Disposable second = registry.register("tmiller").subscribe(received::add);
+
+        Assertions.assertEquals(2, registry.deliver(msg("1", "bholiday")));
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertSame(received.get(0).json(), received.get(1).json());
+        Assertions.assertTrue(new String(received.get(0).json(), StandardCharsets.UTF_8).contains("\"sender\":\"bholiday\""));
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    public void forgetsSessionsWhenTheyClose() {
+        Disposable first = registry.register("tmiller").subscribe();
+        Disposable second = registry.register("tmiller").subscribe();
+        Assertions.assertEquals(2, registry.sessionCount());
+
+        first.dispose();
+        Assertions.assertEquals(1, registry.sessionCount());
+        Assertions.assertEquals(1, registry.deliver(msg("1", "bholiday")));
+
+        second.dispose();
+        Assertions.assertEquals(0, registry.recipientCount());
+        Assertions.assertEquals(0, registry.deliver(msg("2", "bholiday")));
+    }
+
+    // A session that stops reading keeps its newest messages and costs the others nothing
+    @Test
+    public void dropsOldestForASlowSessionOnly() {
+        StepVerifier.create(registry.register("tmiller"), 0)
+                .then(() -> StepVerifier.create(registry.register("tmiller"))
+                        .then(() -> {
+                            for (int i = 1; i <= 5; i++) {
+                                registry.deliver(msg(String.valueOf(i), "bholiday"));
+                            }
+                        })
+                        .expectNextCount(5)
+                        .thenCancel()
+                        .verify(Duration.ofSeconds(5)))
+                .then(() -> Assertions.assertEquals(2.0, meterRegistry.get("messages.sessions.dropped").tag("reason", "drop_oldest").counter().count()))
+                .thenRequest(5)
+                .expectNextMatches(encoded -> "3".equals(encoded.msg().getId()))
+                .expectNextMatches(encoded -> "4".equals(encoded.msg().getId()))
+                .expectNextMatches(encoded -> "5".equals(encoded.msg().getId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void coalescesBySender() {
+        registry = registry(SessionOverflow.COALESCE);
+        StepVerifier.create(registry.register("tmiller"), 0)
+                .then(() -> {
+                    registry.deliver(msg("1", "bholiday"));
+                    registry.deliver(msg("2", "dhagel"));
+                    registry.deliver(msg("3", "jdoe"));
+                    // Full: the newer message from bholiday replaces the older one rather than dropping dhagel's
+                    registry.deliver(msg("4", "bholiday"));
+                })
+                .thenRequest(5)
+                .expectNextMatches(encoded -> "2".equals(encoded.msg().getId()))
+                .expectNextMatches(encoded -> "3".equals(encoded.msg().getId()))
+                .expectNextMatches(encoded -> "4".equals(encoded.msg().getId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    // The sender comes from the request body unchecked; without one the oldest message goes instead
+    @Test
+    public void coalescesAMessageWithoutASenderByDroppingTheOldest() {
+        registry = registry(SessionOverflow.COALESCE);
+        StepVerifier.create(registry.register("tmiller"), 0)
+                .then(() -> {
+                    registry.deliver(msg("1", "bholiday"));
+                    registry.deliver(msg("2", "dhagel"));
+                    registry.deliver(msg("3", "jdoe"));
+                    Assertions.assertEquals(1, registry.deliver(msg("4", null)));
+                })
+                .then(() -> Assertions.assertEquals(1.0, meterRegistry.get("messages.sessions.dropped").tag("reason", "drop_oldest").counter().count()))
+                .thenRequest(5)
+                .expectNextMatches(encoded -> "2".equals(encoded.msg().getId()))
+                .expectNextMatches(encoded -> "3".equals(encoded.msg().getId()))
+                .expectNextMatches(encoded -> "4".equals(encoded.msg().getId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void disconnectsASessionTooFarBehind() {
+        registry = registry(SessionOverflow.DISCONNECT);
+        StepVerifier.create(registry.register("tmiller"), 0)
+                .then(() -> {
+                    Assertions.assertEquals(1, registry.deliver(msg("1", "bholiday")));
+                    now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+                    Assertions.assertEquals(31_000, registry.outboxes().get(0).lagMillis());
+                    Assertions.assertEquals(0, registry.deliver(msg("2", "bholiday")));
+                })
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+        Assertions.assertEquals(0, registry.sessionCount());
+        Assertions.assertEquals(1.0, meterRegistry.counter("messages.sessions.disconnected").count());
+    }
+
+    // Nothing more is sent to tmiller, so only the sweep can notice the session has stalled
+    @Test
+    public void sweepDisconnectsAStalledSessionWithoutANewMessage() {
+        registry = registry(SessionOverflow.DISCONNECT);
+        StepVerifier.create(registry.register("tmiller"), 0)
+                .then(() -> {
+                    Assertions.assertEquals(1, registry.deliver(msg("1", "bholiday")));
+                    now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+                    Assertions.assertEquals(0, registry.disconnectLagging());
+                    now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+                    Assertions.assertEquals(1, registry.disconnectLagging());
+                })
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+        Assertions.assertEquals(0, registry.sessionCount());
+        Assertions.assertEquals(1.0, meterRegistry.counter("messages.sessions.disconnected").count());
+        Assertions.assertEquals(0, registry.disconnectLagging());
+    }
+}